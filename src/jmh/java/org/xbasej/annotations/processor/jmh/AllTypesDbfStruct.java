@@ -0,0 +1,51 @@
+package org.xbasej.annotations.processor.jmh;
+
+import org.xBaseJ.annotations.DBFField;
+import org.xBaseJ.fields.CharField;
+import org.xBaseJ.fields.CurrencyField;
+import org.xBaseJ.fields.DateField;
+import org.xBaseJ.fields.FloatField;
+import org.xBaseJ.fields.LogicalField;
+import org.xBaseJ.fields.MemoField;
+import org.xBaseJ.fields.NumField;
+import org.xBaseJ.fields.PictureField;
+
+/**
+ * One field of every type the processor maps, compiled to {@code AllTypes} and
+ * its companion classes for the benchmarks.
+ */
+public class AllTypesDbfStruct {
+
+	@DBFField(name = "ACTIVE", size = 1)
+	protected LogicalField active;
+
+	@DBFField(name = "CODE", size = 12)
+	protected CharField code;
+
+	@DBFField(name = "COST", size = 8, dec = 4)
+	protected CurrencyField cost;
+
+	@DBFField(name = "CREATED", size = 8)
+	protected DateField created;
+
+	@DBFField(name = "NOTES", size = 10)
+	protected MemoField notes;
+
+	@DBFField(name = "PHOTO", size = 10)
+	protected PictureField photo;
+
+	@DBFField(name = "PRICE", size = 12, dec = 2)
+	protected NumField price;
+
+	@DBFField(name = "QTY", size = 6)
+	protected NumField qty;
+
+	@DBFField(name = "RATE", size = 12, dec = 4)
+	protected FloatField rate;
+
+	@DBFField(name = "SERIAL", size = 20)
+	protected NumField serial;
+
+	@DBFField(name = "TOTAL", size = 15)
+	protected NumField total;
+}
@@ -0,0 +1,78 @@
+package org.xbasej.annotations.processor.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xBaseJ.DBF;
+import org.xBaseJ.xBaseJException;
+
+/** One pass over all records, reading one field of each. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IterateBenchmark {
+
+	private DBF dbf;
+	private AllTypes record;
+	private AllTypesMappedReader reader;
+
+	@Setup(Level.Trial)
+	public void open(SourceFile source) throws IOException, xBaseJException {
+		dbf = new DBF(source.file.toString());
+		record = new AllTypes(dbf, true);
+		reader = new AllTypesMappedReader(source.file);
+	}
+
+	@TearDown(Level.Trial)
+	public void close() throws IOException {
+		reader.close();
+		dbf.close();
+	}
+
+	@Benchmark
+	public long record() {
+		long sum = 0;
+		for (AllTypes r : record) {
+			sum += r.getQty();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long mapped() {
+		long sum = 0;
+		for (AllTypesMappedReader r : reader) {
+			sum += r.getQty();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long mappedProjected() {
+		reader.project("QTY");
+		try {
+			long sum = 0;
+			for (AllTypesMappedReader r : reader) {
+				sum += r.getQty();
+			}
+			return sum;
+		} finally {
+			reader.project();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package org.xbasej.annotations.processor.jmh;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Getters of {@link AllTypesMappedReader} by field type, decoding the record
+ * bytes with the generated codec. Every call first seeks to the next of the
+ * first 1024 records, {@link #seek()} is the baseline to subtract.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MappedGetterBenchmark {
+
+	private AllTypesMappedReader reader;
+	private int window;
+	private int recno;
+
+	@Setup(Level.Trial)
+	public void open(SourceFile source) throws IOException {
+		reader = new AllTypesMappedReader(source.file);
+		window = Math.max(1, Math.min(source.records, 1024));
+	}
+
+	@TearDown(Level.Trial)
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private AllTypesMappedReader next() {
+		recno = recno % window + 1;
+		reader.seek(recno);
+		return reader;
+	}
+
+	@Benchmark
+	public AllTypesMappedReader seek() {
+		return next();
+	}
+
+	@Benchmark
+	public String getChar() {
+		return next().getCode();
+	}
+
+	@Benchmark
+	public int getInt() {
+		return next().getQty();
+	}
+
+	@Benchmark
+	public long getLong() {
+		return next().getTotal();
+	}
+
+	@Benchmark
+	public BigInteger getBigInteger() {
+		return next().getSerial();
+	}
+
+	@Benchmark
+	public String getDecimal() {
+		return next().getPrice();
+	}
+
+	@Benchmark
+	public Double getFloat() {
+		return next().getRate();
+	}
+
+	@Benchmark
+	public LocalDate getDate() {
+		return next().getCreated();
+	}
+
+	@Benchmark
+	public int getDateEpochDay() {
+		return next().getCreatedEpochDay();
+	}
+
+	@Benchmark
+	public Boolean getLogical() {
+		return next().getActive();
+	}
+
+	@Benchmark
+	public BigDecimal getCurrency() {
+		return next().getCost();
+	}
+
+	@Benchmark
+	public String getMemo() {
+		return next().getNotes();
+	}
+
+	@Benchmark
+	public byte[] getPicture() {
+		return next().getPhoto();
+	}
+}
@@ -0,0 +1,59 @@
+package org.xbasej.annotations.processor.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xBaseJ.DBF;
+import org.xBaseJ.xBaseJException;
+
+/** Packs a copy of the synthetic file with every tenth record deleted. */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class PackBenchmark {
+
+	private Path dir;
+	private DBF dbf;
+	private AllTypes record;
+
+	@Setup(Level.Invocation)
+	public void copy(SourceFile source) throws IOException, xBaseJException {
+		dir = Files.createTempDirectory("xbasej-jmh");
+		Path file = dir.resolve("pack.dbf");
+		SyntheticDbf.copy(source.file, file);
+		dbf = new DBF(file.toString());
+		record = new AllTypes(dbf, true);
+		for (int recno = 1; recno <= source.records; recno += 10) {
+			record.seek(recno);
+			record.delete(true);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void delete() throws IOException {
+		dbf.close();
+		SyntheticDbf.deleteDirectory(dir);
+	}
+
+	@Benchmark
+	public void pack() throws IOException, xBaseJException, CloneNotSupportedException {
+		record.pack();
+	}
+}
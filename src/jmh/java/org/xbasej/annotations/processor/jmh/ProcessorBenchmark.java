@@ -0,0 +1,157 @@
+package org.xbasej.annotations.processor.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbasej.annotations.processor.DBFFieldProcessor;
+
+/**
+ * Annotation processing time per struct: javac runs with {@code -proc:only}
+ * over {@value #STRUCTS} generated structs of the {@link AllTypesDbfStruct}
+ * fields. {@link #baseline()} parses the same sources with a processor that
+ * does nothing, the difference is the time of {@link DBFFieldProcessor}.
+ * {@link #features} runs it without any optional class, the default, and with
+ * all of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessorBenchmark {
+
+	static final int STRUCTS = 50;
+
+	private static final String[] FIELDS = { //
+			"@DBFField(name = \"ACTIVE\", size = 1) protected org.xBaseJ.fields.LogicalField active;", //
+			"@DBFField(name = \"CODE\", size = 12) protected org.xBaseJ.fields.CharField code;", //
+			"@DBFField(name = \"COST\", size = 8, dec = 4) protected org.xBaseJ.fields.CurrencyField cost;", //
+			"@DBFField(name = \"CREATED\", size = 8) protected org.xBaseJ.fields.DateField created;", //
+			"@DBFField(name = \"NOTES\", size = 10) protected org.xBaseJ.fields.MemoField notes;", //
+			"@DBFField(name = \"PHOTO\", size = 10) protected org.xBaseJ.fields.PictureField photo;", //
+			"@DBFField(name = \"PRICE\", size = 12, dec = 2) protected org.xBaseJ.fields.NumField price;", //
+			"@DBFField(name = \"QTY\", size = 6) protected org.xBaseJ.fields.NumField qty;", //
+			"@DBFField(name = \"RATE\", size = 12, dec = 4) protected org.xBaseJ.fields.FloatField rate;", //
+			"@DBFField(name = \"SERIAL\", size = 20) protected org.xBaseJ.fields.NumField serial;", //
+			"@DBFField(name = \"TOTAL\", size = 15) protected org.xBaseJ.fields.NumField total;" };
+
+	/** Value of the xbasej.features processor option. */
+	@Param({ "none", "follower,scanner,sort,columns,rows,metrics,jfr" })
+	public String features;
+
+	private Path dir;
+	private Path generated;
+	private JavaCompiler compiler;
+	private StandardJavaFileManager fileManager;
+	private List<JavaFileObject> sources;
+	private List<String> options;
+
+	@Setup(Level.Trial)
+	public void writeStructs() throws IOException {
+		dir = Files.createTempDirectory("xbasej-jmh");
+		generated = Files.createDirectory(dir.resolve("generated"));
+		Path bench = Files.createDirectory(dir.resolve("bench"));
+		List<Path> files = new ArrayList<>();
+		for (int i = 0; i < STRUCTS; i++) {
+			StringBuilder source = new StringBuilder();
+			source.append("package bench;\n\n");
+			source.append("import org.xBaseJ.annotations.DBFField;\n\n");
+			source.append("public class Struct").append(i).append("DbfStruct {\n");
+			for (String field : FIELDS) {
+				source.append("\t").append(field).append("\n");
+			}
+			source.append("}\n");
+			files.add(Files.write(bench.resolve("Struct" + i + "DbfStruct.java"),
+					source.toString().getBytes(StandardCharsets.UTF_8)));
+		}
+		compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("The benchmark needs a JDK");
+		}
+		fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+		sources = new ArrayList<>();
+		fileManager.getJavaFileObjectsFromPaths(files).forEach(sources::add);
+		options = Arrays.asList("-proc:only", "-implicit:none", "-nowarn", "-s", generated.toString(), "-d",
+				dir.toString(), "-cp", System.getProperty("java.class.path"),
+				"-Axbasej.features=" + (features.equals("none") ? "" : features));
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException {
+		fileManager.close();
+		SyntheticDbf.deleteDirectory(dir);
+	}
+
+	private boolean compile(Processor processor) {
+		JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, sources);
+		task.setProcessors(Collections.singletonList(processor));
+		if (!task.call()) {
+			throw new IllegalStateException("Annotation processing failed");
+		}
+		return true;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STRUCTS)
+	public boolean process() {
+		return compile(new DBFFieldProcessor());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STRUCTS)
+	public boolean baseline() {
+		return compile(new NoOpProcessor());
+	}
+
+	/** Claims the annotations like the processor, without generating anything. */
+	private static final class NoOpProcessor extends AbstractProcessor {
+
+		@Override
+		public Set<String> getSupportedAnnotationTypes() {
+			return Collections.singleton("org.xBaseJ.annotations.DBFField");
+		}
+
+		@Override
+		public SourceVersion getSupportedSourceVersion() {
+			return SourceVersion.latestSupported();
+		}
+
+		@Override
+		public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package org.xbasej.annotations.processor.jmh;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xBaseJ.DBF;
+import org.xBaseJ.xBaseJException;
+
+/**
+ * Getters of the record class by field type. Every call first seeks to the next
+ * of the first 1024 records so the value is decoded, {@link #seek()} is the
+ * baseline to subtract.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordGetterBenchmark {
+
+	private DBF dbf;
+	private AllTypes record;
+	private int window;
+	private int recno;
+
+	@Setup(Level.Trial)
+	public void open(SourceFile source) throws IOException, xBaseJException {
+		dbf = new DBF(source.file.toString());
+		record = new AllTypes(dbf, true);
+		window = Math.max(1, Math.min(source.records, 1024));
+	}
+
+	@TearDown(Level.Trial)
+	public void close() throws IOException {
+		dbf.close();
+	}
+
+	private AllTypes next() throws IOException, xBaseJException {
+		recno = recno % window + 1;
+		record.seek(recno);
+		return record;
+	}
+
+	@Benchmark
+	public AllTypes seek() throws IOException, xBaseJException {
+		return next();
+	}
+
+	@Benchmark
+	public String getChar() throws IOException, xBaseJException {
+		return next().getCode();
+	}
+
+	@Benchmark
+	public int getInt() throws IOException, xBaseJException {
+		return next().getQty();
+	}
+
+	@Benchmark
+	public long getLong() throws IOException, xBaseJException {
+		return next().getTotal();
+	}
+
+	@Benchmark
+	public BigInteger getBigInteger() throws IOException, xBaseJException {
+		return next().getSerial();
+	}
+
+	@Benchmark
+	public String getDecimal() throws IOException, xBaseJException {
+		return next().getPrice();
+	}
+
+	@Benchmark
+	public Double getFloat() throws IOException, xBaseJException {
+		return next().getRate();
+	}
+
+	@Benchmark
+	public LocalDate getDate() throws IOException, xBaseJException {
+		return next().getCreated();
+	}
+
+	@Benchmark
+	public int getDateEpochDay() throws IOException, xBaseJException {
+		return next().getCreatedEpochDay();
+	}
+
+	@Benchmark
+	public Boolean getLogical() throws IOException, xBaseJException {
+		return next().getActive();
+	}
+
+	@Benchmark
+	public BigDecimal getCurrency() throws IOException, xBaseJException {
+		return next().getCost();
+	}
+
+	@Benchmark
+	public String getMemo() throws IOException, xBaseJException {
+		return next().getNotes();
+	}
+
+	@Benchmark
+	public byte[] getPicture() throws IOException, xBaseJException {
+		return next().getPhoto();
+	}
+}
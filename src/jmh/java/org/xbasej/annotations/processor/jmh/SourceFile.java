@@ -0,0 +1,38 @@
+package org.xbasej.annotations.processor.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.xBaseJ.xBaseJException;
+
+/**
+ * The synthetic DBF file shared by the benchmarks of a trial. Its size is the
+ * {@code records} parameter, {@code -PjmhRecords=1000,100000} in Gradle.
+ */
+@State(Scope.Benchmark)
+public class SourceFile {
+
+	@Param("10000")
+	public int records;
+
+	Path dir;
+	Path file;
+
+	@Setup(Level.Trial)
+	public void create() throws IOException, xBaseJException {
+		dir = Files.createTempDirectory("xbasej-jmh");
+		file = SyntheticDbf.create(dir.resolve("alltypes.dbf"), records, SyntheticDbf.DEFAULT_SEED);
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException {
+		SyntheticDbf.deleteDirectory(dir);
+	}
+}
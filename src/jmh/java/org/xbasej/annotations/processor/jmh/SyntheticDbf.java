@@ -0,0 +1,112 @@
+package org.xbasej.annotations.processor.jmh;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import org.xBaseJ.DBF;
+import org.xBaseJ.xBaseJException;
+
+/**
+ * Writes synthetic {@link AllTypes} DBF files through the generated record
+ * class. The content only depends on the record count and the seed. One record
+ * in 8 has a memo, one in 32 a picture.
+ * <p>
+ * {@code java ... SyntheticDbf <file> <records> [seed]} writes a file outside
+ * the benchmarks.
+ */
+public final class SyntheticDbf {
+
+	public static final long DEFAULT_SEED = 42;
+
+	private static final byte[] PICTURE = new byte[2048];
+
+	static {
+		new Random(DEFAULT_SEED).nextBytes(PICTURE);
+	}
+
+	private SyntheticDbf() {
+	}
+
+	public static Path create(Path file, int records, long seed) throws IOException, xBaseJException {
+		Files.deleteIfExists(file);
+		for (Path memo : memoFiles(file)) {
+			Files.deleteIfExists(memo);
+		}
+		DBF dbf = new DBF(file.toString(), DBF.FOXPRO_WITH_MEMO, true);
+		try {
+			AllTypes record = new AllTypes(dbf);
+			SplittableRandom random = new SplittableRandom(seed);
+			for (int i = 0; i < records; i++) {
+				fill(record, random, i);
+				record.append();
+			}
+		} finally {
+			dbf.close();
+		}
+		return file;
+	}
+
+	/** Sets every field of the record to a random value. */
+	static void fill(AllTypes record, SplittableRandom random, int i) throws xBaseJException {
+		record.setActive(random.nextBoolean());
+		record.setCode("C" + random.nextInt(100_000_000));
+		record.setCost(BigDecimal.valueOf(random.nextLong(1_000_000_000L), 4));
+		record.setCreated(LocalDate.ofEpochDay(10_000 + random.nextInt(10_000)));
+		record.setNotes(i % 8 == 0 ? "Synthetic memo of record " + i : "");
+		record.setPhoto(i % 32 == 0 ? PICTURE : null);
+		record.setPrice(BigDecimal.valueOf(random.nextInt(10_000_000), 2).toPlainString());
+		record.setQty(random.nextInt(100_000));
+		record.setRate(random.nextInt(10_000_000) / 10_000d);
+		record.setSerial(BigInteger.valueOf(random.nextLong(Long.MAX_VALUE)));
+		record.setTotal(random.nextLong(1_000_000_000_000L));
+	}
+
+	/** Copies a DBF file and its memo file. */
+	public static void copy(Path source, Path target) throws IOException {
+		Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+		Path[] sourceMemos = memoFiles(source);
+		Path[] targetMemos = memoFiles(target);
+		for (int i = 0; i < sourceMemos.length; i++) {
+			if (Files.exists(sourceMemos[i])) {
+				Files.copy(sourceMemos[i], targetMemos[i], StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	private static Path[] memoFiles(Path dbf) {
+		String name = dbf.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		String base = dot < 0 ? name : name.substring(0, dot);
+		return new Path[] { dbf.resolveSibling(base + ".fpt"), dbf.resolveSibling(base + ".FPT") };
+	}
+
+	static void deleteDirectory(Path dir) throws IOException {
+		if (dir == null || !Files.exists(dir)) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(dir)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException, xBaseJException {
+		if (args.length < 2) {
+			System.err.println("Usage: SyntheticDbf <file> <records> [seed]");
+			System.exit(2);
+		}
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+		create(Paths.get(args[0]), Integer.parseInt(args[1]), seed);
+	}
+}
@@ -0,0 +1,80 @@
+package org.xbasej.annotations.processor.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xBaseJ.DBF;
+import org.xBaseJ.xBaseJException;
+
+/**
+ * Appends and in place updates through the record class, on a fresh copy of
+ * the synthetic file for every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteBenchmark {
+
+	private Path dir;
+	private DBF dbf;
+	private AllTypes record;
+	private SplittableRandom random;
+	private int records;
+	private int recno;
+
+	@Setup(Level.Iteration)
+	public void copy(SourceFile source) throws IOException, xBaseJException {
+		dir = Files.createTempDirectory("xbasej-jmh");
+		Path file = dir.resolve("write.dbf");
+		SyntheticDbf.copy(source.file, file);
+		dbf = new DBF(file.toString());
+		record = new AllTypes(dbf, true);
+		random = new SplittableRandom(SyntheticDbf.DEFAULT_SEED);
+		records = source.records;
+		recno = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void delete() throws IOException {
+		dbf.close();
+		SyntheticDbf.deleteDirectory(dir);
+	}
+
+	@Benchmark
+	public void append() throws IOException, xBaseJException {
+		SyntheticDbf.fill(record, random, recno++);
+		record.append();
+	}
+
+	@Benchmark
+	public void appendBlank() throws IOException, xBaseJException {
+		record.appendBlank();
+	}
+
+	@Benchmark
+	public void update() throws IOException, xBaseJException {
+		recno = recno % records + 1;
+		record.seek(recno);
+		record.setQty(random.nextInt(100_000));
+		record.setCode("U" + random.nextInt(100_000_000));
+		record.update();
+	}
+}
@@ -0,0 +1,340 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes {@code <Record>BulkWriter}, which encodes records into a large write
+ * buffer and appends them to the DBF file in chunks. The header record count
+ * is written once, on close, and is the commit point of the whole batch.
+ * Only generated for structs without memo or picture fields.
+ */
+final class BulkWriterGenerator {
+
+	static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	private BulkWriterGenerator() {
+	}
+
+	static boolean supports(Collection<Element> elements) {
+		for (Element element : elements) {
+			if (FieldKind.of(element).isMemo()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static void write(PrintWriter out, String packageName, String dbfRecordSimpleClassName,
+			Collection<Element> elements, Set<Feature> features) {
+		final String writerClassName = dbfRecordSimpleClassName + "BulkWriter";
+		final String codec = DBFFieldProcessor.CODEC;
+
+		if (packageName != null) {
+			out.print("package ");
+			out.print(packageName);
+			out.println(";");
+			out.println();
+		}
+
+		out.println("/**");
+		out.println(" * Appends {@link " + dbfRecordSimpleClassName + "} records to a DBF file in large chunks.");
+		out.println(" * Use it like the record class: set the fields, then {@link #append()}. The header");
+		out.println(" * record count is only updated by {@link #close()}, so a failed or aborted batch");
+		out.println(" * leaves the file with its previous records. The file must not be written through");
+		out.println(" * another handle while the writer is open, DBF handles opened before see the new");
+		out.println(" * records only after reopening.");
+		out.println(" */");
+		out.println("public class " + writerClassName + " implements java.io.Closeable");
+		out.println(" {");
+		out.println();
+		out.println(" private final java.nio.channels.FileChannel _channel;");
+		out.println(" private final java.nio.charset.Charset _charset;");
+		out.println(" private final int _headerLength;");
+		out.println(" private final int _recordLength;");
+		out.println(" private final int _originalCount;");
+		out.println(" private final long _originalSize;");
+		out.println(" private final byte[] _buffer;");
+		out.println(" private final int _capacity;");
+		out.println(" private int _buffered;");
+		out.println(" private int _flushed;");
+		out.println(" private int _slot;");
+		out.println(" private boolean _closed;");
+		out.println(" private org.xBaseJ.cp.CharsetMapper _mapper;");
+		LayoutBinding.writeFields(out, elements);
+		out.println();
+
+		out.println(" public " + writerClassName + "(java.nio.file.Path file) throws java.io.IOException {");
+		out.println("  this(file, java.nio.charset.StandardCharsets.ISO_8859_1, " + DEFAULT_BUFFER_SIZE + ");");
+		out.println(" }");
+		out.println();
+
+		out.println(" public " + writerClassName
+				+ "(java.nio.file.Path file, java.nio.charset.Charset charset, int bufferSize) throws java.io.IOException {");
+		out.println("  _charset = charset;");
+		out.println("  _channel = java.nio.channels.FileChannel.open(file, java.nio.file.StandardOpenOption.READ,");
+		out.println("    java.nio.file.StandardOpenOption.WRITE);");
+		out.println("  try {");
+		out.println("   " + codec + ".Header header = " + codec + ".readHeader(_channel);");
+		LayoutBinding.writeBind(out, dbfRecordSimpleClassName, elements, "   ");
+		out.println("   _headerLength = header.headerLength;");
+		out.println("   _recordLength = header.recordLength;");
+		out.println("   _originalCount = header.recordCount;");
+		out.println("   _originalSize = _channel.size();");
+		out.println("   _capacity = java.lang.Math.max(1, bufferSize / _recordLength);");
+		out.println("   _buffer = new byte[_capacity * _recordLength];");
+		out.println("  } catch (java.io.IOException | java.lang.RuntimeException e) {");
+		out.println("   _channel.close();");
+		out.println("   throw e;");
+		out.println("  }");
+		out.println("  blank();");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Applied to character values before they are encoded. */");
+		out.println(" public void setCharsetMapper(org.xBaseJ.cp.CharsetMapper mapper) {");
+		out.println("  _mapper = mapper;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Records appended so far, including the ones still in the write buffer. */");
+		out.println(" public int getAppendedCount() {");
+		out.println("  return _flushed + _buffered;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Clears the record being built. */");
+		out.println(" public void blank() {");
+		out.println("  _slot = _buffered * _recordLength;");
+		out.println("  " + codec + ".fill(_buffer, _slot, _recordLength);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Queues the record being built and starts a new, blank one. */");
+		out.println(" public void append() throws java.io.IOException {");
+		out.println("  if (_closed) throw new java.lang.IllegalStateException(\"" + writerClassName + " closed\");");
+		out.println("  _buffered++;");
+		out.println("  if (_buffered == _capacity) {");
+		out.println("   flushBuffer();");
+		out.println("  }");
+		out.println("  blank();");
+		out.println(" }");
+		out.println();
+
+		out.println(" public void append(" + dbfRecordSimpleClassName + " data) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  blank();");
+		for (Element element : elements) {
+			String subname = methodSubname(element.getSimpleName().toString());
+			out.println("  set" + subname + "(data.get" + subname + "());");
+		}
+		out.println("  append();");
+		out.println(" }");
+		out.println();
+
+		if (features.contains(Feature.ROWS)) {
+			out.println(" public void append(" + dbfRecordSimpleClassName + "Row row) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+			out.println("  blank();");
+			for (Element element : elements) {
+				String subname = methodSubname(element.getSimpleName().toString());
+				String getter = FieldKind.of(element) == FieldKind.DATE ? "EpochDay" : "";
+				out.println("  set" + subname + getter + "(row.get" + subname + getter + "());");
+			}
+			out.println("  append();");
+			out.println(" }");
+			out.println();
+		}
+
+		for (Element element : elements) {
+			writeSetter(out, codec, element);
+		}
+
+		ImportGenerator.write(out, dbfRecordSimpleClassName, elements);
+
+		out.println(" private void flushBuffer() throws java.io.IOException {");
+		out.println("  long position = _headerLength + ((long) _originalCount + _flushed) * _recordLength;");
+		out.println("  " + codec + ".writeFully(_channel, java.nio.ByteBuffer.wrap(_buffer, 0, _buffered * _recordLength), position);");
+		out.println("  _flushed += _buffered;");
+		out.println("  _buffered = 0;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Drops all records appended by this writer and closes it. */");
+		out.println(" public void abort() throws java.io.IOException {");
+		out.println("  if (_closed) return;");
+		out.println("  _closed = true;");
+		out.println("  try {");
+		out.println("   rollback();");
+		out.println("  } finally {");
+		out.println("   _channel.close();");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" private void rollback() throws java.io.IOException {");
+		out.println("  long end = _headerLength + (long) _originalCount * _recordLength;");
+		out.println("  _channel.truncate(end);");
+		out.println("  if (_originalSize > end) {");
+		out.println("   " + codec + ".writeFully(_channel, java.nio.ByteBuffer.wrap(new byte[] { " + codec + ".FILE_END }), end);");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Writes the remaining records, then the new record count. */");
+		out.println(" @Override");
+		out.println(" public void close() throws java.io.IOException {");
+		out.println("  if (_closed) return;");
+		out.println("  _closed = true;");
+		out.println("  try {");
+		out.println("   flushBuffer();");
+		out.println("   if (_flushed > 0) {");
+		out.println("    long end = _headerLength + ((long) _originalCount + _flushed) * _recordLength;");
+		out.println("    " + codec + ".writeFully(_channel, java.nio.ByteBuffer.wrap(new byte[] { " + codec + ".FILE_END }), end);");
+		out.println("    _channel.force(false);");
+		out.println("    " + codec + ".writeRecordCount(_channel, _originalCount + _flushed);");
+		out.println("    _channel.force(false);");
+		out.println("   }");
+		out.println("  } catch (java.io.IOException | java.lang.RuntimeException e) {");
+		out.println("   try {");
+		out.println("    rollback();");
+		out.println("   } catch (java.io.IOException suppressed) {");
+		out.println("    e.addSuppressed(suppressed);");
+		out.println("   }");
+		out.println("   throw e;");
+		out.println("  } finally {");
+		out.println("   _channel.close();");
+		out.println("  }");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+
+	/** Setters with the parameter types of the record class setters. */
+	private static void writeSetter(PrintWriter out, String codec, Element element) {
+		DBFField a = element.getAnnotation(DBFField.class);
+		FieldKind kind = FieldKind.of(element);
+		String fieldName = element.getSimpleName().toString();
+		String fieldType = element.asType().toString();
+		String subname = methodSubname(fieldName);
+		String offset = "_" + fieldName + "_offset";
+		String length = "_" + fieldName + "_length";
+		String target = "_buffer, _slot + " + offset + ", " + length;
+		String tooLong = "throw new org.xBaseJ.xBaseJException(\"" + a.name().toUpperCase()
+				+ ": value does not fit \" + " + length + " + \" bytes\");";
+		String throwsClause = " throws org.xBaseJ.xBaseJException {";
+
+		if (kind != FieldKind.DECIMAL) {
+			out.println(" /** " + fieldType + " */");
+		}
+		switch (kind) {
+		case LOGICAL:
+			out.println(" public void set" + subname + "(java.lang.Boolean value)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  " + codec + ".fill(" + target + ");");
+			out.println("  if (value != null) _buffer[_slot + " + offset + "] = (byte) (value ? 'T' : 'F');");
+			break;
+		case FLOAT:
+			out.println(" public void set" + subname + "(java.lang.Double value)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  if (value == null) { " + codec + ".fill(" + target + "); return; }");
+			out.println("  if (value.isNaN() || value.isInfinite() || !" + codec
+					+ ".encodeDecimal(java.math.BigDecimal.valueOf(value), " + a.dec() + ", " + target + ")) {");
+			out.println("   " + tooLong);
+			out.println("  }");
+			break;
+		case CURRENCY:
+			out.println(" public void set" + subname + "(java.math.BigDecimal value)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  long unscaled = value == null ? 0 : value.setScale(4, java.math.RoundingMode.HALF_UP)"
+					+ ".unscaledValue().longValue();");
+			out.println("  " + codec + ".writeLongLE(unscaled, _buffer, _slot + " + offset + ");");
+			break;
+		case DATE:
+			out.println(" public void set" + subname + "(java.time.LocalDate value)" + throwsClause);
+			out.println("  set" + subname + "EpochDay(value == null ? " + codec + ".NO_DATE : (int) value.toEpochDay());");
+			out.println(" }");
+			out.println();
+			out.println(" /** " + fieldType + ", java.lang.Integer.MIN_VALUE for blank */");
+			out.println(" public void set" + subname + "EpochDay(int epochDay)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  if (epochDay == " + codec + ".NO_DATE) { " + codec + ".fill(" + target + "); return; }");
+			out.println("  if (" + length + " != 8 || !" + codec + ".encodeEpochDay(epochDay, _buffer, _slot + " + offset
+					+ ")) {");
+			out.println("   " + tooLong);
+			out.println("  }");
+			break;
+		case INT:
+		case LONG:
+			out.println(" public void set" + subname + "(" + (kind == FieldKind.INT ? "int" : "long") + " value)"
+					+ throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  if (!" + codec + ".encodeLong(value, " + target + ")) {");
+			out.println("   " + tooLong);
+			out.println("  }");
+			break;
+		case BIG_INTEGER:
+			out.println(" public void set" + subname + "(java.math.BigInteger value)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  if (value == null) { " + codec + ".fill(" + target + "); return; }");
+			out.println("  if (!" + codec + ".encodeRight(value.toString(), " + target + ")) {");
+			out.println("   " + tooLong);
+			out.println("  }");
+			out.println(" }");
+			out.println();
+			out.println(" /** " + fieldType + " */");
+			out.println(" public void set" + subname + "(long value)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  if (!" + codec + ".encodeLong(value, " + target + ")) {");
+			out.println("   " + tooLong);
+			out.println("  }");
+			break;
+		case CHAR:
+			out.println(" public void set" + subname + "(String value)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  if (value != null && _mapper != null) value = _mapper.map(value);");
+			out.println("  if (!" + codec + ".encodeString(value, " + target + ", " + a.truncate() + ", _charset)) {");
+			out.println("   " + tooLong);
+			out.println("  }");
+			break;
+		case DECIMAL:
+			out.println(" /** " + fieldType + ", parsed and rounded to " + a.dec() + " decimals, blank for blank text */");
+			out.println(" public void set" + subname + "(String value)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  if (value == null || value.isBlank()) { " + codec + ".fill(" + target + "); return; }");
+			out.println("  java.math.BigDecimal number;");
+			out.println("  try {");
+			out.println("   number = new java.math.BigDecimal(value.strip());");
+			out.println("  } catch (java.lang.NumberFormatException e) {");
+			out.println("   throw new org.xBaseJ.xBaseJException(\"" + a.name().toUpperCase()
+					+ ": not a number: \" + value);");
+			out.println("  }");
+			out.println("  set" + subname + "(number);");
+			out.println(" }");
+			out.println();
+			out.println(" /** " + fieldType + ", rounded to " + a.dec() + " decimals */");
+			out.println(" public void set" + subname + "(java.math.BigDecimal value)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  if (value == null) { " + codec + ".fill(" + target + "); return; }");
+			out.println("  if (!" + codec + ".encodeDecimal(value, " + a.dec() + ", " + target + ")) {");
+			out.println("   " + tooLong);
+			out.println("  }");
+			break;
+		default:
+			out.println(" public void set" + subname + "(String value)" + throwsClause);
+			out.println("  if (" + offset + " < 0) return;");
+			out.println("  if (value == null || value.isBlank()) { " + codec + ".fill(" + target + "); return; }");
+			out.println("  if (!" + codec + ".encodeRight(value.strip(), " + target + ")) {");
+			out.println("   " + tooLong);
+			out.println("  }");
+			break;
+		}
+		out.println(" }");
+		out.println();
+	}
+}
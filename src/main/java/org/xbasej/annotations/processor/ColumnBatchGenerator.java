@@ -0,0 +1,361 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes {@code <Record>ColumnBatch}, reusable per field vectors filled by the
+ * {@code readColumns} method of {@code <Record>MappedReader}. Integers and dates
+ * go to int or long arrays, integers of 19 digits or more to BigInteger arrays,
+ * other numbers to double arrays, characters to one byte pool with offsets.
+ * Blank or missing cells are flagged in a bitmap and hold 0, so are number
+ * cells that do not parse, in a second bitmap. Memo and picture fields have no
+ * column.
+ */
+final class ColumnBatchGenerator {
+
+	private ColumnBatchGenerator() {
+	}
+
+	private static String arrayType(FieldKind kind) {
+		switch (kind) {
+		case INT:
+		case DATE:
+			return "int[]";
+		case LONG:
+		case CURRENCY:
+			return "long[]";
+		case LOGICAL:
+			return "boolean[]";
+		case FLOAT:
+		case DECIMAL:
+			return "double[]";
+		case BIG_INTEGER:
+			return "java.math.BigInteger[]";
+		case MEMO:
+		case PICTURE:
+			return null;
+		default:
+			return "byte[]";
+		}
+	}
+
+	/** Number columns, which flag the cells that do not parse. */
+	private static boolean isNumber(FieldKind kind) {
+		switch (kind) {
+		case INT:
+		case LONG:
+		case BIG_INTEGER:
+		case FLOAT:
+		case DECIMAL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	static void write(PrintWriter out, String packageName, String dbfRecordSimpleClassName,
+			Collection<Element> elements) {
+		final String batchClassName = dbfRecordSimpleClassName + "ColumnBatch";
+
+		if (packageName != null) {
+			out.print("package ");
+			out.print(packageName);
+			out.println(";");
+			out.println();
+		}
+
+		out.println("/**");
+		out.println(" * Reusable column vectors of {@link " + dbfRecordSimpleClassName + "} records, filled by");
+		out.println(" * {@link " + dbfRecordSimpleClassName + "MappedReader#readColumns}. Arrays are valid up to");
+		out.println(" * {@link #size()} and are overwritten by the next read. Blank cells hold 0 and have");
+		out.println(" * their bit set in the blank bitmap, number cells that are not blank but do not");
+		out.println(" * parse hold 0 and have their bit set in the invalid bitmap. Dates are epoch days,");
+		out.println(" * currencies are 1/10000 units and characters are undecoded bytes, trimmed like");
+		out.println(" * the getter.");
+		out.println(" */");
+		out.println("public final class " + batchClassName);
+		out.println(" {");
+		out.println();
+		out.println(" private final int _capacity;");
+		out.println(" private int _size;");
+		out.println(" final long[] _deleted;");
+		for (Element element : elements) {
+			String type = arrayType(FieldKind.of(element));
+			if (type == null) {
+				continue;
+			}
+			String fieldName = element.getSimpleName().toString();
+			if (type.equals("byte[]")) {
+				out.println(" byte[] " + fieldName + " = new byte[0];");
+				out.println(" final int[] " + fieldName + "Offsets;");
+			} else {
+				out.println(" final " + type + " " + fieldName + ";");
+			}
+			out.println(" final long[] " + fieldName + "Blanks;");
+			if (isNumber(FieldKind.of(element))) {
+				out.println(" final long[] " + fieldName + "Invalid;");
+			}
+		}
+		out.println();
+
+		out.println(" public " + batchClassName + "(int capacity) {");
+		out.println("  if (capacity < 0) throw new java.lang.IllegalArgumentException(\"capacity < 0: \" + capacity);");
+		out.println("  _capacity = capacity;");
+		out.println("  _deleted = new long[(capacity + 63) >>> 6];");
+		for (Element element : elements) {
+			String type = arrayType(FieldKind.of(element));
+			if (type == null) {
+				continue;
+			}
+			String fieldName = element.getSimpleName().toString();
+			if (type.equals("byte[]")) {
+				out.println("  " + fieldName + "Offsets = new int[capacity + 1];");
+			} else {
+				out.println("  " + fieldName + " = new " + type.substring(0, type.length() - 1) + "capacity];");
+			}
+			out.println("  " + fieldName + "Blanks = new long[_deleted.length];");
+			if (isNumber(FieldKind.of(element))) {
+				out.println("  " + fieldName + "Invalid = new long[_deleted.length];");
+			}
+		}
+		out.println(" }");
+		out.println();
+
+		out.println(" public int capacity() {");
+		out.println("  return _capacity;");
+		out.println(" }");
+		out.println();
+		out.println(" /** Number of records in the batch. */");
+		out.println(" public int size() {");
+		out.println("  return _size;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Starts a new batch of size records, clearing the bitmaps. */");
+		out.println(" void reset(int size) {");
+		out.println("  _size = size;");
+		out.println("  int words = (size + 63) >>> 6;");
+		out.println("  java.util.Arrays.fill(_deleted, 0, words, 0L);");
+		for (Element element : elements) {
+			if (arrayType(FieldKind.of(element)) != null) {
+				out.println("  java.util.Arrays.fill(" + element.getSimpleName() + "Blanks, 0, words, 0L);");
+			}
+			if (isNumber(FieldKind.of(element))) {
+				out.println("  java.util.Arrays.fill(" + element.getSimpleName() + "Invalid, 0, words, 0L);");
+			}
+		}
+		out.println(" }");
+		out.println();
+
+		out.println(" static void set(long[] bits, int index) {");
+		out.println("  bits[index >>> 6] |= 1L << index;");
+		out.println(" }");
+		out.println();
+		out.println(" private static boolean get(long[] bits, int index) {");
+		out.println("  return (bits[index >>> 6] & 1L << index) != 0;");
+		out.println(" }");
+		out.println();
+		out.println(" /** Copies a char cell to the end of the pool, growing it if needed. */");
+		out.println(" static byte[] append(byte[] pool, int[] offsets, int index, byte[] b, int from, int to) {");
+		out.println("  int start = offsets[index];");
+		out.println("  int end = start + to - from;");
+		out.println("  if (end > pool.length) {");
+		out.println("   pool = java.util.Arrays.copyOf(pool, java.lang.Math.max(end, pool.length * 2));");
+		out.println("  }");
+		out.println("  java.lang.System.arraycopy(b, from, pool, start, to - from);");
+		out.println("  offsets[index + 1] = end;");
+		out.println("  return pool;");
+		out.println(" }");
+		out.println();
+
+		out.println(" public boolean isDeleted(int index) {");
+		out.println("  return get(_deleted, index);");
+		out.println(" }");
+		out.println();
+
+		for (Element element : elements) {
+			FieldKind kind = FieldKind.of(element);
+			String type = arrayType(kind);
+			if (type == null) {
+				continue;
+			}
+			String fieldName = element.getSimpleName().toString();
+			String fieldType = element.asType().toString();
+			String subname = methodSubname(fieldName);
+			if (type.equals("byte[]")) {
+				out.println(" /** " + fieldType + ", the bytes of cell i run from offsets[i] to offsets[i + 1] */");
+				out.println(" public byte[] get" + subname + "Bytes() {");
+				out.println("  return " + fieldName + ";");
+				out.println(" }");
+				out.println();
+				out.println(" public int[] get" + subname + "Offsets() {");
+				out.println("  return " + fieldName + "Offsets;");
+				out.println(" }");
+				out.println();
+				out.println(" public String get" + subname + "(int index, java.nio.charset.Charset charset) {");
+				out.println("  int from = " + fieldName + "Offsets[index];");
+				out.println("  return new String(" + fieldName + ", from, " + fieldName + "Offsets[index + 1] - from, charset);");
+				out.println(" }");
+				out.println();
+			} else {
+				out.println(" /** " + fieldType + (kind == FieldKind.DATE ? ", epoch days" : "")
+						+ (kind == FieldKind.CURRENCY ? ", 1/10000 units" : "") + " */");
+				out.println(" public " + type + " get" + subname + "() {");
+				out.println("  return " + fieldName + ";");
+				out.println(" }");
+				out.println();
+			}
+			out.println(" public long[] get" + subname + "Blanks() {");
+			out.println("  return " + fieldName + "Blanks;");
+			out.println(" }");
+			out.println();
+			out.println(" public boolean is" + subname + "Blank(int index) {");
+			out.println("  return get(" + fieldName + "Blanks, index);");
+			out.println(" }");
+			out.println();
+			if (isNumber(kind)) {
+				out.println(" /** Cells that are not blank but do not parse as a number, they hold 0. */");
+				out.println(" public long[] get" + subname + "Invalid() {");
+				out.println("  return " + fieldName + "Invalid;");
+				out.println(" }");
+				out.println();
+				out.println(" public boolean is" + subname + "Invalid(int index) {");
+				out.println("  return get(" + fieldName + "Invalid, index);");
+				out.println(" }");
+				out.println();
+			}
+		}
+		out.println("}");
+		out.println();
+	}
+
+	/** {@code readColumns} of {@code <Record>MappedReader}. */
+	static void writeReadColumns(PrintWriter out, String dbfRecordSimpleClassName, Collection<Element> elements) {
+		final String batchClassName = dbfRecordSimpleClassName + "ColumnBatch";
+		final String codec = DBFFieldProcessor.CODEC;
+
+		out.println(" /**");
+		out.println("  * Decodes up to count records starting at fromRecno into the column vectors of");
+		out.println("  * the batch, deleted records included and flagged. Returns the number of records");
+		out.println("  * read, 0 past the last record.");
+		out.println("  */");
+		out.println(" public int readColumns(int fromRecno, int count, " + batchClassName + " batch) {");
+		out.println("  if (fromRecno < 1) throw new java.lang.IllegalArgumentException(\"fromRecno < 1: \" + fromRecno);");
+		out.println("  int size = java.lang.Math.max(0, java.lang.Math.min(java.lang.Math.min(count, batch.capacity()),");
+		out.println("    _recordCount - fromRecno + 1));");
+		out.println("  batch.reset(size);");
+		for (Element element : elements) {
+			if ("byte[]".equals(arrayType(FieldKind.of(element)))) {
+				out.println("  batch." + element.getSimpleName() + "Offsets[0] = 0;");
+			}
+		}
+		out.println("  for (int i = 0; i < size; i++) {");
+		out.println("   seek(fromRecno + i);");
+		out.println("   if (_record[0] == " + codec + ".DELETED) " + batchClassName + ".set(batch._deleted, i);");
+		for (Element element : elements) {
+			writeCell(out, batchClassName, codec, element);
+		}
+		out.println("  }");
+		out.println("  return size;");
+		out.println(" }");
+		out.println();
+	}
+
+	private static void writeCell(PrintWriter out, String batchClassName, String codec, Element element) {
+		FieldKind kind = FieldKind.of(element);
+		String type = arrayType(kind);
+		if (type == null) {
+			return;
+		}
+		String fieldName = element.getSimpleName().toString();
+		String offset = "_" + fieldName + "_offset";
+		String bytes = "_record, " + offset + ", _" + fieldName + "_length";
+		String column = "batch." + fieldName;
+		String blank = batchClassName + ".set(" + column + "Blanks, i);";
+		String invalid = batchClassName + ".set(" + column + "Invalid, i);";
+		String missing = offset + " < 0";
+		String value = fieldName + "Value";
+		switch (kind) {
+		case INT:
+		case LONG:
+			out.println("   if (" + missing + " || " + codec + ".isBlank(" + bytes + ")) {");
+			out.println("    " + column + "[i] = 0;");
+			out.println("    " + blank);
+			out.println("   } else {");
+			out.println("    long " + value + " = " + codec + ".parseLong(" + bytes + ", java.lang.Long.MIN_VALUE);");
+			out.println("    " + column + "[i] = " + value + " == java.lang.Long.MIN_VALUE ? 0 : "
+					+ (kind == FieldKind.INT ? "(int) " : "") + value + ";");
+			out.println("    if (" + value + " == java.lang.Long.MIN_VALUE) " + invalid);
+			out.println("   }");
+			break;
+		case BIG_INTEGER:
+			out.println("   if (" + missing + " || " + codec + ".isBlank(" + bytes + ")) {");
+			out.println("    " + column + "[i] = java.math.BigInteger.ZERO;");
+			out.println("    " + blank);
+			out.println("   } else {");
+			out.println("    " + column + "[i] = " + codec + ".parseBigInteger(" + bytes + ", null);");
+			out.println("    if (" + column + "[i] == null) {");
+			out.println("     " + column + "[i] = java.math.BigInteger.ZERO;");
+			out.println("     " + invalid);
+			out.println("    }");
+			out.println("   }");
+			break;
+		case CURRENCY:
+			out.println("   if (" + missing + ") {");
+			out.println("    " + column + "[i] = 0;");
+			out.println("    " + blank);
+			out.println("   } else {");
+			out.println("    " + column + "[i] = " + codec + ".readLongLE(_record, " + offset + ");");
+			out.println("   }");
+			break;
+		case DATE:
+			out.println("   " + column + "[i] = " + missing + " ? " + codec + ".NO_DATE : " + codec + ".parseEpochDay("
+					+ bytes + ");");
+			out.println("   if (" + column + "[i] == " + codec + ".NO_DATE) {");
+			out.println("    " + column + "[i] = 0;");
+			out.println("    " + blank);
+			out.println("   }");
+			break;
+		case LOGICAL:
+			out.println("   int " + fieldName + "Value = " + missing + " ? " + codec + ".LOGICAL_BLANK : " + codec
+					+ ".parseLogical(" + bytes + ");");
+			out.println("   " + column + "[i] = " + fieldName + "Value == 1;");
+			out.println("   if (" + fieldName + "Value == " + codec + ".LOGICAL_BLANK) " + blank);
+			break;
+		case FLOAT:
+		case DECIMAL:
+			out.println("   if (" + missing + " || " + codec + ".isBlank(" + bytes + ")) {");
+			out.println("    " + column + "[i] = 0;");
+			out.println("    " + blank);
+			out.println("   } else {");
+			out.println("    " + column + "[i] = " + codec + ".parseDouble(" + bytes + ", java.lang.Double.NaN);");
+			out.println("    if (java.lang.Double.isNaN(" + column + "[i])) {");
+			out.println("     " + column + "[i] = 0;");
+			out.println("     " + invalid);
+			out.println("    }");
+			out.println("   }");
+			break;
+		default:
+			DBFField a = element.getAnnotation(DBFField.class);
+			boolean ltrim = kind == FieldKind.CHAR && a.ltrim();
+			boolean rtrim = kind == FieldKind.CHAR && a.rtrim();
+			out.println("   if (" + missing + ") {");
+			out.println("    batch." + fieldName + "Offsets[i + 1] = batch." + fieldName + "Offsets[i];");
+			out.println("    " + blank);
+			out.println("   } else {");
+			out.println("    long range = " + codec + ".trimmedRange(" + bytes + ", " + ltrim + ", " + rtrim + ");");
+			out.println("    " + column + " = " + batchClassName + ".append(" + column + ", " + column
+					+ "Offsets, i, _record, (int) (range >>> 32), (int) range);");
+			out.println("    if (" + codec + ".isBlank(" + bytes + ")) " + blank);
+			out.println("   }");
+			break;
+		}
+	}
+}
@@ -1,8 +1,10 @@
 package org.xbasej.annotations.processor;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,26 +12,33 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import javax.annotation.processing.AbstractProcessor;
-import javax.annotation.processing.Filer;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic.Kind;
-import javax.tools.JavaFileObject;
 
 import org.xBaseJ.annotations.DBFField;
+import org.xbasej.annotations.runtime.RecordCodec;
 
 import com.google.auto.service.AutoService;
 
 @SupportedAnnotationTypes({ "org.xBaseJ.annotations.DBFField" })
 @SupportedSourceVersion(SourceVersion.RELEASE_11)
+@SupportedOptions({ IndexGenerator.OPTION, Feature.OPTION })
 @AutoService(Processor.class)
 public class DBFFieldProcessor extends AbstractProcessor {
 
+	/** The shared runtime codec the generated classes decode and encode raw records with. */
+	static final String CODEC = RecordCodec.class.getName();
+
+	/** Generated sources are large, one buffer of this size per file keeps the writes to the filer few. */
+	private static final int WRITER_BUFFER_SIZE = 1 << 16;
+
 	@Override
 	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
 		if (annotations.isEmpty()) {
@@ -48,7 +57,7 @@ public class DBFFieldProcessor extends AbstractProcessor {
 		for (Element parent : annotatedElements.keySet()) {
 			String className = parent.asType().toString();
 			try {
-				writeImplFile(className, annotatedElements.get(parent));
+				writeImplFile(className, parent, annotatedElements.get(parent));
 			} catch (IOException e) {
 				throw new IllegalStateException(e);
 			}
@@ -56,7 +65,7 @@ public class DBFFieldProcessor extends AbstractProcessor {
 		return true;
 	}
 
-	private void writeImplFile(final String className, List<Element> elements) throws IOException {
+	private void writeImplFile(final String className, Element struct, List<Element> elements) throws IOException {
 
 		String packageName = null;
 		int lastDot = className.lastIndexOf('.');
@@ -64,17 +73,84 @@ public class DBFFieldProcessor extends AbstractProcessor {
 			packageName = className.substring(0, lastDot);
 		}
 
-		generateDbfCode(className, elements, packageName, lastDot);
+		generateDbfCode(className, struct, elements, packageName, lastDot);
+	}
+
+	/**
+	 * Opens a generated source file for buffered writing. The struct is its only
+	 * originating element, which makes the processor isolating for Gradle: a
+	 * struct's generated files depend on the struct alone.
+	 */
+	private PrintWriter createSourceFile(String name, Element struct) throws IOException {
+		return new PrintWriter(new BufferedWriter(processingEnv.getFiler().createSourceFile(name, struct).openWriter(),
+				WRITER_BUFFER_SIZE));
+	}
+
+	/** Whether name is a letter or underscore followed by letters, digits and underscores, all ASCII. */
+	private static boolean isFieldName(String name) {
+		if (name.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c == '_' || i > 0 && c >= '0' && c <= '9')) {
+				return false;
+			}
+		}
+		return true;
 	}
 
-	private void generateDbfCode(final String className, List<Element> _elements, String packageName, int lastDot)
-			throws IOException {
-		Set<Element> elements = new TreeSet<>((a,b)->{
-			DBFField fieldA = a.getAnnotation(DBFField.class);
-			DBFField fieldB = b.getAnnotation(DBFField.class);
-			return fieldA.name().compareToIgnoreCase(fieldB.name());
-		});
+	private void generateDbfCode(final String className, Element struct, List<Element> _elements, String packageName,
+			int lastDot) throws IOException {
+		final Map<Element, DBFField> fields = new HashMap<>();
+		for (Element element : _elements) {
+			fields.put(element, element.getAnnotation(DBFField.class));
+		}
+		Set<Element> elements = new TreeSet<>((a,b)->fields.get(a).name().compareToIgnoreCase(fields.get(b).name()));
 		elements.addAll(_elements);
+
+		for (Element element : elements) {
+			DBFField a = fields.get(element);
+			final String dbfFieldName = a.name().toUpperCase();
+			if (!isFieldName(dbfFieldName)) {
+				this.processingEnv.getMessager().printMessage(Kind.ERROR, "DBF field name invalid: " + a.toString(),
+						element);
+				return;
+			}
+			if (dbfFieldName.length()>10) {
+				this.processingEnv.getMessager().printMessage(Kind.ERROR, "DBF field name too long: " + a.toString()+" "+dbfFieldName.length()+" > 10",
+						element);
+				return;
+			}
+		}
+
+		final String indexOption = processingEnv.getOptions().get(IndexGenerator.OPTION);
+		final Map<Element, Boolean> indexes = IndexGenerator.indexes(indexOption, className, elements);
+		for (Element element : indexes.keySet()) {
+			if (!IndexGenerator.supports(element)) {
+				this.processingEnv.getMessager().printMessage(Kind.ERROR,
+						"DBF field index needs an integer NumField, a DateField or a CharField: "
+								+ fields.get(element).toString(),
+						element);
+				return;
+			}
+		}
+		for (String field : IndexGenerator.declared(indexOption, className).keySet()) {
+			if (elements.stream().noneMatch(element -> element.getSimpleName().contentEquals(field))) {
+				this.processingEnv.getMessager().printMessage(Kind.ERROR,
+						IndexGenerator.OPTION + " names no @DBFField of " + className + ": " + field, struct);
+				return;
+			}
+		}
+		final Set<Feature> features;
+		try {
+			features = Feature.parse(processingEnv.getOptions().get(Feature.OPTION));
+		} catch (IllegalArgumentException e) {
+			this.processingEnv.getMessager().printMessage(Kind.ERROR,
+					Feature.OPTION + " names no feature: " + e.getMessage(), struct);
+			return;
+		}
+
 		String dbfRecordClassName;
 		if (className.toLowerCase().endsWith("dbfstruct")) {
 			dbfRecordClassName = className.substring(0, className.length() - "dbfstruct".length());
@@ -89,10 +165,7 @@ public class DBFFieldProcessor extends AbstractProcessor {
 		}
 		String dbfRecordSimpleClassName = dbfRecordClassName.substring(lastDot + 1);
 
-		final Filer filer = processingEnv.getFiler();
-		JavaFileObject builderFile = filer.createSourceFile(dbfRecordClassName);
-
-		try (PrintWriter out = new PrintWriter(builderFile.openWriter())) {
+		try (PrintWriter out = createSourceFile(dbfRecordClassName, struct)) {
 			if (packageName != null) {
 				out.print("package ");
 				out.print(packageName);
@@ -108,6 +181,8 @@ public class DBFFieldProcessor extends AbstractProcessor {
 			out.println();
 
 			out.println(" private org.xBaseJ.DBF _dbf;");
+			out.println(" private java.lang.String _layoutMismatches;");
+			out.println(" private int _recordLength;");
 			out.println();
 			out.println(" public " + dbfRecordSimpleClassName + "(org.xBaseJ.DBF dbf) throws java.io.IOException, org.xBaseJ.xBaseJException {");
 			out.println("  this(dbf, false);");
@@ -127,6 +202,7 @@ public class DBFFieldProcessor extends AbstractProcessor {
 
 			out.println(" public void attach(org.xBaseJ.DBF dbf) {");
 			out.println("  _dbf=dbf;");
+			out.println("  clearDecoded();");
 			out.println("  try {");
 			out.println("   init();");
 			out.println("  } catch (java.lang.Exception e) {");
@@ -134,34 +210,54 @@ public class DBFFieldProcessor extends AbstractProcessor {
 			out.println("  }");
 			out.println(" }");
 			out.println();
+			out.println(" /**");
+			out.println("  * Differences between the attached DBF and {@link " + dbfRecordSimpleClassName
+					+ "Layout}, one entry per field,");
+			out.println("  * or null if the DBF header matches. Missing fields and fields of another type are");
+			out.println("  * left null.");
+			out.println("  */");
+			out.println(" public java.lang.String getLayoutMismatches() {");
+			out.println("  return _layoutMismatches;");
+			out.println(" }");
+			out.println();
 
 			out.println(" private void init() throws java.lang.Exception {");
+			out.println("  int count = _dbf.getFieldCount();");
+			out.println("  org.xBaseJ.fields.Field[] fields = new org.xBaseJ.fields.Field[count];");
+			out.println("  java.lang.String[] names = new java.lang.String[count];");
+			out.println("  char[] types = new char[count];");
+			out.println("  int[] sizes = new int[count];");
+			out.println("  int[] decimals = new int[count];");
+			out.println("  for (int i = 0; i < count; i++) {");
+			out.println("   fields[i] = _dbf.getField(i + 1);");
+			out.println("   names[i] = fields[i].getName();");
+			out.println("   types[i] = fields[i].getType();");
+			out.println("   sizes[i] = fields[i].getLength();");
+			out.println("   decimals[i] = fields[i].getDecimalPositionCount();");
+			out.println("  }");
+			out.println("  java.lang.StringBuilder mismatches = new java.lang.StringBuilder();");
+			out.println("  int[] columns = " + dbfRecordSimpleClassName
+					+ "Layout.bind(names, types, sizes, decimals, mismatches);");
+			out.println("  _layoutMismatches = mismatches.length() == 0 ? null : mismatches.toString().trim();");
+			out.println("  int recordLength = 1;");
+			out.println("  for (int size : sizes) recordLength += size;");
+			out.println("  _recordLength = recordLength;");
+			int index = 0;
 			for (Element element : elements) {
-				DBFField a = element.getAnnotation(DBFField.class);
-				final String dbfFieldName = a.name().toUpperCase();
-				if (!dbfFieldName.matches("(?i)^[a-z_][a-z_0-9]*$")) {
-					this.processingEnv.getMessager().printMessage(Kind.ERROR, "DBF field name invalid: " + a.toString(),
-							element);
-					return;
-				}
-				if (dbfFieldName.length()>10) {
-					this.processingEnv.getMessager().printMessage(Kind.ERROR, "DBF field name too long: " + a.toString()+" "+dbfFieldName.length()+" > 10",
-							element);
-					return;
-				}
-
 				String fieldType = element.asType().toString();
-				out.println("  try {");
-				out.println("  this." + element.toString() + "=(" + fieldType + ")_dbf.getField(\"" + dbfFieldName
-						+ "\");");
-				out.println("  } catch (java.lang.Exception e) {this." + element.toString() + "=null;}");
+				String column = "columns[" + index++ + "]";
+				out.println("  this." + element.toString() + " = " + column + " >= 0 && fields[" + column
+						+ "] instanceof " + fieldType + " ? (" + fieldType + ") fields[" + column + "] : null;");
 			}
 			out.println(" }");
 			out.println();
+			int fieldIndex = 0;
 			for (Element element : elements) {
 				DBFField a = element.getAnnotation(DBFField.class);
 				String fieldName = element.getSimpleName().toString();
 				String fieldType = element.asType().toString();
+				final String codec = CODEC;
+				final int dirtyIndex = fieldIndex++;
 				out.println(" // " + fieldType);
 				if (fieldType.endsWith("PictureField")) {
 					out.println(" /** " + fieldType + " */");
@@ -174,11 +270,13 @@ public class DBFFieldProcessor extends AbstractProcessor {
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(byte[] value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "byte[]");
 					out.println("   this." + fieldName + ".put(value);");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				} else if (fieldType.endsWith("LogicalField")) {
 					out.println(" /** " + fieldType + " */");
-					out.println(" public java.lang.Boolean get" + methodSubname(fieldName) + "() {");
+					FieldCacheGenerator.writeGetter(out, dbfRecordSimpleClassName, element, dirtyIndex);
 					out.println("  if (this." + fieldName + "==null) return null;");
 					out.println("  if (this." + fieldName + ".get().trim().isEmpty()) return null;");
 					out.println("  return this." + fieldName + ".getBoolean();");
@@ -188,13 +286,15 @@ public class DBFFieldProcessor extends AbstractProcessor {
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(java.lang.Boolean value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "java.lang.Boolean");
 					out.println("  if (value==null) { this." + fieldName + ".put(\"\"); }");
 					out.println("  else {");
 					out.println("   this." + fieldName + ".put(value);}");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				} else if (fieldType.endsWith("FloatField")) {
 					out.println(" /** " + fieldType + " */");
-					out.println(" public java.lang.Double get" + methodSubname(fieldName) + "() {");
+					FieldCacheGenerator.writeGetter(out, dbfRecordSimpleClassName, element, dirtyIndex);
 					out.println("  if (this." + fieldName + "==null) return null;");
 					out.println(" return this." + fieldName + ".getDouble();");
 					out.println(" }");
@@ -203,13 +303,15 @@ public class DBFFieldProcessor extends AbstractProcessor {
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(java.lang.Double value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "java.lang.Double");
 					out.println("  if (value==null) { this." + fieldName + ".put(\"\"); }");
 					out.println("  else {");
 					out.println("   this." + fieldName + ".put(value);}");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				} else if (fieldType.endsWith("CurrencyField")) {
 					out.println(" /** " + fieldType + " */");
-					out.println(" public java.math.BigDecimal get" + methodSubname(fieldName) + "() {");
+					FieldCacheGenerator.writeGetter(out, dbfRecordSimpleClassName, element, dirtyIndex);
 					out.println("  if (this." + fieldName + "==null) return null;");
 					out.println("  return this." + fieldName + ".getBigDecimal();");
 					out.println(" }");
@@ -218,97 +320,113 @@ public class DBFFieldProcessor extends AbstractProcessor {
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(java.math.BigDecimal value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "java.math.BigDecimal");
 					out.println("  if (value==null) { this." + fieldName + ".put(\"\"); }");
 					out.println("  else {");
 					out.println("   this." + fieldName + ".put(value);}");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				} else if (fieldType.endsWith("DateField")) {
 					out.println(" /** " + fieldType + " */");
-					out.println(" public java.time.LocalDate get" + methodSubname(fieldName) + "() {");
+					FieldCacheGenerator.writeGetter(out, dbfRecordSimpleClassName, element, dirtyIndex);
 					out.println("  if (this." + fieldName + "==null) return null;");
 					out.println("  try { return java.time.LocalDate.parse(this." + fieldName
 							+ ".get(),java.time.format.DateTimeFormatter.BASIC_ISO_DATE); }");
-					out.println(" catch(java.time.format.DateTimeParseException e) { return null; }");
+					out.println(" catch(java.time.format.DateTimeParseException e) { parseFailure(" + dirtyIndex + ", this." + fieldName + "); return null; }");
 					out.println(" }");
 					out.println();
 					out.println(" /** " + fieldType + " */");
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(java.time.LocalDate value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "java.time.LocalDate");
 					out.println("  if (value==null) { this." + fieldName + ".put(\"\"); }");
 					out.println("  else {");
 					out.println("   this." + fieldName
 							+ ".put(value.format(java.time.format.DateTimeFormatter.BASIC_ISO_DATE));}");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				} else if (fieldType.endsWith("NumField") && a.dec() == 0 && a.size() < 10) {
 					out.println(" /** " + fieldType + " */");
-					out.println(" public int get" + methodSubname(fieldName) + "() {");
+					FieldCacheGenerator.writeGetter(out, dbfRecordSimpleClassName, element, dirtyIndex);
 					out.println("  if (this." + fieldName + "==null) return 0;");
 					out.println("  try { return java.lang.Integer.parseInt(this." + fieldName + ".get().trim()); }");
-					out.println(" catch(java.lang.NumberFormatException e) { return 0; }");
+					out.println(" catch(java.lang.NumberFormatException e) { parseFailure(" + dirtyIndex + ", this." + fieldName + "); return 0; }");
 					out.println(" }");
 					out.println();
 					out.println(" /** " + fieldType + " */");
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(int value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "int");
 					out.println("  this." + fieldName + ".put(java.lang.Integer.toString(value));");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				} else if (fieldType.endsWith("NumField") && a.dec() == 0 && a.size() < 19) {
 					out.println(" /** " + fieldType + " */");
-					out.println(" public long get" + methodSubname(fieldName) + "() {");
+					FieldCacheGenerator.writeGetter(out, dbfRecordSimpleClassName, element, dirtyIndex);
 					out.println("  if (this." + fieldName + "==null) return 0;");
 					out.println("  try { return java.lang.Long.parseLong(this." + fieldName + ".get().trim()); }");
-					out.println(" catch(java.lang.NumberFormatException e) { return 0; }");
+					out.println(" catch(java.lang.NumberFormatException e) { parseFailure(" + dirtyIndex + ", this." + fieldName + "); return 0; }");
 					out.println(" }");
 					out.println();
 					out.println(" /** " + fieldType + " */");
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(long value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "long");
 					out.println("  this." + fieldName + ".put(java.lang.Long.toString(value));");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 					out.println();
 					out.println(" /** " + fieldType + " */");
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(int value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "int");
 					out.println("  this." + fieldName + ".put(java.lang.Integer.toString(value));");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				}
 				else if (fieldType.endsWith("NumField") && a.dec() == 0 && a.size() >= 19) {
 					out.println(" /** " + fieldType + " */");
-					out.println(" public java.math.BigInteger get" + methodSubname(fieldName) + "() {");
+					FieldCacheGenerator.writeGetter(out, dbfRecordSimpleClassName, element, dirtyIndex);
 					out.println("  if (this." + fieldName + "==null) return java.math.BigInteger.ZERO;");
 					out.println("  try { return new java.math.BigInteger(this." + fieldName + ".get().trim()); }");
-					out.println(" catch(java.lang.NumberFormatException e) { return java.math.BigInteger.ZERO; }");
+					out.println(" catch(java.lang.NumberFormatException e) { parseFailure(" + dirtyIndex + ", this." + fieldName + "); return java.math.BigInteger.ZERO; }");
 					out.println(" }");
 					out.println();
 					out.println(" /** " + fieldType + " */");
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(java.math.BigInteger value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "java.math.BigInteger");
 					out.println("  this." + fieldName + ".put(value.toString());");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 					out.println();
 					out.println(" /** " + fieldType + " */");
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(long value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "long");
 					out.println("  this." + fieldName + ".put(java.lang.Long.toString(value));");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 					out.println();
 					out.println(" /** " + fieldType + " */");
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(int value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "int");
 					out.println("  this." + fieldName + ".put(java.lang.Integer.toString(value));");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				}
 				else if (fieldType.endsWith("CharField")) {
 					out.println(" /** " + fieldType + " <br>");
 					out.println(" rtrim=" + a.rtrim() + ", ltrim=" + a.ltrim()+" */");
-					out.println(" public String get" + methodSubname(fieldName) + "() {");
+					FieldCacheGenerator.writeGetter(out, dbfRecordSimpleClassName, element, dirtyIndex);
 					out.println("  if (this." + fieldName + "==null) return \"\";");
 					if (a.rtrim() && a.ltrim()) {
 						out.println("  return this." + fieldName + ".get().strip();");
@@ -336,11 +454,13 @@ public class DBFFieldProcessor extends AbstractProcessor {
 						out.println("   }");
 						out.println();
 					}
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "String");
 					out.println("  this." + fieldName + ".put(value);");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				} else {
 					out.println(" /** " + fieldType + " */");
-					out.println(" public String get" + methodSubname(fieldName) + "() {");
+					FieldCacheGenerator.writeGetter(out, dbfRecordSimpleClassName, element, dirtyIndex);
 					out.println("  if (this." + fieldName + "==null) return \"\";");
 					out.println("  return this." + fieldName + ".get();");
 					out.println(" }");
@@ -349,24 +469,34 @@ public class DBFFieldProcessor extends AbstractProcessor {
 					out.println(" public void set" + methodSubname(fieldName)
 							+ "(String value) throws org.xBaseJ.xBaseJException {");
 					out.println("  if (this." + fieldName + "==null) return;");
+					DirtyTrackingGenerator.writeUnchanged(out, codec, element, "String");
 					out.println("  this." + fieldName + ".put(value);");
+					DirtyTrackingGenerator.writeMarkDirty(out, dirtyIndex);
 					out.println(" }");
 				}
 
 				out.println();
+				PrimitiveAccessors.write(out, CODEC, element, "this." + fieldName + "==null",
+						"this." + fieldName + ".getBytes(), 0, this." + fieldName + ".getLength()");
+			}
+
+			final String write = (IndexGenerator.hasUnique(indexes) ? "checkUnique(); " : "") + "_dbf.write();";
+			final String afterWrite = indexes.isEmpty() ? "" : " indexAppended();";
+			final String afterChange = indexes.isEmpty() ? "" : " invalidateIndexes();";
+			if (!indexes.isEmpty()) {
+				IndexGenerator.writeFinders(out, dbfRecordSimpleClassName, indexes);
 			}
 
 			out.println(
-					" public void pack() throws java.lang.CloneNotSupportedException, org.xBaseJ.xBaseJException, java.io.IOException { _dbf.pack(); }");
+					" public void pack() throws java.lang.CloneNotSupportedException, org.xBaseJ.xBaseJException, java.io.IOException { _dbf.pack(); clearDecoded();" + afterChange + " }");
 			out.println(" public boolean deleted() { return _dbf.deleted(); }");
 			out.println(
-					" public void delete(boolean delete) throws org.xBaseJ.xBaseJException, java.io.IOException { if (delete) _dbf.delete(); else _dbf.undelete(); }");
-			out.println(
-					" public void seek(int recno) throws org.xBaseJ.xBaseJException, java.io.IOException { _dbf.gotoRecord(recno); }");
+					" public void delete(boolean delete) throws org.xBaseJ.xBaseJException, java.io.IOException { if (delete) _dbf.delete(); else _dbf.undelete();" + afterChange + " }");
+			InstrumentationGenerator.writeSeek(out, dbfRecordSimpleClassName);
 			out.println(
-					" public void append() throws org.xBaseJ.xBaseJException, java.io.IOException { _dbf.write(); }");
+					" public void append() throws org.xBaseJ.xBaseJException, java.io.IOException { " + write + " clearDirty(); clearDecoded(); recordWritten();" + afterWrite + " }");
 			out.println(
-					" public void update() throws org.xBaseJ.xBaseJException, java.io.IOException { _dbf.update(); }");
+					" public void update() throws org.xBaseJ.xBaseJException, java.io.IOException { _dbf.update(); clearDirty(); recordWritten();" + afterChange + " }");
 			out.println(" public void blank() throws org.xBaseJ.xBaseJException {");
 			for (Element element : elements) {
 				String fieldName = element.getSimpleName().toString();
@@ -390,6 +520,7 @@ public class DBFFieldProcessor extends AbstractProcessor {
 					out.println("  set" + methodSubname(fieldName) + "(\"\");");
 				}
 			}
+			out.println("  clearDecoded();");
 			out.println(" }");
 			out.println();
 
@@ -399,6 +530,13 @@ public class DBFFieldProcessor extends AbstractProcessor {
 			out.println(" }");
 			out.println();
 
+			DirtyTrackingGenerator.writeMembers(out, dbfRecordSimpleClassName, elements, afterChange);
+			FieldCacheGenerator.writeMembers(out, elements, true);
+			InstrumentationGenerator.writeRecordMembers(out, dbfRecordSimpleClassName, features);
+			if (MemoStreamGenerator.hasMemo(elements)) {
+				MemoStreamGenerator.writeRecordMembers(out, dbfRecordSimpleClassName, elements);
+			}
+
 			out.println(" public java.util.List<org.xBaseJ.fields.Field> fields() {");
 			out.println("  java.util.List<org.xBaseJ.fields.Field> tmp = new java.util.ArrayList<>(" + elements.size()
 					+ ");");
@@ -455,6 +593,10 @@ public class DBFFieldProcessor extends AbstractProcessor {
 				if (fieldType.endsWith("PictureField")) {
 					out.println("  if (" + fieldName + "==null) {" + fieldName //
 							+ "=new " + fieldType + "(\"" + dbfFieldName + "\"); list.add(" + fieldName + ");}");
+				} else
+				if (fieldType.endsWith("CurrencyField")) {
+					out.println("  if (" + fieldName + "==null) {" + fieldName //
+							+ "=new " + fieldType + "(\"" + dbfFieldName + "\"); list.add(" + fieldName + ");}");
 				} else {
 					System.err.println("=== UNKNOWN FIELD TYPE: "+fieldType);
 				}
@@ -486,20 +628,174 @@ public class DBFFieldProcessor extends AbstractProcessor {
 				out.println();
 			}
 
-			out.println("  _dbf.write();");
+			out.println("  " + write + " clearDirty(); clearDecoded(); recordWritten();" + afterWrite);
 			out.println("}");
+			out.println();
 
+			if (features.contains(Feature.ROWS)) {
+				final String rowClassName = dbfRecordSimpleClassName + "Row";
+				out.println(" /** Sets all fields of the current record from a detached row. */");
+				out.println(" public void fromRow(" + rowClassName + " row) throws org.xBaseJ.xBaseJException {");
+				for (Element element : elements) {
+					final String methodSubname = methodSubname(element.getSimpleName().toString());
+					out.println("  set" + methodSubname + "(row.get" + methodSubname + "());");
+				}
+				out.println(" }");
+				out.println();
+				out.println(" public void append(" + rowClassName + " row) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+				out.println("  blank();");
+				out.println("  fromRow(row);");
+				out.println("  " + write + " clearDirty(); clearDecoded(); recordWritten();" + afterWrite);
+				out.println(" }");
+				out.println();
+				RowGenerator.writeReadRows(out, dbfRecordSimpleClassName, elements,
+						" throws org.xBaseJ.xBaseJException, java.io.IOException");
+			}
+
+			if (BulkWriterGenerator.supports(elements)) {
+				final String bulkWriterClassName = dbfRecordSimpleClassName + "BulkWriter";
+				out.println();
+				out.println(" /**");
+				out.println("  * Appends all records to the DBF file through a {@link " + bulkWriterClassName + "},");
+				out.println("  * which updates the header once. If appending fails the file keeps its previous");
+				out.println("  * records. DBF handles already open on the file must be reopened to see the new ones.");
+				out.println("  */");
+				out.println(" public static int appendAll(java.nio.file.Path file, java.lang.Iterable<? extends "
+						+ dbfRecordSimpleClassName + "> data) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+				out.println("  return appendAll(file, data.iterator());");
+				out.println(" }");
+				out.println();
+				out.println(" public static int appendAll(java.nio.file.Path file, java.util.stream.Stream<? extends "
+						+ dbfRecordSimpleClassName + "> data) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+				out.println("  return appendAll(file, data.iterator());");
+				out.println(" }");
+				out.println();
+				out.println(" private static int appendAll(java.nio.file.Path file, java.util.Iterator<? extends "
+						+ dbfRecordSimpleClassName + "> data) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+				out.println("  try (" + bulkWriterClassName + " writer = new " + bulkWriterClassName + "(file)) {");
+				out.println("   try {");
+				out.println("    while (data.hasNext()) {");
+				out.println("     writer.append(data.next());");
+				out.println("    }");
+				out.println("   } catch (org.xBaseJ.xBaseJException | java.io.IOException | java.lang.RuntimeException e) {");
+				out.println("    writer.abort();");
+				out.println("    throw e;");
+				out.println("   }");
+				out.println("   return writer.getAppendedCount();");
+				out.println("  }");
+				out.println(" }");
+				out.println();
+				ImportGenerator.writeStatics(out, dbfRecordSimpleClassName);
+			}
+
+			out.println(" private org.xBaseJ.cp.CharsetMapper _charsetMapper;");
+			out.println();
 			out.println(" public void setCharsetMapper(org.xBaseJ.cp.CharsetMapper mapper) ");
 			out.println(" {");
+			out.println("   this._charsetMapper = mapper;");
 			for (Element element : elements) {
 				String fieldName = element.getSimpleName().toString();
-				out.println("   this." + fieldName + ".setMapper(mapper);");
+				out.println("   if (this." + fieldName + " != null) this." + fieldName + ".setMapper(mapper);");
 			}
 			out.println("}");
+			out.println();
+
+			out.println(" /** The charset of the attached DBF encoding, for the raw byte readers of its file. */");
+			out.println(" private java.nio.charset.Charset charset() {");
+			out.println("  return java.nio.charset.Charset.forName(_dbf.getEncodingType());");
+			out.println(" }");
+			out.println();
+
+			final String readerClassName = dbfRecordSimpleClassName + "MappedReader";
+			out.println(" /**");
+			out.println("  * A {@link " + readerClassName + "} on the attached DBF file, with its encoding and the");
+			out.println("  * charset mapper of this record.");
+			out.println("  */");
+			out.println(" private " + readerClassName + " openMappedReader() throws java.io.IOException {");
+			out.println("  " + readerClassName + " reader = new " + readerClassName
+					+ "(java.nio.file.Paths.get(_dbf.getName()), charset());");
+			out.println("  reader.setCharsetMapper(_charsetMapper);");
+			out.println("  return reader;");
+			out.println(" }");
+			out.println();
+
+			RecordStreamGenerator.write(out, dbfRecordSimpleClassName);
+			MigrationGenerator.writeRecordMembers(out, dbfRecordSimpleClassName, afterChange);
+			if (features.contains(Feature.SORT)) {
+				SortGenerator.writeRecordMembers(out, dbfRecordSimpleClassName);
+			}
+
+			out.println(" /**");
+			out.println("  * Filtered scan of the attached DBF file through a {@link " + dbfRecordSimpleClassName
+					+ "MappedReader}, testing the raw");
+			out.println("  * record bytes. Closing the scan closes the reader. Seek this record to the record");
+			out.println("  * number of a match to update or delete it. The reader uses the encoding of the");
+			out.println("  * attached DBF and the charset mapper of this record.");
+			out.println("  */");
+			out.println(" public " + readerClassName + ".Scan scan() throws java.io.IOException {");
+			out.println("  return openMappedReader().scan(true);");
+			out.println(" }");
+			out.println();
+
+			if (features.contains(Feature.FOLLOWER)) {
+				final String followerClassName = dbfRecordSimpleClassName + "Follower";
+				out.println(" /**");
+				out.println("  * Follows the records appended to the attached DBF file from record number");
+				out.println("  * fromRecno on, see {@link " + followerClassName + "}, with the encoding of the attached");
+				out.println("  * DBF and the charset mapper of this record.");
+				out.println("  */");
+				out.println(" public " + followerClassName + " follow(int fromRecno) throws java.io.IOException {");
+				out.println("  return follow(fromRecno, " + followerClassName + ".DEFAULT_POLL_INTERVAL);");
+				out.println(" }");
+				out.println();
+				out.println(" public " + followerClassName
+						+ " follow(int fromRecno, java.time.Duration pollInterval) throws java.io.IOException {");
+				out.println("  " + followerClassName + " follower = new " + followerClassName
+						+ "(java.nio.file.Paths.get(_dbf.getName()), fromRecno, pollInterval, charset());");
+				out.println("  follower.setCharsetMapper(_charsetMapper);");
+				out.println("  return follower;");
+				out.println(" }");
+				out.println();
+			}
+
+			out.println(" /**");
+			out.println("  * Exports the records of the attached DBF file that are not deleted as CSV, through a");
+			out.println("  * {@link " + readerClassName + "} using the encoding of the attached DBF and the charset");
+			out.println("  * mapper of this record.");
+			out.println("  */");
+			out.println(" public long writeCsv(java.io.OutputStream out, " + readerClassName
+					+ ".CsvOptions options) throws java.io.IOException {");
+			out.println("  try (" + readerClassName + " reader = openMappedReader()) {");
+			out.println("   return reader.writeCsv(out, options);");
+			out.println("  }");
+			out.println(" }");
+			out.println();
+			out.println(" /** Exports the records that are not deleted as UTF-8 JSON lines, see {@link #writeCsv}. */");
+			out.println(" public long writeJsonLines(java.io.OutputStream out) throws java.io.IOException {");
+			out.println("  try (" + readerClassName + " reader = openMappedReader()) {");
+			out.println("   return reader.writeJsonLines(out);");
+			out.println("  }");
+			out.println(" }");
+			out.println();
+
+			if (features.contains(Feature.COLUMNS)) {
+				out.println(" /**");
+				out.println("  * Decodes up to count records starting at fromRecno into the column vectors of the");
+				out.println("  * batch, through a {@link " + readerClassName + "} on the attached DBF file, with its");
+				out.println("  * encoding.");
+				out.println("  */");
+				out.println(" public int readColumns(int fromRecno, int count, " + dbfRecordSimpleClassName
+						+ "ColumnBatch batch) throws java.io.IOException {");
+				out.println("  try (" + readerClassName + " reader = openMappedReader()) {");
+				out.println("   return reader.readColumns(fromRecno, count, batch);");
+				out.println("  }");
+				out.println(" }");
+				out.println();
+			}
 
 			out.println();
 			out.println("	@Override\n" + "	public java.util.Iterator<" + dbfRecordSimpleClassName
-					+ "> iterator() {\n" + "		final org.xBaseJ.DBF dbf = this._dbf;\n"
+					+ "> iterator() {\n"
 					+ "		final int length = this._dbf.getRecordCount();\n"
 					+ "		return new java.util.Iterator<>() {\n" + "			private int recno = 0;\n" + "\n"
 					+ "			@Override\n" + "			public boolean hasNext() {\n"
@@ -510,7 +806,7 @@ public class DBFFieldProcessor extends AbstractProcessor {
 					+ "					throw new java.lang.RuntimeException(e);\n" + "				}\n"
 					+ "				return " + dbfRecordSimpleClassName + ".this;\n" + "			}\n" + "\n"
 					+ "			@Override\n" + "			public void remove() {\n" + "				try {\n"
-					+ "					seek(recno);\n" + "					dbf.delete();\n"
+					+ "					seek(recno);\n" + "					delete(true);\n"
 					+ "				} catch (org.xBaseJ.xBaseJException | java.io.IOException e) {\n"
 					+ "					throw new java.lang.RuntimeException(e);\n" + "				}\n"
 					+ "			}\n" + "		};\n" + "	}");
@@ -519,9 +815,69 @@ public class DBFFieldProcessor extends AbstractProcessor {
 			out.println("}");
 			out.println();
 		}
+
+		try (PrintWriter out = createSourceFile(dbfRecordClassName + "Layout", struct)) {
+			LayoutGenerator.write(out, packageName, dbfRecordSimpleClassName, elements);
+		}
+
+		try (PrintWriter out = createSourceFile(dbfRecordClassName + "MappedReader", struct)) {
+			MappedReaderGenerator.write(out, packageName, dbfRecordSimpleClassName, elements, indexes, features);
+		}
+
+		if (features.contains(Feature.COLUMNS)) {
+			try (PrintWriter out = createSourceFile(dbfRecordClassName + "ColumnBatch", struct)) {
+				ColumnBatchGenerator.write(out, packageName, dbfRecordSimpleClassName, elements);
+			}
+		}
+
+		if (features.contains(Feature.FOLLOWER)) {
+			try (PrintWriter out = createSourceFile(dbfRecordClassName + "Follower", struct)) {
+				FollowerGenerator.write(out, packageName, dbfRecordSimpleClassName);
+			}
+		}
+
+		if (features.contains(Feature.SORT)) {
+			try (PrintWriter out = createSourceFile(dbfRecordClassName + "SortKey", struct)) {
+				SortGenerator.write(out, packageName, dbfRecordSimpleClassName, elements);
+			}
+		}
+
+		if (features.contains(Feature.SCANNER)) {
+			try (PrintWriter out = createSourceFile(dbfRecordClassName + "DatasetScanner", struct)) {
+				DatasetScannerGenerator.write(out, packageName, dbfRecordSimpleClassName);
+			}
+		}
+
+		try (PrintWriter out = createSourceFile(dbfRecordClassName + "Listener", struct)) {
+			InstrumentationGenerator.writeListener(out, packageName, dbfRecordSimpleClassName);
+		}
+
+		if (features.contains(Feature.METRICS)) {
+			try (PrintWriter out = createSourceFile(dbfRecordClassName + "Metrics", struct)) {
+				InstrumentationGenerator.writeMetrics(out, packageName, dbfRecordSimpleClassName);
+			}
+		}
+
+		if (features.contains(Feature.JFR)) {
+			try (PrintWriter out = createSourceFile(dbfRecordClassName + "JfrListener", struct)) {
+				InstrumentationGenerator.writeJfrListener(out, packageName, dbfRecordSimpleClassName, features);
+			}
+		}
+
+		if (features.contains(Feature.ROWS)) {
+			try (PrintWriter out = createSourceFile(dbfRecordClassName + "Row", struct)) {
+				RowGenerator.write(out, packageName, dbfRecordSimpleClassName, elements);
+			}
+		}
+
+		if (BulkWriterGenerator.supports(elements)) {
+			try (PrintWriter out = createSourceFile(dbfRecordClassName + "BulkWriter", struct)) {
+				BulkWriterGenerator.write(out, packageName, dbfRecordSimpleClassName, elements, features);
+			}
+		}
 	}
 
-	private static String methodSubname(final String fieldName) {
+	static String methodSubname(final String fieldName) {
 		String newFieldName = fieldName;
 		while (newFieldName.contains("_") && newFieldName.length()>=2) {
 			int idx = newFieldName.indexOf("_");
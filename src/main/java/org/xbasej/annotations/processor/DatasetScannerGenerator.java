@@ -0,0 +1,298 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+
+/**
+ * Writes {@code <Record>DatasetScanner}, which scans many DBF files of the same
+ * structure concurrently. Every file is read through its own DBF handle and
+ * record instance, folded into its own result container, and the containers of
+ * the files read successfully are combined in the order the files were given.
+ * A file failing to open or read is reported in the result and does not stop
+ * the others.
+ */
+final class DatasetScannerGenerator {
+
+	private DatasetScannerGenerator() {
+	}
+
+	static void write(PrintWriter out, String packageName, String dbfRecordSimpleClassName) {
+		final String scannerClassName = dbfRecordSimpleClassName + "DatasetScanner";
+		final String record = dbfRecordSimpleClassName;
+
+		if (packageName != null) {
+			out.print("package ");
+			out.print(packageName);
+			out.println(";");
+			out.println();
+		}
+
+		out.println("/**");
+		out.println(" * Scans a set of DBF files holding {@link " + record + "} records concurrently. At most");
+		out.println(" * {@link #parallelism} files are read at the same time, each through its own DBF handle");
+		out.println(" * and " + record + " instance, on virtual threads where the runtime has them and on a");
+		out.println(" * pool of platform threads otherwise, or on the executor given to {@link #executor}.");
+		out.println(" * Deleted records are skipped unless {@link #includeDeleted} is set.");
+		out.println(" * <p>");
+		out.println(" * Every file is folded into a container of its own, the containers of the files read");
+		out.println(" * successfully are then combined in the order of the files. A file that fails is");
+		out.println(" * left out of the result and reported by {@link Result#getFailures()}, the other");
+		out.println(" * files are still scanned.");
+		out.println(" */");
+		out.println("public class " + scannerClassName);
+		out.println(" {");
+		out.println();
+		out.println(" private final java.util.List<java.nio.file.Path> _files;");
+		out.println(" private int _parallelism = java.lang.Runtime.getRuntime().availableProcessors();");
+		out.println(" private java.util.concurrent.Executor _executor;");
+		out.println(" private boolean _includeDeleted;");
+		out.println(" private boolean _requireLayout;");
+		out.println(" private org.xBaseJ.cp.CharsetMapper _charsetMapper;");
+		out.println();
+
+		out.println(" public " + scannerClassName + "(java.util.Collection<? extends java.nio.file.Path> files) {");
+		out.println("  _files = java.util.List.copyOf(files);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** The files of directory whose name matches glob, in name order, for example {@code \"*.dbf\"}. */");
+		out.println(" public static " + scannerClassName + " of(java.nio.file.Path directory, java.lang.String glob)");
+		out.println("   throws java.io.IOException {");
+		out.println("  java.util.List<java.nio.file.Path> files = new java.util.ArrayList<>();");
+		out.println("  try (java.nio.file.DirectoryStream<java.nio.file.Path> stream = java.nio.file.Files.newDirectoryStream(directory, glob)) {");
+		out.println("   for (java.nio.file.Path file : stream) {");
+		out.println("    if (java.nio.file.Files.isRegularFile(file)) files.add(file);");
+		out.println("   }");
+		out.println("  }");
+		out.println("  java.util.Collections.sort(files);");
+		out.println("  return new " + scannerClassName + "(files);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Maximum number of files read at the same time, the number of processors by default. */");
+		out.println(" public " + scannerClassName + " parallelism(int parallelism) {");
+		out.println("  if (parallelism < 1) throw new java.lang.IllegalArgumentException(\"parallelism < 1: \" + parallelism);");
+		out.println("  _parallelism = parallelism;");
+		out.println("  return this;");
+		out.println(" }");
+		out.println();
+		out.println(" /**");
+		out.println("  * Runs the file scans on executor, which is not shut down. The number of files read");
+		out.println("  * at the same time is still bounded by {@link #parallelism}. Null restores the default.");
+		out.println("  */");
+		out.println(" public " + scannerClassName + " executor(java.util.concurrent.Executor executor) {");
+		out.println("  _executor = executor;");
+		out.println("  return this;");
+		out.println(" }");
+		out.println();
+		out.println(" public " + scannerClassName + " includeDeleted(boolean includeDeleted) {");
+		out.println("  _includeDeleted = includeDeleted;");
+		out.println("  return this;");
+		out.println(" }");
+		out.println();
+		out.println(" /**");
+		out.println("  * Reports files whose header does not match {@link " + record + "Layout} as failures");
+		out.println("  * instead of scanning them with the mismatching fields left blank.");
+		out.println("  */");
+		out.println(" public " + scannerClassName + " requireLayout(boolean requireLayout) {");
+		out.println("  _requireLayout = requireLayout;");
+		out.println("  return this;");
+		out.println(" }");
+		out.println();
+		out.println(" public " + scannerClassName + " charsetMapper(org.xBaseJ.cp.CharsetMapper mapper) {");
+		out.println("  _charsetMapper = mapper;");
+		out.println("  return this;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /**");
+		out.println("  * Folds the records of every file into identity with accumulator, then combines the");
+		out.println("  * results of the files with combiner. The " + record + " handed to accumulator is reused");
+		out.println("  * for the next record of the same file.");
+		out.println("  */");
+		out.println(" public <R> Result<R> reduce(R identity, java.util.function.BiFunction<R, ? super " + record
+				+ ", R> accumulator,");
+		out.println("   java.util.function.BinaryOperator<R> combiner) throws java.lang.InterruptedException {");
+		out.println("  return run(() -> identity, accumulator, combiner);");
+		out.println(" }");
+		out.println();
+		out.println(" /**");
+		out.println("  * Collects the records of every file into a container of its own, the containers are");
+		out.println("  * merged with the combiner of collector and finished once.");
+		out.println("  */");
+		out.println(" public <A, R> Result<R> collect(java.util.stream.Collector<? super " + record
+				+ ", A, R> collector) throws java.lang.InterruptedException {");
+		out.println("  java.util.function.BiConsumer<A, ? super " + record + "> accumulator = collector.accumulator();");
+		out.println("  Result<A> result = run(collector.supplier(), (container, record) -> {");
+		out.println("   accumulator.accept(container, record);");
+		out.println("   return container;");
+		out.println("  }, collector.combiner());");
+		out.println("  return new Result<>(collector.finisher().apply(result.value), result.records, result.files, result.failures);");
+		out.println(" }");
+		out.println();
+		out.println(" /** Calls action for every record, from several threads at the same time. */");
+		out.println(" public Result<java.lang.Void> forEach(java.util.function.Consumer<? super " + record
+				+ "> action) throws java.lang.InterruptedException {");
+		out.println("  return run(() -> null, (none, record) -> {");
+		out.println("   action.accept(record);");
+		out.println("   return null;");
+		out.println("  }, (left, right) -> null);");
+		out.println(" }");
+		out.println();
+
+		out.println(" private <A> Result<A> run(java.util.function.Supplier<A> supplier,");
+		out.println("   java.util.function.BiFunction<A, ? super " + record
+				+ ", A> accumulator, java.util.function.BinaryOperator<A> combiner)");
+		out.println("   throws java.lang.InterruptedException {");
+		out.println("  final int count = _files.size();");
+		out.println("  final java.lang.Object[] values = new java.lang.Object[count];");
+		out.println("  final long[] records = new long[count];");
+		out.println("  final java.lang.Throwable[] failures = new java.lang.Throwable[count];");
+		out.println("  final java.util.concurrent.Semaphore permits = new java.util.concurrent.Semaphore(_parallelism);");
+		out.println("  final java.util.concurrent.CountDownLatch done = new java.util.concurrent.CountDownLatch(count);");
+		out.println("  java.util.concurrent.ExecutorService owned = _executor == null ? newExecutor(_parallelism) : null;");
+		out.println("  java.util.concurrent.Executor executor = owned == null ? _executor : owned;");
+		out.println("  int submitted = 0;");
+		out.println("  try {");
+		out.println("   for (; submitted < count; submitted++) {");
+		out.println("    final int file = submitted;");
+		out.println("    permits.acquire();");
+		out.println("    try {");
+		out.println("     executor.execute(() -> {");
+		out.println("      try {");
+		out.println("       A value = supplier.get();");
+		out.println("       long n = 0;");
+		out.println("       org.xBaseJ.DBF dbf = new org.xBaseJ.DBF(_files.get(file).toString());");
+		out.println("       try {");
+		out.println("        " + record + " record = new " + record + "();");
+		out.println("        record.attach(dbf);");
+		out.println("        if (_requireLayout && record.getLayoutMismatches() != null) {");
+		out.println("         throw new java.lang.IllegalStateException(record.getLayoutMismatches());");
+		out.println("        }");
+		out.println("        if (_charsetMapper != null) record.setCharsetMapper(_charsetMapper);");
+		out.println("        for (int recno = 1, last = dbf.getRecordCount(); recno <= last; recno++) {");
+		out.println("         record.seek(recno);");
+		out.println("         if (!_includeDeleted && record.deleted()) continue;");
+		out.println("         value = accumulator.apply(value, record);");
+		out.println("         n++;");
+		out.println("        }");
+		out.println("       } finally {");
+		out.println("        dbf.close();");
+		out.println("       }");
+		out.println("       values[file] = value;");
+		out.println("       records[file] = n;");
+		out.println("      } catch (java.lang.Throwable e) {");
+		out.println("       failures[file] = e;");
+		out.println("      } finally {");
+		out.println("       permits.release();");
+		out.println("       done.countDown();");
+		out.println("      }");
+		out.println("     });");
+		out.println("    } catch (java.util.concurrent.RejectedExecutionException e) {");
+		out.println("     failures[file] = e;");
+		out.println("     permits.release();");
+		out.println("     done.countDown();");
+		out.println("    }");
+		out.println("   }");
+		out.println("   done.await();");
+		out.println("  } catch (java.lang.InterruptedException e) {");
+		out.println("   if (owned != null) owned.shutdownNow();");
+		out.println("   throw e;");
+		out.println("  } finally {");
+		out.println("   if (owned != null) owned.shutdown();");
+		out.println("  }");
+		out.println();
+		out.println("  java.util.Map<java.nio.file.Path, java.lang.Exception> failed = new java.util.LinkedHashMap<>();");
+		out.println("  A total = null;");
+		out.println("  boolean first = true;");
+		out.println("  long recordCount = 0;");
+		out.println("  for (int file = 0; file < count; file++) {");
+		out.println("   java.lang.Throwable failure = failures[file];");
+		out.println("   if (failure instanceof java.lang.Error) throw (java.lang.Error) failure;");
+		out.println("   if (failure != null) {");
+		out.println("    failed.put(_files.get(file), (java.lang.Exception) failure);");
+		out.println("    continue;");
+		out.println("   }");
+		out.println("   @SuppressWarnings(\"unchecked\")");
+		out.println("   A value = (A) values[file];");
+		out.println("   total = first ? value : combiner.apply(total, value);");
+		out.println("   first = false;");
+		out.println("   recordCount += records[file];");
+		out.println("  }");
+		out.println("  if (first) total = supplier.get();");
+		out.println("  return new Result<>(total, recordCount, count - failed.size(), failed);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /**");
+		out.println("  * A virtual thread per file if the runtime has them, else a pool of parallelism");
+		out.println("  * platform daemon threads.");
+		out.println("  */");
+		out.println(" private static java.util.concurrent.ExecutorService newExecutor(int parallelism) {");
+		out.println("  try {");
+		out.println("   return (java.util.concurrent.ExecutorService) java.util.concurrent.Executors.class");
+		out.println("     .getMethod(\"newVirtualThreadPerTaskExecutor\").invoke(null);");
+		out.println("  } catch (java.lang.ReflectiveOperationException e) {");
+		out.println("   return java.util.concurrent.Executors.newFixedThreadPool(parallelism, task -> {");
+		out.println("    java.lang.Thread thread = new java.lang.Thread(task, \"" + scannerClassName + "\");");
+		out.println("    thread.setDaemon(true);");
+		out.println("    return thread;");
+		out.println("   });");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** The combined value of the files read successfully and the failures of the others. */");
+		out.println(" public static final class Result<R> {");
+		out.println("  private final R value;");
+		out.println("  private final long records;");
+		out.println("  private final int files;");
+		out.println("  private final java.util.Map<java.nio.file.Path, java.lang.Exception> failures;");
+		out.println();
+		out.println("  Result(R value, long records, int files, java.util.Map<java.nio.file.Path, java.lang.Exception> failures) {");
+		out.println("   this.value = value;");
+		out.println("   this.records = records;");
+		out.println("   this.files = files;");
+		out.println("   this.failures = java.util.Collections.unmodifiableMap(failures);");
+		out.println("  }");
+		out.println();
+		out.println("  public R getValue() {");
+		out.println("   return value;");
+		out.println("  }");
+		out.println();
+		out.println("  /** Records handed to the accumulator by the files read successfully. */");
+		out.println("  public long getRecordCount() {");
+		out.println("   return records;");
+		out.println("  }");
+		out.println();
+		out.println("  /** Number of files read successfully. */");
+		out.println("  public int getFileCount() {");
+		out.println("   return files;");
+		out.println("  }");
+		out.println();
+		out.println("  /** The files that failed with their exception, in the order of the files. */");
+		out.println("  public java.util.Map<java.nio.file.Path, java.lang.Exception> getFailures() {");
+		out.println("   return failures;");
+		out.println("  }");
+		out.println();
+		out.println("  public boolean isComplete() {");
+		out.println("   return failures.isEmpty();");
+		out.println("  }");
+		out.println();
+		out.println("  /** The value, or an IOException with the failures as suppressed exceptions if a file failed. */");
+		out.println("  public R getValueOrThrow() throws java.io.IOException {");
+		out.println("   if (failures.isEmpty()) return value;");
+		out.println("   java.io.IOException e = new java.io.IOException(failures.size() + \" of \" + (files + failures.size())");
+		out.println("     + \" files failed, first \" + failures.keySet().iterator().next());");
+		out.println("   for (java.lang.Exception failure : failures.values()) e.addSuppressed(failure);");
+		out.println("   throw e;");
+		out.println("  }");
+		out.println();
+		out.println("  @Override");
+		out.println("  public java.lang.String toString() {");
+		out.println("   return \"Result[value=\" + value + \", records=\" + records + \", files=\" + files + \", failures=\" + failures.keySet() + \"]\";");
+		out.println("  }");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+}
@@ -0,0 +1,183 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Writes the dirty field tracking of the record class. Setters skip the
+ * {@code put()} when the field bytes already hold the value and mark the field
+ * dirty otherwise, dropping its cached value, so unchanged records need not be
+ * written back.
+ */
+final class DirtyTrackingGenerator {
+
+	static final int UPDATE_BUFFER_SIZE = 1 << 20;
+
+	private DirtyTrackingGenerator() {
+	}
+
+	/**
+	 * Returns from a setter when the field already holds the value, placed after
+	 * the null check of the field. Picture, memo and fields of unknown type are
+	 * always written.
+	 */
+	static void writeUnchanged(PrintWriter out, String codec, Element element, String parameterType) {
+		String field = "this." + element.getSimpleName();
+		String bytes = field + ".getBytes(), 0, " + field + ".getLength()";
+		String blank = codec + ".isBlank(" + bytes + ")";
+		String condition;
+		switch (FieldKind.of(element)) {
+		case INT:
+		case LONG:
+		case BIG_INTEGER:
+			if (parameterType.equals("java.math.BigInteger")) {
+				condition = "value != null && !" + blank + " && value.equals(" + codec + ".parseBigInteger(" + bytes + "))";
+			} else {
+				condition = "value != java.lang.Long.MIN_VALUE && " + codec + ".parseLong(" + bytes
+						+ ", java.lang.Long.MIN_VALUE) == value";
+			}
+			break;
+		case LOGICAL:
+			condition = "value == null ? " + blank + " : " + field + ".getBytes()[0] == (value ? 'T' : 'F')";
+			break;
+		case FLOAT:
+			condition = "value == null ? " + blank + " : " + codec + ".parseDouble(" + bytes
+					+ ", java.lang.Double.NaN) == value";
+			break;
+		case CURRENCY:
+			condition = "value != null && java.math.BigDecimal.valueOf(" + codec + ".readLongLE(" + field
+					+ ".getBytes(), 0), 4).compareTo(value) == 0";
+			break;
+		case DATE:
+			condition = "value == null ? " + blank + " : " + codec + ".parseEpochDay(" + bytes
+					+ ") == value.toEpochDay()";
+			break;
+		case CHAR:
+			condition = "value != null && " + field + ".getMapper() == null && " + codec + ".equalsPadded(" + bytes
+					+ ", value)";
+			break;
+		case DECIMAL:
+			condition = "value != null && " + codec + ".equalsTrimmed(" + bytes + ", value)";
+			break;
+		default:
+			return;
+		}
+		out.println("  if (" + condition + ") return;");
+	}
+
+	static void writeMarkDirty(PrintWriter out, int index) {
+		out.println("  markDirty(" + index + ");");
+	}
+
+	static void writeMembers(PrintWriter out, String dbfRecordSimpleClassName, Collection<Element> elements,
+			String afterChange) {
+		final String codec = DBFFieldProcessor.CODEC;
+		boolean memo = false;
+		for (Element element : elements) {
+			memo |= FieldKind.of(element).isMemo();
+		}
+
+		out.println(" private final long[] _dirty = new long[" + ((elements.size() + 63) >>> 6) + "];");
+		out.println();
+		out.println(" private void markDirty(int field) {");
+		out.println("  _dirty[field >>> 6] |= 1L << field;");
+		out.println("  _decoded[field >>> 6] &= ~(1L << field);");
+		out.println(" }");
+		out.println();
+		out.println(" private void clearDirty() {");
+		out.println("  java.util.Arrays.fill(_dirty, 0L);");
+		out.println(" }");
+		out.println();
+		out.println(" /** Whether a setter changed a field since the record was read, appended or updated. */");
+		out.println(" public boolean isDirty() {");
+		out.println("  for (long word : _dirty) {");
+		out.println("   if (word != 0) return true;");
+		out.println("  }");
+		out.println("  return false;");
+		out.println(" }");
+		out.println();
+		out.println(" /** Updates the current record only if a field changed, returns whether it did. */");
+		out.println(" public boolean updateIfDirty() throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  if (!isDirty()) return false;");
+		out.println("  update();");
+		out.println("  return true;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /**");
+		out.println("  * Positions this record on every record in turn, calls action and writes back the");
+		out.println("  * records it changed. Returns the number of records written.");
+		if (!memo) {
+			out.println("  * <p>");
+			out.println("  * Changed records are collected and runs of neighbouring ones are written with a");
+			out.println("  * single write of up to " + (UPDATE_BUFFER_SIZE >> 20) + " MiB, bypassing the xBaseJ handle. Index files opened");
+			out.println("  * on the DBF are not maintained, use {@link #updateIfDirty()} for those.");
+		}
+		out.println("  */");
+		out.println(" public int updateAll(java.util.function.Consumer<? super " + dbfRecordSimpleClassName
+				+ "> action) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  int count = _dbf.getRecordCount();");
+		out.println("  int written = 0;");
+		if (memo) {
+			out.println("  for (int recno = 1; recno <= count; recno++) {");
+			out.println("   seek(recno);");
+			out.println("   action.accept(this);");
+			out.println("   if (updateIfDirty()) written++;");
+			out.println("  }");
+			out.println("  return written;");
+			out.println(" }");
+			out.println();
+			return;
+		}
+		out.println("  try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(");
+		out.println("    java.nio.file.Paths.get(_dbf.getName()), java.nio.file.StandardOpenOption.READ,");
+		out.println("    java.nio.file.StandardOpenOption.WRITE)) {");
+		out.println("   " + codec + ".Header header = " + codec + ".readHeader(channel);");
+		out.println("   org.xBaseJ.fields.Field[] fields = new org.xBaseJ.fields.Field[_dbf.getFieldCount()];");
+		out.println("   int length = 1;");
+		out.println("   for (int i = 0; i < fields.length; i++) {");
+		out.println("    fields[i] = _dbf.getField(i + 1);");
+		out.println("    length += fields[i].getLength();");
+		out.println("   }");
+		out.println("   if (length != header.recordLength) {");
+		out.println("    throw new java.lang.IllegalStateException(\"DBF record length \" + header.recordLength + \" != \" + length);");
+		out.println("   }");
+		out.println("   byte[] run = new byte[java.lang.Math.max(1, " + UPDATE_BUFFER_SIZE + " / length) * length];");
+		out.println("   int runStart = 0;");
+		out.println("   int runCount = 0;");
+		out.println("   for (int recno = 1; recno <= count; recno++) {");
+		out.println("    seek(recno);");
+		out.println("    action.accept(this);");
+		out.println("    if (!isDirty()) continue;");
+		out.println("    if (runCount > 0 && (runStart + runCount != recno || (runCount + 1) * length > run.length)) {");
+		out.println("     " + codec + ".writeFully(channel, java.nio.ByteBuffer.wrap(run, 0, runCount * length),");
+		out.println("       header.headerLength + (long) (runStart - 1) * length);");
+		out.println("     runCount = 0;");
+		out.println("    }");
+		out.println("    if (runCount == 0) runStart = recno;");
+		out.println("    int p = runCount * length;");
+		out.println("    run[p++] = deleted() ? " + codec + ".DELETED : " + codec + ".NOT_DELETED;");
+		out.println("    for (org.xBaseJ.fields.Field field : fields) {");
+		out.println("     java.lang.System.arraycopy(field.getBytes(), 0, run, p, field.getLength());");
+		out.println("     p += field.getLength();");
+		out.println("    }");
+		out.println("    runCount++;");
+		out.println("    clearDirty();");
+		out.println("    written++;");
+		out.println("    recordWritten();");
+		out.println("   }");
+		out.println("   if (runCount > 0) {");
+		out.println("    " + codec + ".writeFully(channel, java.nio.ByteBuffer.wrap(run, 0, runCount * length),");
+		out.println("      header.headerLength + (long) (runStart - 1) * length);");
+		out.println("   }");
+		out.println("  }");
+		if (!afterChange.isEmpty()) {
+			out.println("  if (written > 0)" + afterChange);
+		}
+		out.println("  return written;");
+		out.println(" }");
+		out.println();
+	}
+}
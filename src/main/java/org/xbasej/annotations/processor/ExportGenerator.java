@@ -0,0 +1,230 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes the CSV and JSON lines export of {@code <Record>MappedReader}. Column
+ * names are the DBF field names known at compile time, cells are copied from the
+ * record bytes into one reusable output buffer and escaped only when needed.
+ * Memo and picture fields are not exported.
+ */
+final class ExportGenerator {
+
+	private ExportGenerator() {
+	}
+
+	private static List<Element> exported(Collection<Element> elements) {
+		List<Element> exported = new ArrayList<>();
+		for (Element element : elements) {
+			if (!FieldKind.of(element).isMemo()) {
+				exported.add(element);
+			}
+		}
+		return exported;
+	}
+
+	private static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	static void write(PrintWriter out, String dbfRecordSimpleClassName, Collection<Element> elements) {
+		final String codec = DBFFieldProcessor.CODEC;
+		final List<Element> exported = exported(elements);
+
+		out.println(" /** CSV settings of {@link #writeCsv} and of the bulk writer import, RFC 4180 by default. */");
+		out.println(" public static final class CsvOptions {");
+		out.println("  byte _delimiter = ',';");
+		out.println("  byte _quote = '\"';");
+		out.println("  boolean _header = true;");
+		out.println("  java.lang.String _lineSeparator = \"\\r\\n\";");
+		out.println("  java.nio.charset.Charset _charset = java.nio.charset.StandardCharsets.UTF_8;");
+		out.println();
+		out.println("  private static byte ascii(char c) {");
+		out.println("   if (c >= 0x80) throw new java.lang.IllegalArgumentException(\"Not an ASCII character: \" + c);");
+		out.println("   return (byte) c;");
+		out.println("  }");
+		out.println();
+		out.println("  public CsvOptions delimiter(char delimiter) {");
+		out.println("   _delimiter = ascii(delimiter);");
+		out.println("   return this;");
+		out.println("  }");
+		out.println();
+		out.println("  public CsvOptions quote(char quote) {");
+		out.println("   _quote = ascii(quote);");
+		out.println("   return this;");
+		out.println("  }");
+		out.println();
+		out.println("  /** Whether the first line holds the DBF field names. */");
+		out.println("  public CsvOptions header(boolean header) {");
+		out.println("   _header = header;");
+		out.println("   return this;");
+		out.println("  }");
+		out.println();
+		out.println("  /** Written by the export, imported lines may end with LF, CRLF or CR. */");
+		out.println("  public CsvOptions lineSeparator(java.lang.String lineSeparator) {");
+		out.println("   _lineSeparator = lineSeparator;");
+		out.println("   return this;");
+		out.println("  }");
+		out.println();
+		out.println("  /** Charset of the CSV text, ASCII compatible. */");
+		out.println("  public CsvOptions charset(java.nio.charset.Charset charset) {");
+		out.println("   _charset = charset;");
+		out.println("   return this;");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" private org.xBaseJ.cp.CharsetMapper _mapper;");
+		out.println();
+		out.println(" /** Applied by the exports to character data that is not plain ASCII. */");
+		out.println(" public void setCharsetMapper(org.xBaseJ.cp.CharsetMapper mapper) {");
+		out.println("  _mapper = mapper;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Writes the records that are not deleted as CSV, returns the number of records written. */");
+		out.println(" public long writeCsv(java.io.OutputStream stream, CsvOptions options) throws java.io.IOException {");
+		out.println("  " + codec + ".Output out = new " + codec + ".Output(stream, 1 << 16);");
+		out.println("  byte[] lineSeparator = options._lineSeparator.getBytes(options._charset);");
+		out.println("  byte delimiter = options._delimiter;");
+		out.println("  if (options._header) {");
+		String separator = "";
+		for (Element element : exported) {
+			out.println("   " + separator + "out.writeAscii(" + quote(element.getAnnotation(DBFField.class).name().toUpperCase())
+					+ ");");
+			separator = "out.write(delimiter); ";
+		}
+		out.println("   out.write(lineSeparator, 0, lineSeparator.length);");
+		out.println("  }");
+		out.println("  long rows = 0;");
+		out.println("  for (int recno = 1; recno <= _recordCount; recno++) {");
+		out.println("   seek(recno);");
+		out.println("   if (_record[0] == " + codec + ".DELETED) continue;");
+		separator = "";
+		for (Element element : exported) {
+			if (!separator.isEmpty()) {
+				out.println("   " + separator);
+			}
+			writeCsvCell(out, codec, element);
+			separator = "out.write(delimiter);";
+		}
+		out.println("   out.write(lineSeparator, 0, lineSeparator.length);");
+		out.println("   rows++;");
+		out.println("  }");
+		out.println("  out.flush();");
+		out.println("  return rows;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /**");
+		out.println("  * Writes the records that are not deleted as UTF-8 JSON lines, one object per");
+		out.println("  * record keyed by DBF field name, blank values as null. Returns the number of");
+		out.println("  * records written.");
+		out.println("  */");
+		out.println(" public long writeJsonLines(java.io.OutputStream stream) throws java.io.IOException {");
+		out.println("  " + codec + ".Output out = new " + codec + ".Output(stream, 1 << 16);");
+		out.println("  long rows = 0;");
+		out.println("  for (int recno = 1; recno <= _recordCount; recno++) {");
+		out.println("   seek(recno);");
+		out.println("   if (_record[0] == " + codec + ".DELETED) continue;");
+		String prefix = "{";
+		for (Element element : exported) {
+			String key = quote(element.getAnnotation(DBFField.class).name().toUpperCase());
+			out.println("   out.writeAscii(" + quote(prefix + key + ":") + ");");
+			writeJsonValue(out, codec, element);
+			prefix = ",";
+		}
+		out.println("   out.writeAscii(" + quote(exported.isEmpty() ? "{}\n" : "}\n").replace("\n", "\\n") + ");");
+		out.println("   rows++;");
+		out.println("  }");
+		out.println("  out.flush();");
+		out.println("  return rows;");
+		out.println(" }");
+		out.println();
+	}
+
+	private static void writeCsvCell(PrintWriter out, String codec, Element element) {
+		FieldKind kind = FieldKind.of(element);
+		String fieldName = element.getSimpleName().toString();
+		String offset = "_" + fieldName + "_offset";
+		String bytes = "_record, " + offset + ", _" + fieldName + "_length";
+		String indent = "   ";
+		out.println(indent + "if (" + offset + " >= 0) {");
+		switch (kind) {
+		case DATE:
+			out.println(indent + " if (" + codec + ".parseEpochDay(" + bytes + ") != " + codec + ".NO_DATE) "
+					+ codec + ".writeIsoDate(out, _record, " + offset + ");");
+			break;
+		case LOGICAL:
+			out.println(indent + " int value = " + codec + ".parseLogical(" + bytes + ");");
+			out.println(indent + " if (value != " + codec + ".LOGICAL_BLANK) out.writeAscii(value == 1 ? \"true\" : \"false\");");
+			break;
+		case CURRENCY:
+			out.println(indent + " out.writeScaled(" + codec + ".readLongLE(_record, " + offset + "), 4);");
+			break;
+		default:
+			boolean text = kind == FieldKind.CHAR || kind == FieldKind.UNKNOWN;
+			DBFField a = element.getAnnotation(DBFField.class);
+			boolean ltrim = !text || a.ltrim();
+			boolean rtrim = !text || a.rtrim();
+			out.println(indent + " long range = " + codec + ".trimmedRange(" + bytes + ", " + ltrim + ", " + rtrim + ");");
+			out.println(indent + " " + codec + ".writeCsv(out, _record, (int) (range >>> 32), (int) range, delimiter,"
+					+ " options._quote, _charset, options._charset, _mapper);");
+			break;
+		}
+		out.println(indent + "}");
+	}
+
+	private static void writeJsonValue(PrintWriter out, String codec, Element element) {
+		FieldKind kind = FieldKind.of(element);
+		String fieldName = element.getSimpleName().toString();
+		String offset = "_" + fieldName + "_offset";
+		String bytes = "_record, " + offset + ", _" + fieldName + "_length";
+		String indent = "   ";
+		switch (kind) {
+		case DATE:
+			out.println(indent + "if (" + offset + " < 0 || " + codec + ".parseEpochDay(" + bytes + ") == " + codec
+					+ ".NO_DATE) {");
+			out.println(indent + " out.writeAscii(\"null\");");
+			out.println(indent + "} else {");
+			out.println(indent + " out.write('\"');");
+			out.println(indent + " " + codec + ".writeIsoDate(out, _record, " + offset + ");");
+			out.println(indent + " out.write('\"');");
+			out.println(indent + "}");
+			break;
+		case LOGICAL:
+			out.println(indent + "int " + fieldName + "Value = " + offset + " < 0 ? " + codec + ".LOGICAL_BLANK : "
+					+ codec + ".parseLogical(" + bytes + ");");
+			out.println(indent + "out.writeAscii(" + fieldName + "Value == " + codec + ".LOGICAL_BLANK ? \"null\" : "
+					+ fieldName + "Value == 1 ? \"true\" : \"false\");");
+			break;
+		case CURRENCY:
+			out.println(indent + "if (" + offset + " < 0) out.writeAscii(\"null\");");
+			out.println(indent + "else out.writeScaled(" + codec + ".readLongLE(_record, " + offset + "), 4);");
+			break;
+		case CHAR:
+		case UNKNOWN:
+			DBFField a = element.getAnnotation(DBFField.class);
+			boolean ltrim = kind == FieldKind.CHAR && a.ltrim();
+			boolean rtrim = kind == FieldKind.CHAR && a.rtrim();
+			out.println(indent + "if (" + offset + " < 0) {");
+			out.println(indent + " out.writeAscii(\"null\");");
+			out.println(indent + "} else {");
+			out.println(indent + " long range = " + codec + ".trimmedRange(" + bytes + ", " + ltrim + ", " + rtrim + ");");
+			out.println(indent + " " + codec + ".writeJsonString(out, _record, (int) (range >>> 32), (int) range, _charset, _mapper);");
+			out.println(indent + "}");
+			break;
+		default:
+			out.println(indent + "if (" + offset + " < 0) out.writeAscii(\"null\");");
+			out.println(indent + "else " + codec + ".writeJsonNumber(out, " + bytes + ");");
+			break;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package org.xbasej.annotations.processor;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Optional generated classes, written for every struct only when named in the
+ * {@value #OPTION} processor option, with the members of the other generated
+ * classes using them. Without any the processor writes the record class, its
+ * layout, codec, mapped reader and listener, and the bulk writer.
+ */
+enum Feature {
+
+	/** {@code <Record>Follower} and the {@code follow} methods of the record class. */
+	FOLLOWER,
+
+	/** {@code <Record>DatasetScanner}. */
+	SCANNER,
+
+	/** {@code <Record>SortKey} and the {@code sort} methods. */
+	SORT,
+
+	/** {@code <Record>ColumnBatch} and the {@code readColumns} methods. */
+	COLUMNS,
+
+	/** {@code <Record>Row} and the {@code readRows}, {@code toRow} and row taking methods. */
+	ROWS,
+
+	/** {@code <Record>Metrics}, a listener counting the instrumentation. */
+	METRICS,
+
+	/** {@code <Record>JfrListener}, which needs the jdk.jfr module at compile and run time. */
+	JFR;
+
+	/**
+	 * Comma separated lower case feature names:
+	 * {@code -Axbasej.features=sort,rows,metrics}.
+	 */
+	static final String OPTION = "xbasej.features";
+
+	String optionName() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * The features named in the option, none if it is not set. Throws an
+	 * IllegalArgumentException with the entry naming no feature.
+	 */
+	static Set<Feature> parse(String option) {
+		Set<Feature> features = EnumSet.noneOf(Feature.class);
+		if (option == null) {
+			return features;
+		}
+		for (String entry : option.split(",")) {
+			entry = entry.trim();
+			if (entry.isEmpty()) {
+				continue;
+			}
+			Feature found = null;
+			for (Feature feature : values()) {
+				if (feature.optionName().equals(entry)) {
+					found = feature;
+				}
+			}
+			if (found == null) {
+				throw new IllegalArgumentException(entry);
+			}
+			features.add(found);
+		}
+		return features;
+	}
+}
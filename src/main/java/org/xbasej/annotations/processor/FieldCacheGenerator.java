@@ -0,0 +1,112 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Writes the per record value cache of the record class and of
+ * {@code <Record>MappedReader}. A getter decodes its field at most once per
+ * record position into a typed slot, a bitmap tells which slots hold the value
+ * of the current record. Picture fields are not cached, their getters return
+ * the field bytes.
+ */
+final class FieldCacheGenerator {
+
+	private FieldCacheGenerator() {
+	}
+
+	static boolean cached(Element element) {
+		return FieldKind.of(element) != FieldKind.PICTURE;
+	}
+
+	/** Return type of the getter of a cached field. */
+	static String valueType(FieldKind kind) {
+		switch (kind) {
+		case LOGICAL:
+			return "java.lang.Boolean";
+		case FLOAT:
+			return "java.lang.Double";
+		case CURRENCY:
+			return "java.math.BigDecimal";
+		case DATE:
+			return "java.time.LocalDate";
+		case INT:
+			return "int";
+		case LONG:
+			return "long";
+		case BIG_INTEGER:
+			return "java.math.BigInteger";
+		default:
+			return "String";
+		}
+	}
+
+	/**
+	 * The slots and the bitmap. The record class also remembers the record number
+	 * the slots belong to, so moving the xBaseJ handle directly clears them too.
+	 */
+	static void writeMembers(PrintWriter out, Collection<Element> elements, boolean record) {
+		for (Element element : elements) {
+			if (cached(element)) {
+				out.println(" private " + valueType(FieldKind.of(element)) + " _" + element.getSimpleName() + "_value;");
+			}
+		}
+		out.println(" private final long[] _decoded = new long[" + ((elements.size() + 63) >>> 6) + "];");
+		if (record) {
+			out.println(" private int _decodedRecno = -1;");
+		}
+		out.println();
+		out.println(" private void clearDecoded() {");
+		out.println("  java.util.Arrays.fill(_decoded, 0L);");
+		out.println(" }");
+		out.println();
+		out.println(" private boolean isDecoded(int field) {");
+		if (record) {
+			out.println("  int recno = _dbf == null ? 0 : _dbf.getCurrentRecordNumber();");
+			out.println("  if (recno != _decodedRecno) {");
+			out.println("   clearDecoded();");
+			out.println("   _decodedRecno = recno;");
+			out.println("  }");
+		}
+		out.println("  return (_decoded[field >>> 6] & 1L << field) != 0;");
+		out.println(" }");
+		out.println();
+	}
+
+	/**
+	 * Writes the public caching getter of a field, then opens the private
+	 * {@code decode<Field>()} method whose body the caller writes.
+	 */
+	static void writeGetter(PrintWriter out, String dbfRecordSimpleClassName, Element element, int index) {
+		writeCachingGetter(out, element, index, dbfRecordSimpleClassName);
+		out.println(" private " + valueType(FieldKind.of(element)) + " decode"
+				+ methodSubname(element.getSimpleName().toString()) + "() {");
+	}
+
+	/**
+	 * The public getter returning the slot, filled by {@code decode<Field>()}.
+	 * Getters of the record class, named by dbfRecordSimpleClassName, report the
+	 * decoded value to the listener.
+	 */
+	static void writeCachingGetter(PrintWriter out, Element element, int index, String dbfRecordSimpleClassName) {
+		String fieldName = element.getSimpleName().toString();
+		String subname = methodSubname(fieldName);
+		String type = valueType(FieldKind.of(element));
+		String slot = "_" + fieldName + "_value";
+		out.println(" public " + type + " get" + subname + "() {");
+		out.println("  if (!isDecoded(" + index + ")) {");
+		out.println("   " + slot + " = decode" + subname + "();");
+		out.println("   _decoded[" + (index >>> 6) + "] |= 1L << " + index + ";");
+		if (dbfRecordSimpleClassName != null) {
+			InstrumentationGenerator.writeValueDecoded(out, dbfRecordSimpleClassName, element, index);
+		}
+		out.println("  }");
+		out.println("  return " + slot + ";");
+		out.println(" }");
+		out.println();
+	}
+}
@@ -0,0 +1,79 @@
+package org.xbasej.annotations.processor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Classifies an annotated field the same way the generated getters do, so that
+ * the raw byte decoders agree with the xBaseJ based accessors.
+ */
+enum FieldKind {
+	PICTURE('P'), //
+	LOGICAL('L'), //
+	FLOAT('F'), //
+	CURRENCY('Y'), //
+	DATE('D'), //
+	INT('N'), //
+	LONG('N'), //
+	BIG_INTEGER('N'), //
+	DECIMAL('N'), //
+	CHAR('C'), //
+	MEMO('M'), //
+	UNKNOWN('?');
+
+	/**
+	 * Kinds of the annotated fields, every generator asks for them. The elements
+	 * are weak keys, they belong to the compilation that created them.
+	 */
+	private static final Map<Element, FieldKind> KINDS = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/** The DBF header type code of the field. */
+	final char type;
+
+	FieldKind(char type) {
+		this.type = type;
+	}
+
+	/** Memo and picture fields hold a block pointer, their data lives in the memo file. */
+	boolean isMemo() {
+		return this == MEMO || this == PICTURE;
+	}
+
+	static FieldKind of(Element element) {
+		return KINDS.computeIfAbsent(element, FieldKind::classify);
+	}
+
+	private static FieldKind classify(Element element) {
+		DBFField a = element.getAnnotation(DBFField.class);
+		String fieldType = element.asType().toString();
+		if (fieldType.endsWith("PictureField")) {
+			return PICTURE;
+		} else if (fieldType.endsWith("LogicalField")) {
+			return LOGICAL;
+		} else if (fieldType.endsWith("FloatField")) {
+			return FLOAT;
+		} else if (fieldType.endsWith("CurrencyField")) {
+			return CURRENCY;
+		} else if (fieldType.endsWith("DateField")) {
+			return DATE;
+		} else if (fieldType.endsWith("NumField") && a.dec() == 0 && a.size() < 10) {
+			return INT;
+		} else if (fieldType.endsWith("NumField") && a.dec() == 0 && a.size() < 19) {
+			return LONG;
+		} else if (fieldType.endsWith("NumField") && a.dec() == 0) {
+			return BIG_INTEGER;
+		} else if (fieldType.endsWith("NumField")) {
+			return DECIMAL;
+		} else if (fieldType.endsWith("CharField")) {
+			return CHAR;
+		} else if (fieldType.endsWith("MemoField")) {
+			return MEMO;
+		}
+		return UNKNOWN;
+	}
+}
@@ -0,0 +1,178 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+
+/**
+ * Writes {@code <Record>Follower}, a cursor over the records appended to a DBF
+ * file after a watermark. It polls the record count in the file header and
+ * remaps a {@code <Record>MappedReader} only when the count grew.
+ */
+final class FollowerGenerator {
+
+	static final long DEFAULT_POLL_MILLIS = 1000;
+
+	private FollowerGenerator() {
+	}
+
+	static void write(PrintWriter out, String packageName, String dbfRecordSimpleClassName) {
+		final String followerClassName = dbfRecordSimpleClassName + "Follower";
+		final String readerClassName = dbfRecordSimpleClassName + "MappedReader";
+
+		if (packageName != null) {
+			out.print("package ");
+			out.print(packageName);
+			out.println(";");
+			out.println();
+		}
+
+		out.println("/**");
+		out.println(" * Follows the {@link " + dbfRecordSimpleClassName + "} records appended to a DBF file by other");
+		out.println(" * processes. {@link #next} waits for the record after the watermark, polling the");
+		out.println(" * header record count, and positions {@link #reader()} on it. Deleted records are");
+		out.println(" * skipped. Persist {@link #getWatermark()} to resume later with");
+		out.println(" * {@code getWatermark() + 1} as first record number.");
+		out.println(" */");
+		out.println("public class " + followerClassName + " implements java.io.Closeable");
+		out.println(" {");
+		out.println();
+		out.println(" public static final java.time.Duration DEFAULT_POLL_INTERVAL = java.time.Duration.ofMillis("
+				+ DEFAULT_POLL_MILLIS + ");");
+		out.println();
+		out.println(" private final java.nio.file.Path _file;");
+		out.println(" private final java.nio.charset.Charset _charset;");
+		out.println(" private final long _pollNanos;");
+		out.println(" private final java.nio.channels.FileChannel _channel;");
+		out.println(" private final java.nio.ByteBuffer _count = java.nio.ByteBuffer.allocate(4).order(java.nio.ByteOrder.LITTLE_ENDIAN);");
+		out.println(" private " + readerClassName + " _reader;");
+		out.println(" private org.xBaseJ.cp.CharsetMapper _mapper;");
+		out.println(" private int _watermark;");
+		out.println();
+
+		out.println(" public " + followerClassName + "(java.nio.file.Path file, int fromRecno) throws java.io.IOException {");
+		out.println("  this(file, fromRecno, DEFAULT_POLL_INTERVAL, java.nio.charset.StandardCharsets.ISO_8859_1);");
+		out.println(" }");
+		out.println();
+		out.println(" public " + followerClassName + "(java.nio.file.Path file, int fromRecno, java.time.Duration pollInterval,");
+		out.println("   java.nio.charset.Charset charset) throws java.io.IOException {");
+		out.println("  if (fromRecno < 1) throw new java.lang.IllegalArgumentException(\"fromRecno < 1: \" + fromRecno);");
+		out.println("  _file = file;");
+		out.println("  _charset = charset;");
+		out.println("  _pollNanos = java.lang.Math.max(1, pollInterval.toNanos());");
+		out.println("  _watermark = fromRecno - 1;");
+		out.println("  _channel = java.nio.channels.FileChannel.open(file, java.nio.file.StandardOpenOption.READ);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Set on every reader, see {@link " + readerClassName + "#setCharsetMapper}. */");
+		out.println(" public void setCharsetMapper(org.xBaseJ.cp.CharsetMapper mapper) {");
+		out.println("  _mapper = mapper;");
+		out.println("  if (_reader != null) _reader.setCharsetMapper(mapper);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** The last record returned by {@link #next}, or the one before the first record number. */");
+		out.println(" public int getWatermark() {");
+		out.println("  return _watermark;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** The record count in the file header, read on every call. */");
+		out.println(" public int getRecordCount() throws java.io.IOException {");
+		out.println("  _count.clear();");
+		out.println("  while (_count.hasRemaining()) {");
+		out.println("   if (_channel.read(_count, 4 + _count.position()) < 0) throw new java.io.EOFException(_file.toString());");
+		out.println("  }");
+		out.println("  return _count.getInt(0);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Number of records after the watermark now in the file, deleted ones included. */");
+		out.println(" public int available() throws java.io.IOException {");
+		out.println("  return java.lang.Math.max(0, getRecordCount() - _watermark);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /**");
+		out.println("  * Waits up to timeout for a record after the watermark that is not deleted,");
+		out.println("  * positions the reader on it and advances the watermark. Returns false on timeout.");
+		out.println("  * Fails with an IllegalStateException if the record count fell below the");
+		out.println("  * watermark, the file was packed or replaced.");
+		out.println("  */");
+		out.println(" public boolean next(java.time.Duration timeout) throws java.io.IOException, java.lang.InterruptedException {");
+		out.println("  long deadline = java.lang.System.nanoTime() + timeout.toNanos();");
+		out.println("  while (true) {");
+		out.println("   while (_reader != null && _watermark < _reader.getRecordCount()) {");
+		out.println("    _reader.seek(++_watermark);");
+		out.println("    if (!_reader.deleted()) return true;");
+		out.println("   }");
+		out.println("   int count = getRecordCount();");
+		out.println("   if (count < _watermark) {");
+		out.println("    throw new java.lang.IllegalStateException(_file + \" has \" + count + \" records, watermark is \" + _watermark);");
+		out.println("   }");
+		out.println("   if (count > _watermark) {");
+		out.println("    " + readerClassName + " reader = new " + readerClassName + "(_file, _charset);");
+		out.println("    reader.setCharsetMapper(_mapper);");
+		out.println("    if (reader.getRecordCount() > _watermark) {");
+		out.println("     if (_reader != null) _reader.close();");
+		out.println("     _reader = reader;");
+		out.println("     continue;");
+		out.println("    }");
+		out.println("    reader.close();");
+		out.println("   }");
+		out.println("   long wait = deadline - java.lang.System.nanoTime();");
+		out.println("   if (wait <= 0) return false;");
+		out.println("   java.util.concurrent.TimeUnit.NANOSECONDS.sleep(java.lang.Math.min(wait, _pollNanos));");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** The reader positioned on the record returned by the last successful {@link #next}. */");
+		out.println(" public " + readerClassName + " reader() {");
+		out.println("  if (_reader == null) throw new java.lang.IllegalStateException(\"next() returned no record yet\");");
+		out.println("  return _reader;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Writes the watermark to a file, replacing it atomically where the file system allows. */");
+		out.println(" public void saveWatermark(java.nio.file.Path file) throws java.io.IOException {");
+		out.println("  java.nio.file.Path parent = file.toAbsolutePath().getParent();");
+		out.println("  java.nio.file.Path tmp = java.nio.file.Files.createTempFile(parent, file.getFileName().toString(), \".tmp\");");
+		out.println("  try {");
+		out.println("   java.nio.file.Files.write(tmp, java.lang.Integer.toString(_watermark).getBytes(java.nio.charset.StandardCharsets.US_ASCII));");
+		out.println("   try {");
+		out.println("    java.nio.file.Files.move(tmp, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING,");
+		out.println("      java.nio.file.StandardCopyOption.ATOMIC_MOVE);");
+		out.println("   } catch (java.nio.file.AtomicMoveNotSupportedException e) {");
+		out.println("    java.nio.file.Files.move(tmp, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING);");
+		out.println("   }");
+		out.println("  } finally {");
+		out.println("   java.nio.file.Files.deleteIfExists(tmp);");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** A watermark saved by {@link #saveWatermark}, or 0 if the file does not exist. */");
+		out.println(" public static int loadWatermark(java.nio.file.Path file) throws java.io.IOException {");
+		out.println("  if (!java.nio.file.Files.exists(file)) return 0;");
+		out.println("  java.lang.String value = new java.lang.String(java.nio.file.Files.readAllBytes(file),");
+		out.println("    java.nio.charset.StandardCharsets.US_ASCII).trim();");
+		out.println("  try {");
+		out.println("   return java.lang.Integer.parseInt(value);");
+		out.println("  } catch (java.lang.NumberFormatException e) {");
+		out.println("   throw new java.io.IOException(file + \": invalid watermark \" + value, e);");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" @Override");
+		out.println(" public void close() throws java.io.IOException {");
+		out.println("  try {");
+		out.println("   if (_reader != null) _reader.close();");
+		out.println("  } finally {");
+		out.println("   _channel.close();");
+		out.println("  }");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+}
@@ -0,0 +1,314 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes the JDBC and CSV import of {@code <Record>BulkWriter}. Columns are
+ * matched to fields by DBF name through {@code <Record>Layout.indexOf}, values
+ * go through the size, decimal and truncate rules of the writer setters. Plain
+ * ASCII character cells and plain decimal numbers are copied straight into the
+ * record bytes.
+ */
+final class ImportGenerator {
+
+	private ImportGenerator() {
+	}
+
+	static void write(PrintWriter out, String dbfRecordSimpleClassName, Collection<Element> elements) {
+		final String codec = DBFFieldProcessor.CODEC;
+		final String layout = dbfRecordSimpleClassName + "Layout";
+
+		out.println(" /**");
+		out.println("  * Appends one record per row of the result set. Columns are matched to fields");
+		out.println("  * by label, ignoring case, other columns are skipped. SQL NULL leaves a field");
+		out.println("  * blank. Returns the number of records appended.");
+		out.println("  */");
+		out.println(" public int importFrom(java.sql.ResultSet rs)");
+		out.println("   throws java.sql.SQLException, org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  java.sql.ResultSetMetaData meta = rs.getMetaData();");
+		out.println("  int[] fields = new int[meta.getColumnCount()];");
+		out.println("  for (int i = 0; i < fields.length; i++) {");
+		out.println("   fields[i] = " + layout + ".indexOf(meta.getColumnLabel(i + 1));");
+		out.println("  }");
+		out.println("  int count = 0;");
+		out.println("  while (rs.next()) {");
+		out.println("   for (int i = 0; i < fields.length; i++) {");
+		out.println("    importColumn(fields[i], rs, i + 1);");
+		out.println("   }");
+		out.println("   append();");
+		out.println("   count++;");
+		out.println("  }");
+		out.println("  return count;");
+		out.println(" }");
+		out.println();
+
+		out.println(" private void importColumn(int field, java.sql.ResultSet rs, int column)");
+		out.println("   throws java.sql.SQLException, org.xBaseJ.xBaseJException {");
+		out.println("  switch (field) {");
+		int index = 0;
+		for (Element element : elements) {
+			out.println("  case " + index++ + ": {");
+			writeColumn(out, element);
+			out.println("   break;");
+			out.println("  }");
+		}
+		out.println("  default:");
+		out.println("   break;");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" /**");
+		out.println("  * Appends one record per CSV line. With a header line columns are matched to");
+		out.println("  * fields by name, ignoring case, otherwise they follow the field order of");
+		out.println("  * {@link " + layout + "}. Empty cells leave a field blank, dates are read as");
+		out.println("  * yyyy-MM-dd or yyyyMMdd. Returns the number of records appended.");
+		out.println("  */");
+		out.println(" public int importCsv(java.io.InputStream stream, " + dbfRecordSimpleClassName
+				+ "MappedReader.CsvOptions options) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  " + codec + ".CsvInput in = new " + codec + ".CsvInput(stream, options._delimiter, options._quote);");
+		out.println("  java.nio.charset.Charset charset = options._charset;");
+		out.println("  int[] fields;");
+		out.println("  int columns = 0;");
+		out.println("  if (options._header) {");
+		out.println("   fields = new int[16];");
+		out.println("   int end;");
+		out.println("   do {");
+		out.println("    end = in.next();");
+		out.println("    if (end == -1) return 0;");
+		out.println("    if (columns == fields.length) fields = java.util.Arrays.copyOf(fields, columns * 2);");
+		out.println("    fields[columns++] = " + layout + ".indexOf(new java.lang.String(in.cell, 0, in.length, charset));");
+		out.println("   } while (end == 0);");
+		out.println("  } else {");
+		out.println("   columns = " + layout + ".FIELD_COUNT;");
+		out.println("   fields = new int[columns];");
+		out.println("   for (int i = 0; i < columns; i++) fields[i] = i;");
+		out.println("  }");
+		out.println("  int count = 0;");
+		out.println("  int column = 0;");
+		out.println("  int end;");
+		out.println("  while ((end = in.next()) != -1) {");
+		out.println("   if (column == 0 && end == 1 && in.length == 0 && !in.quoted) continue;");
+		out.println("   if (column < columns && fields[column] >= 0) {");
+		out.println("    importCell(fields[column], in.cell, in.length, charset, count + 1);");
+		out.println("   }");
+		out.println("   column++;");
+		out.println("   if (end == 1) {");
+		out.println("    append();");
+		out.println("    count++;");
+		out.println("    column = 0;");
+		out.println("   }");
+		out.println("  }");
+		out.println("  return count;");
+		out.println(" }");
+		out.println();
+
+		out.println(" private static org.xBaseJ.xBaseJException invalid(java.lang.String name, byte[] cell, int from, int to,");
+		out.println("   java.nio.charset.Charset charset, int record) {");
+		out.println("  return new org.xBaseJ.xBaseJException(name + \": invalid value '\"");
+		out.println("    + new java.lang.String(cell, from, to - from, charset) + \"' in CSV record \" + record);");
+		out.println(" }");
+		out.println();
+
+		out.println(" private void importCell(int field, byte[] cell, int length, java.nio.charset.Charset charset, int record)");
+		out.println("   throws org.xBaseJ.xBaseJException {");
+		out.println("  int from = 0;");
+		out.println("  int to = length;");
+		out.println("  if (field >= 0 && " + layout + ".type(field) != 'C') {");
+		out.println("   from = " + codec + ".trimStart(cell, 0, length);");
+		out.println("   to = " + codec + ".trimEnd(cell, from, length);");
+		out.println("  }");
+		out.println("  if (from == to) return;");
+		out.println("  switch (field) {");
+		index = 0;
+		for (Element element : elements) {
+			out.println("  case " + index++ + ": {");
+			writeCell(out, codec, element);
+			out.println("   break;");
+			out.println("  }");
+		}
+		out.println("  default:");
+		out.println("   break;");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+	}
+
+	private static void writeColumn(PrintWriter out, Element element) {
+		String subname = methodSubname(element.getSimpleName().toString());
+		String indent = "   ";
+		switch (FieldKind.of(element)) {
+		case INT:
+			out.println(indent + "int value = rs.getInt(column);");
+			out.println(indent + "if (!rs.wasNull()) set" + subname + "(value);");
+			break;
+		case LONG:
+			out.println(indent + "long value = rs.getLong(column);");
+			out.println(indent + "if (!rs.wasNull()) set" + subname + "(value);");
+			break;
+		case FLOAT:
+			out.println(indent + "double value = rs.getDouble(column);");
+			out.println(indent + "if (!rs.wasNull()) set" + subname + "(value);");
+			break;
+		case LOGICAL:
+			out.println(indent + "boolean value = rs.getBoolean(column);");
+			out.println(indent + "if (!rs.wasNull()) set" + subname + "(value);");
+			break;
+		case BIG_INTEGER:
+			out.println(indent + "java.math.BigDecimal value = rs.getBigDecimal(column);");
+			out.println(indent + "if (value != null) set" + subname + "(value.toBigInteger());");
+			break;
+		case DECIMAL:
+		case CURRENCY:
+			out.println(indent + "java.math.BigDecimal value = rs.getBigDecimal(column);");
+			out.println(indent + "if (value != null) set" + subname + "(value);");
+			break;
+		case DATE:
+			out.println(indent + "java.sql.Date value = rs.getDate(column);");
+			out.println(indent + "if (value != null) set" + subname + "(value.toLocalDate());");
+			break;
+		default:
+			out.println(indent + "set" + subname + "(rs.getString(column));");
+			break;
+		}
+	}
+
+	private static void writeCell(PrintWriter out, String codec, Element element) {
+		DBFField a = element.getAnnotation(DBFField.class);
+		FieldKind kind = FieldKind.of(element);
+		String fieldName = element.getSimpleName().toString();
+		String subname = methodSubname(fieldName);
+		String offset = "_" + fieldName + "_offset";
+		String length = "_" + fieldName + "_length";
+		String target = "_buffer, _slot + " + offset + ", " + length;
+		String name = "\"" + a.name().toUpperCase() + "\"";
+		String invalid = "throw invalid(" + name + ", cell, from, to, charset, record);";
+		String tooLong = "throw new org.xBaseJ.xBaseJException(" + name + " + \": value does not fit \" + " + length
+				+ " + \" bytes\");";
+		String text = "new java.lang.String(cell, from, to - from, charset)";
+		String indent = "   ";
+		switch (kind) {
+		case INT:
+		case LONG:
+			out.println(indent + "if (" + offset + " < 0) break;");
+			out.println(indent + "long value = " + codec + ".parseLong(cell, from, to - from, java.lang.Long.MIN_VALUE);");
+			out.println(indent + "if (value == java.lang.Long.MIN_VALUE) " + invalid);
+			out.println(indent + "if (!" + codec + ".encodeLong(value, " + target + ")) " + tooLong);
+			break;
+		case BIG_INTEGER:
+			out.println(indent + "long value = " + codec + ".parseLong(cell, from, to - from, java.lang.Long.MIN_VALUE);");
+			out.println(indent + "if (value != java.lang.Long.MIN_VALUE) {");
+			out.println(indent + " set" + subname + "(value);");
+			out.println(indent + " break;");
+			out.println(indent + "}");
+			out.println(indent + "try {");
+			out.println(indent + " set" + subname + "(new java.math.BigInteger(" + text + "));");
+			out.println(indent + "} catch (java.lang.NumberFormatException e) {");
+			out.println(indent + " " + invalid);
+			out.println(indent + "}");
+			break;
+		case FLOAT:
+		case DECIMAL:
+			out.println(indent + "if (" + offset + " < 0) break;");
+			out.println(indent + "int plain = " + codec + ".encodePlainDecimal(cell, from, to, " + a.dec() + ", " + target
+					+ ");");
+			out.println(indent + "if (plain == 0) " + tooLong);
+			out.println(indent + "if (plain == " + codec + ".NOT_PLAIN) {");
+			out.println(indent + " try {");
+			out.println(indent + "  java.math.BigDecimal value = new java.math.BigDecimal(" + text + ");");
+			out.println(indent + "  set" + subname + "(" + (kind == FieldKind.FLOAT ? "value.doubleValue()" : "value") + ");");
+			out.println(indent + " } catch (java.lang.NumberFormatException e) {");
+			out.println(indent + "  " + invalid);
+			out.println(indent + " }");
+			out.println(indent + "}");
+			break;
+		case CURRENCY:
+			out.println(indent + "try {");
+			out.println(indent + " set" + subname + "(new java.math.BigDecimal(" + text + "));");
+			out.println(indent + "} catch (java.lang.NumberFormatException e) {");
+			out.println(indent + " " + invalid);
+			out.println(indent + "}");
+			break;
+		case DATE:
+			out.println(indent + "int epochDay = " + codec + ".parseDate(cell, from, to);");
+			out.println(indent + "if (epochDay == " + codec + ".NO_DATE) " + invalid);
+			out.println(indent + "set" + subname + "EpochDay(epochDay);");
+			break;
+		case LOGICAL:
+			out.println(indent + "switch (cell[from]) {");
+			out.println(indent + "case 'T': case 't': case 'Y': case 'y': case '1':");
+			out.println(indent + " set" + subname + "(java.lang.Boolean.TRUE);");
+			out.println(indent + " break;");
+			out.println(indent + "case 'F': case 'f': case 'N': case 'n': case '0':");
+			out.println(indent + " set" + subname + "(java.lang.Boolean.FALSE);");
+			out.println(indent + " break;");
+			out.println(indent + "default:");
+			out.println(indent + " " + invalid);
+			out.println(indent + "}");
+			break;
+		case CHAR:
+			out.println(indent + "if (" + offset + " < 0) break;");
+			out.println(indent + "if (_mapper != null || !" + codec + ".isAscii(cell, from, to)) {");
+			out.println(indent + " set" + subname + "(" + text + ");");
+			out.println(indent + " break;");
+			out.println(indent + "}");
+			out.println(indent + "int n = to - from;");
+			out.println(indent + "if (n > " + length + ") {");
+			if (a.truncate()) {
+				out.println(indent + " n = " + length + ";");
+			} else {
+				out.println(indent + " " + tooLong);
+			}
+			out.println(indent + "}");
+			out.println(indent + "java.lang.System.arraycopy(cell, from, _buffer, _slot + " + offset + ", n);");
+			out.println(indent + codec + ".fill(_buffer, _slot + " + offset + " + n, " + length + " - n);");
+			break;
+		default:
+			out.println(indent + "set" + subname + "(" + text + ");");
+			break;
+		}
+	}
+
+	/** Static importers of the record class, leaving the file unchanged if importing fails. */
+	static void writeStatics(PrintWriter out, String dbfRecordSimpleClassName) {
+		final String writerClassName = dbfRecordSimpleClassName + "BulkWriter";
+		out.println(" /**");
+		out.println("  * Appends the rows of the result set through a {@link " + writerClassName + "}, see");
+		out.println("  * {@link " + writerClassName + "#importFrom}. If importing fails the file keeps its");
+		out.println("  * previous records.");
+		out.println("  */");
+		out.println(" public static int importFrom(java.nio.file.Path file, java.sql.ResultSet rs)");
+		out.println("   throws java.sql.SQLException, org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  try (" + writerClassName + " writer = new " + writerClassName + "(file)) {");
+		out.println("   try {");
+		out.println("    return writer.importFrom(rs);");
+		out.println("   } catch (java.sql.SQLException | org.xBaseJ.xBaseJException | java.io.IOException | java.lang.RuntimeException e) {");
+		out.println("    writer.abort();");
+		out.println("    throw e;");
+		out.println("   }");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+		out.println(" /** Appends the lines of CSV input, see {@link " + writerClassName + "#importCsv}. */");
+		out.println(" public static int importCsv(java.nio.file.Path file, java.io.InputStream in, "
+				+ dbfRecordSimpleClassName + "MappedReader.CsvOptions options)");
+		out.println("   throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  try (" + writerClassName + " writer = new " + writerClassName + "(file)) {");
+		out.println("   try {");
+		out.println("    return writer.importCsv(in, options);");
+		out.println("   } catch (org.xBaseJ.xBaseJException | java.io.IOException | java.lang.RuntimeException e) {");
+		out.println("    writer.abort();");
+		out.println("    throw e;");
+		out.println("   }");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+	}
+}
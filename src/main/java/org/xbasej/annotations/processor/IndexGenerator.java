@@ -0,0 +1,345 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes the opt-in in-memory secondary indexes of the fields named in the
+ * {@value #OPTION} processor option, or declared with
+ * {@code @DBFField(indexed = true)} or {@code @DBFField(unique = true)} where
+ * the annotation has these attributes. The index is built lazily in one pass
+ * over the mapped file, integer and date keys in a primitive long map, char
+ * keys hashed from their raw bytes. Blank keys are not indexed. The record class
+ * checks unique keys before it writes an appended record.
+ */
+final class IndexGenerator {
+
+	/**
+	 * Comma separated {@code <struct class>.<field>} entries, the struct class
+	 * fully qualified and the field its Java name, {@code :unique} appended for
+	 * unique keys: {@code -Axbasej.indexes=com.acme.OrderDbfStruct.id:unique}.
+	 */
+	static final String OPTION = "xbasej.indexes";
+
+	private static final String UNIQUE = ":unique";
+
+	private IndexGenerator() {
+	}
+
+	/**
+	 * Reads an optional boolean attribute of the annotation through its mirror, so
+	 * it is false for annotation versions without it.
+	 */
+	static boolean annotationFlag(Element element, String attribute) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (!mirror.getAnnotationType().toString().equals(DBFField.class.getName())) {
+				continue;
+			}
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues()
+					.entrySet()) {
+				if (entry.getKey().getSimpleName().contentEquals(attribute)) {
+					return Boolean.TRUE.equals(entry.getValue().getValue());
+				}
+			}
+		}
+		return false;
+	}
+
+	/** The fields of struct named in the option, by Java field name, true if unique. */
+	static Map<String, Boolean> declared(String option, String struct) {
+		Map<String, Boolean> declared = new LinkedHashMap<>();
+		if (option == null) {
+			return declared;
+		}
+		for (String entry : option.split(",")) {
+			entry = entry.trim();
+			boolean unique = entry.endsWith(UNIQUE);
+			if (unique) {
+				entry = entry.substring(0, entry.length() - UNIQUE.length());
+			}
+			int dot = entry.lastIndexOf('.');
+			if (dot > 0 && entry.substring(0, dot).equals(struct)) {
+				declared.merge(entry.substring(dot + 1), unique, Boolean::logicalOr);
+			}
+		}
+		return declared;
+	}
+
+	/** The indexed fields of struct in field order, true if unique. */
+	static Map<Element, Boolean> indexes(String option, String struct, Collection<Element> elements) {
+		Map<String, Boolean> declared = declared(option, struct);
+		Map<Element, Boolean> indexes = new LinkedHashMap<>();
+		for (Element element : elements) {
+			Boolean unique = declared.get(element.getSimpleName().toString());
+			if (unique == null && annotationFlag(element, "indexed")) {
+				unique = false;
+			}
+			if (annotationFlag(element, "unique")) {
+				unique = true;
+			}
+			if (unique != null) {
+				indexes.put(element, unique);
+			}
+		}
+		return indexes;
+	}
+
+	static boolean supports(Element element) {
+		switch (FieldKind.of(element)) {
+		case INT:
+		case LONG:
+		case DATE:
+		case CHAR:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	static boolean hasUnique(Map<Element, Boolean> indexes) {
+		return indexes.containsValue(true);
+	}
+
+	private static String indexType(String codec, Element element) {
+		return codec + (FieldKind.of(element) == FieldKind.CHAR ? ".BytesIndex" : ".LongIndex");
+	}
+
+	/** Package private index builders of {@code <Record>MappedReader}. */
+	static void writeBuilders(PrintWriter out, String codec, Map<Element, Boolean> indexes) {
+		for (Element element : indexes.keySet()) {
+			DBFField a = element.getAnnotation(DBFField.class);
+			String fieldName = element.getSimpleName().toString();
+			String type = indexType(codec, element);
+			String offset = "_" + fieldName + "_offset";
+			String bytes = "_record, " + offset + ", _" + fieldName + "_length";
+			out.println(" " + type + " build" + methodSubname(fieldName) + "Index(boolean unique) {");
+			out.println("  " + type + " index = new " + type + "(unique);");
+			out.println("  if (" + offset + " < 0) return index;");
+			out.println("  for (int recno = 1; recno <= _recordCount; recno++) {");
+			out.println("   seek(recno);");
+			out.println("   if (deleted()) continue;");
+			writeAdd(out, codec, element, bytes, "   ", a);
+			out.println("  }");
+			out.println("  return index;");
+			out.println(" }");
+			out.println();
+		}
+	}
+
+	private static void writeAdd(PrintWriter out, String codec, Element element, String bytes, String indent,
+			DBFField a) {
+		switch (FieldKind.of(element)) {
+		case INT:
+		case LONG:
+			out.println(indent + "long key = " + codec + ".parseLong(" + bytes + ", java.lang.Long.MIN_VALUE);");
+			out.println(indent + "if (key != java.lang.Long.MIN_VALUE) index.add(key, recno);");
+			break;
+		case DATE:
+			out.println(indent + "int day = " + codec + ".parseEpochDay(" + bytes + ");");
+			out.println(indent + "if (day != " + codec + ".NO_DATE) index.add(day, recno);");
+			break;
+		default:
+			out.println(indent + "long range = " + codec + ".trimmedRange(" + bytes + ", " + a.ltrim() + ", "
+					+ a.rtrim() + ");");
+			String source = bytes.substring(0, bytes.indexOf(','));
+			out.println(indent + "if ((int) (range >>> 32) != (int) range) index.add(" + source
+					+ ", (int) (range >>> 32), (int) range, recno);");
+			break;
+		}
+	}
+
+	/** Index members, finders and maintenance hooks of the record class. */
+	static void writeFinders(PrintWriter out, String dbfRecordSimpleClassName, Map<Element, Boolean> indexes) {
+		final String codec = DBFFieldProcessor.CODEC;
+		final Collection<Element> indexed = indexes.keySet();
+
+		for (Element element : indexed) {
+			out.println(" private " + indexType(codec, element) + " _" + element.getSimpleName() + "Index;");
+		}
+		out.println(" private int _indexedRecordCount = -1;");
+		out.println();
+
+		out.println(" /** Drops the in-memory indexes, the next findBy call rebuilds them. */");
+		out.println(" public void invalidateIndexes() {");
+		for (Element element : indexed) {
+			out.println("  _" + element.getSimpleName() + "Index = null;");
+		}
+		out.println("  _indexedRecordCount = -1;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Adds the record just appended to the built indexes. */");
+		out.println(" private void indexAppended() {");
+		out.println("  int recno = _dbf.getRecordCount();");
+		out.println("  if (_indexedRecordCount != recno - 1) {");
+		out.println("   invalidateIndexes();");
+		out.println("   return;");
+		out.println("  }");
+		out.println("  _indexedRecordCount = recno;");
+		for (Element element : indexed) {
+			DBFField a = element.getAnnotation(DBFField.class);
+			String fieldName = element.getSimpleName().toString();
+			out.println("  if (_" + fieldName + "Index != null && this." + fieldName + " != null) {");
+			out.println("   " + indexType(codec, element) + " index = _" + fieldName + "Index;");
+			writeAdd(out, codec, element, "this." + fieldName + ".getBytes(), 0, this." + fieldName + ".getLength()",
+					"   ", a);
+			out.println("  }");
+		}
+		out.println(" }");
+		out.println();
+
+		if (hasUnique(indexes)) {
+			writeCheckUnique(out, codec, indexes);
+		}
+
+		for (Element element : indexed) {
+			DBFField a = element.getAnnotation(DBFField.class);
+			FieldKind kind = FieldKind.of(element);
+			String fieldName = element.getSimpleName().toString();
+			String subname = methodSubname(fieldName);
+			String type = indexType(codec, element);
+			String index = "_" + fieldName + "Index";
+
+			out.println(" private " + type + " " + fieldName + "Index() throws java.io.IOException {");
+			out.println("  if (_indexedRecordCount != _dbf.getRecordCount()) {");
+			out.println("   invalidateIndexes();");
+			out.println("   _indexedRecordCount = _dbf.getRecordCount();");
+			out.println("  }");
+			out.println("  if (" + index + " == null) {");
+			out.println("   try (" + dbfRecordSimpleClassName + "MappedReader reader = openMappedReader()) {");
+			out.println("    " + index + " = reader.build" + subname + "Index(" + indexes.get(element) + ");");
+			out.println("   }");
+			out.println("  }");
+			out.println("  return " + index + ";");
+			out.println(" }");
+			out.println();
+
+			String keyType;
+			String key;
+			switch (kind) {
+			case INT:
+				keyType = "int";
+				key = "key";
+				break;
+			case LONG:
+				keyType = "long";
+				key = "key";
+				break;
+			case DATE:
+				keyType = "java.time.LocalDate";
+				key = "key.toEpochDay()";
+				break;
+			default:
+				keyType = "String";
+				key = "bytes";
+				writeKey(out, codec, fieldName, a);
+				break;
+			}
+			String keyBytes = kind == FieldKind.CHAR ? "  byte[] bytes = " + fieldName + "Key(key);" : null;
+
+			out.println(" /**");
+			out.println("  * Seeks the first record holding the key, false if there is none. Records whose");
+			out.println("  * field is blank are not indexed.");
+			out.println("  */");
+			out.println(" public boolean findBy" + subname + "(" + keyType
+					+ " key) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+			if (keyBytes != null) {
+				out.println(keyBytes);
+				out.println("  if (bytes == null) return false;");
+			}
+			out.println("  int recno = " + fieldName + "Index().first(" + key + ");");
+			out.println("  if (recno == 0) return false;");
+			out.println("  seek(recno);");
+			out.println("  return true;");
+			out.println(" }");
+			out.println();
+
+			if (!indexes.get(element)) {
+				out.println(" /** Record numbers holding the key, ascending. */");
+				out.println(" public int[] findAllBy" + subname + "(" + keyType + " key) throws java.io.IOException {");
+				if (keyBytes != null) {
+					out.println(keyBytes);
+					out.println("  if (bytes == null) return new int[0];");
+				}
+				out.println("  return " + fieldName + "Index().all(" + key + ");");
+				out.println(" }");
+				out.println();
+			}
+		}
+	}
+
+	/**
+	 * A char key as the field would store it: encoded with the DBF encoding after the
+	 * charset mapper, padded to the field length and trimmed like the indexed bytes.
+	 */
+	private static void writeKey(PrintWriter out, String codec, String fieldName, DBFField a) {
+		out.println(" /** The bytes " + fieldName + " is indexed by for the key, null for a null or blank key. */");
+		out.println(" private byte[] " + fieldName + "Key(String key) {");
+		out.println("  if (key == null || key.isBlank() || this." + fieldName + " == null) return null;");
+		out.println("  if (_charsetMapper != null) key = _charsetMapper.map(key);");
+		out.println("  byte[] value = key.getBytes(charset());");
+		out.println("  byte[] b = new byte[java.lang.Math.max(value.length, this." + fieldName + ".getLength())];");
+		out.println("  java.lang.System.arraycopy(value, 0, b, 0, value.length);");
+		out.println("  " + codec + ".fill(b, value.length, b.length - value.length);");
+		out.println("  long range = " + codec + ".trimmedRange(b, 0, b.length, " + a.ltrim() + ", " + a.rtrim() + ");");
+		out.println("  return java.util.Arrays.copyOfRange(b, (int) (range >>> 32), (int) range);");
+		out.println(" }");
+		out.println();
+	}
+
+	/** Looks the keys of the unique indexes up before an appended record is written. */
+	private static void writeCheckUnique(PrintWriter out, String codec, Map<Element, Boolean> indexes) {
+		out.println(" /** Fails if a unique index already holds a key of the record, before it is written. */");
+		out.println(" private void checkUnique() throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		for (Map.Entry<Element, Boolean> entry : indexes.entrySet()) {
+			if (!entry.getValue()) {
+				continue;
+			}
+			Element element = entry.getKey();
+			DBFField a = element.getAnnotation(DBFField.class);
+			String fieldName = element.getSimpleName().toString();
+			String bytes = "this." + fieldName + ".getBytes(), 0, this." + fieldName + ".getLength()";
+			String duplicate = "throw new org.xBaseJ.xBaseJException(\"" + a.name().toUpperCase()
+					+ ": duplicate unique key ";
+			out.println("  if (this." + fieldName + " != null) {");
+			switch (FieldKind.of(element)) {
+			case INT:
+			case LONG:
+				out.println("   long key = " + codec + ".parseLong(" + bytes + ", java.lang.Long.MIN_VALUE);");
+				out.println("   int recno = key == java.lang.Long.MIN_VALUE ? 0 : " + fieldName + "Index().first(key);");
+				out.println("   if (recno != 0) " + duplicate + "\" + key + \" in record \" + recno);");
+				break;
+			case DATE:
+				out.println("   int day = " + codec + ".parseEpochDay(" + bytes + ");");
+				out.println("   int recno = day == " + codec + ".NO_DATE ? 0 : " + fieldName + "Index().first(day);");
+				out.println("   if (recno != 0) " + duplicate + "\" + java.time.LocalDate.ofEpochDay(day)"
+						+ " + \" in record \" + recno);");
+				break;
+			default:
+				out.println("   byte[] b = this." + fieldName + ".getBytes();");
+				out.println("   long range = " + codec + ".trimmedRange(" + bytes + ", " + a.ltrim() + ", " + a.rtrim()
+						+ ");");
+				out.println("   int from = (int) (range >>> 32);");
+				out.println("   int to = (int) range;");
+				out.println("   int recno = from == to ? 0 : " + fieldName + "Index().first(b, from, to);");
+				out.println("   if (recno != 0) " + duplicate + "'\" + new String(b, from, to - from, charset())"
+						+ " + \"' in record \" + recno);");
+				break;
+			}
+			out.println("  }");
+		}
+		out.println(" }");
+		out.println();
+	}
+}
@@ -0,0 +1,407 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Writes the opt-in instrumentation of the record class: the
+ * {@code <Record>Listener} interface and, as {@link Feature#METRICS} and
+ * {@link Feature#JFR}, the {@code <Record>Metrics} counters and the
+ * {@code <Record>JfrListener} emitting Flight Recorder events. Without a
+ * listener the record class pays one volatile read per seek, write and decoded
+ * value.
+ */
+final class InstrumentationGenerator {
+
+	/** Seek latency buckets, the first ends at 1024 ns and every next one doubles. */
+	static final int LATENCY_BUCKETS = 24;
+
+	private InstrumentationGenerator() {
+	}
+
+	private static void writePackage(PrintWriter out, String packageName) {
+		if (packageName != null) {
+			out.print("package ");
+			out.print(packageName);
+			out.println(";");
+			out.println();
+		}
+	}
+
+	static void writeListener(PrintWriter out, String packageName, String dbfRecordSimpleClassName) {
+		final String listenerClassName = dbfRecordSimpleClassName + "Listener";
+		writePackage(out, packageName);
+
+		out.println("/**");
+		out.println(" * Receives the instrumentation of all {@link " + dbfRecordSimpleClassName + "} instances once set with");
+		out.println(" * {@link " + dbfRecordSimpleClassName + "#setListener}. Field indexes are the ones of {@link "
+				+ dbfRecordSimpleClassName + "Layout}.");
+		out.println(" * Methods are called on the thread using the record and should return quickly.");
+		out.println(" */");
+		out.println("public interface " + listenerClassName);
+		out.println(" {");
+		out.println();
+		out.println(" /** A seek read a record of bytes length in nanos nanoseconds. */");
+		out.println(" default void recordRead(int recno, int bytes, long nanos) {");
+		out.println(" }");
+		out.println();
+		out.println(" /** A record of bytes length was appended or updated. */");
+		out.println(" default void recordWritten(int recno, int bytes) {");
+		out.println(" }");
+		out.println();
+		out.println(" /** A getter decoded a field of the current record for the first time. */");
+		out.println(" default void valueDecoded(int field, boolean blank) {");
+		out.println(" }");
+		out.println();
+		out.println(" /** A getter could not parse value and returned 0 or null instead. */");
+		out.println(" default void parseFailure(int field, java.lang.String value) {");
+		out.println(" }");
+		out.println();
+		out.println(" /** Calls first, then second. */");
+		out.println(" static " + listenerClassName + " combine(" + listenerClassName + " first, " + listenerClassName
+				+ " second) {");
+		out.println("  return new " + listenerClassName + "() {");
+		out.println("   @Override");
+		out.println("   public void recordRead(int recno, int bytes, long nanos) {");
+		out.println("    first.recordRead(recno, bytes, nanos);");
+		out.println("    second.recordRead(recno, bytes, nanos);");
+		out.println("   }");
+		out.println();
+		out.println("   @Override");
+		out.println("   public void recordWritten(int recno, int bytes) {");
+		out.println("    first.recordWritten(recno, bytes);");
+		out.println("    second.recordWritten(recno, bytes);");
+		out.println("   }");
+		out.println();
+		out.println("   @Override");
+		out.println("   public void valueDecoded(int field, boolean blank) {");
+		out.println("    first.valueDecoded(field, blank);");
+		out.println("    second.valueDecoded(field, blank);");
+		out.println("   }");
+		out.println();
+		out.println("   @Override");
+		out.println("   public void parseFailure(int field, java.lang.String value) {");
+		out.println("    first.parseFailure(field, value);");
+		out.println("    second.parseFailure(field, value);");
+		out.println("   }");
+		out.println("  };");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+
+	static void writeMetrics(PrintWriter out, String packageName, String dbfRecordSimpleClassName) {
+		final String metricsClassName = dbfRecordSimpleClassName + "Metrics";
+		final String layout = dbfRecordSimpleClassName + "Layout";
+		writePackage(out, packageName);
+
+		out.println("/**");
+		out.println(" * Thread safe counters of the {@link " + dbfRecordSimpleClassName + "} instrumentation: records read");
+		out.println(" * and written, bytes read, a seek latency histogram and per field parse failures");
+		out.println(" * and blank rates.");
+		out.println(" */");
+		out.println("public final class " + metricsClassName + " implements " + dbfRecordSimpleClassName + "Listener");
+		out.println(" {");
+		out.println();
+		out.println(" public static final int LATENCY_BUCKETS = " + LATENCY_BUCKETS + ";");
+		out.println();
+		out.println(" private final java.util.concurrent.atomic.LongAdder _recordsRead = new java.util.concurrent.atomic.LongAdder();");
+		out.println(" private final java.util.concurrent.atomic.LongAdder _bytesRead = new java.util.concurrent.atomic.LongAdder();");
+		out.println(" private final java.util.concurrent.atomic.LongAdder _seekNanos = new java.util.concurrent.atomic.LongAdder();");
+		out.println(" private final java.util.concurrent.atomic.LongAdder _recordsWritten = new java.util.concurrent.atomic.LongAdder();");
+		out.println(" private final java.util.concurrent.atomic.LongAdder _bytesWritten = new java.util.concurrent.atomic.LongAdder();");
+		out.println(" private final java.util.concurrent.atomic.AtomicLongArray _latency = new java.util.concurrent.atomic.AtomicLongArray(LATENCY_BUCKETS);");
+		out.println(" private final java.util.concurrent.atomic.AtomicLongArray _decoded = new java.util.concurrent.atomic.AtomicLongArray("
+				+ layout + ".FIELD_COUNT);");
+		out.println(" private final java.util.concurrent.atomic.AtomicLongArray _blanks = new java.util.concurrent.atomic.AtomicLongArray("
+				+ layout + ".FIELD_COUNT);");
+		out.println(" private final java.util.concurrent.atomic.AtomicLongArray _parseFailures = new java.util.concurrent.atomic.AtomicLongArray("
+				+ layout + ".FIELD_COUNT);");
+		out.println();
+
+		out.println(" /** Histogram bucket of a latency: below 1024 ns, then doubling up to the last bucket. */");
+		out.println(" public static int bucket(long nanos) {");
+		out.println("  return java.lang.Math.min(LATENCY_BUCKETS - 1, 64 - java.lang.Long.numberOfLeadingZeros(java.lang.Math.max(0, nanos) >>> 10));");
+		out.println(" }");
+		out.println();
+		out.println(" /** Exclusive upper bound in nanoseconds of a bucket, Long.MAX_VALUE for the last one. */");
+		out.println(" public static long bucketUpperBound(int bucket) {");
+		out.println("  return bucket >= LATENCY_BUCKETS - 1 ? java.lang.Long.MAX_VALUE : 1024L << bucket;");
+		out.println(" }");
+		out.println();
+
+		out.println(" @Override");
+		out.println(" public void recordRead(int recno, int bytes, long nanos) {");
+		out.println("  _recordsRead.increment();");
+		out.println("  _bytesRead.add(bytes);");
+		out.println("  _seekNanos.add(nanos);");
+		out.println("  _latency.incrementAndGet(bucket(nanos));");
+		out.println(" }");
+		out.println();
+		out.println(" @Override");
+		out.println(" public void recordWritten(int recno, int bytes) {");
+		out.println("  _recordsWritten.increment();");
+		out.println("  _bytesWritten.add(bytes);");
+		out.println(" }");
+		out.println();
+		out.println(" @Override");
+		out.println(" public void valueDecoded(int field, boolean blank) {");
+		out.println("  _decoded.incrementAndGet(field);");
+		out.println("  if (blank) _blanks.incrementAndGet(field);");
+		out.println(" }");
+		out.println();
+		out.println(" @Override");
+		out.println(" public void parseFailure(int field, java.lang.String value) {");
+		out.println("  _parseFailures.incrementAndGet(field);");
+		out.println(" }");
+		out.println();
+
+		out.println(" public long getRecordsRead() {");
+		out.println("  return _recordsRead.sum();");
+		out.println(" }");
+		out.println();
+		out.println(" public long getBytesRead() {");
+		out.println("  return _bytesRead.sum();");
+		out.println(" }");
+		out.println();
+		out.println(" /** Total time spent in seeks, in nanoseconds. */");
+		out.println(" public long getSeekNanos() {");
+		out.println("  return _seekNanos.sum();");
+		out.println(" }");
+		out.println();
+		out.println(" public long getRecordsWritten() {");
+		out.println("  return _recordsWritten.sum();");
+		out.println(" }");
+		out.println();
+		out.println(" public long getBytesWritten() {");
+		out.println("  return _bytesWritten.sum();");
+		out.println(" }");
+		out.println();
+		out.println(" /** Seek counts per {@link #bucket}. */");
+		out.println(" public long[] getSeekLatencyHistogram() {");
+		out.println("  long[] counts = new long[LATENCY_BUCKETS];");
+		out.println("  for (int i = 0; i < counts.length; i++) {");
+		out.println("   counts[i] = _latency.get(i);");
+		out.println("  }");
+		out.println("  return counts;");
+		out.println(" }");
+		out.println();
+		out.println(" public long getDecoded(int field) {");
+		out.println("  return _decoded.get(field);");
+		out.println(" }");
+		out.println();
+		out.println(" public long getBlanks(int field) {");
+		out.println("  return _blanks.get(field);");
+		out.println(" }");
+		out.println();
+		out.println(" /** Share of the decoded values of a field that were blank, NaN before the first one. */");
+		out.println(" public double getBlankRate(int field) {");
+		out.println("  long decoded = _decoded.get(field);");
+		out.println("  return decoded == 0 ? java.lang.Double.NaN : (double) _blanks.get(field) / decoded;");
+		out.println(" }");
+		out.println();
+		out.println(" public long getParseFailures(int field) {");
+		out.println("  return _parseFailures.get(field);");
+		out.println(" }");
+		out.println();
+		out.println(" public void reset() {");
+		out.println("  _recordsRead.reset();");
+		out.println("  _bytesRead.reset();");
+		out.println("  _seekNanos.reset();");
+		out.println("  _recordsWritten.reset();");
+		out.println("  _bytesWritten.reset();");
+		out.println("  for (int i = 0; i < LATENCY_BUCKETS; i++) {");
+		out.println("   _latency.set(i, 0);");
+		out.println("  }");
+		out.println("  for (int i = 0; i < " + layout + ".FIELD_COUNT; i++) {");
+		out.println("   _decoded.set(i, 0);");
+		out.println("   _blanks.set(i, 0);");
+		out.println("   _parseFailures.set(i, 0);");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" @Override");
+		out.println(" public java.lang.String toString() {");
+		out.println("  java.lang.StringBuilder sb = new java.lang.StringBuilder(\"" + metricsClassName + "[read=\");");
+		out.println("  sb.append(getRecordsRead()).append(\", bytesRead=\").append(getBytesRead());");
+		out.println("  sb.append(\", seekNanos=\").append(getSeekNanos());");
+		out.println("  sb.append(\", written=\").append(getRecordsWritten());");
+		out.println("  for (int i = 0; i < " + layout + ".FIELD_COUNT; i++) {");
+		out.println("   if (_decoded.get(i) == 0 && _parseFailures.get(i) == 0) continue;");
+		out.println("   sb.append(\", \").append(" + layout + ".name(i)).append(\"={decoded=\").append(_decoded.get(i));");
+		out.println("   sb.append(\", blanks=\").append(_blanks.get(i));");
+		out.println("   sb.append(\", parseFailures=\").append(_parseFailures.get(i)).append('}');");
+		out.println("  }");
+		out.println("  return sb.append(']').toString();");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+
+	static void writeJfrListener(PrintWriter out, String packageName, String dbfRecordSimpleClassName,
+			Set<Feature> features) {
+		final String jfrClassName = dbfRecordSimpleClassName + "JfrListener";
+		final String layout = dbfRecordSimpleClassName + "Layout";
+		final String eventPrefix = (packageName == null ? "" : packageName + ".") + dbfRecordSimpleClassName + ".";
+		writePackage(out, packageName);
+
+		out.println("/**");
+		out.println(" * Emits the {@link " + dbfRecordSimpleClassName + "} instrumentation as JDK Flight Recorder events,");
+		if (features.contains(Feature.METRICS)) {
+			out.println(" * committed only while a recording enables them. Blank values are only counted by");
+			out.println(" * {@link " + dbfRecordSimpleClassName + "Metrics}.");
+		} else {
+			out.println(" * committed only while a recording enables them. Blank values are not emitted.");
+		}
+		out.println(" */");
+		out.println("public final class " + jfrClassName + " implements " + dbfRecordSimpleClassName + "Listener");
+		out.println(" {");
+		out.println();
+		writeEvent(out, eventPrefix, dbfRecordSimpleClassName, "Seek", "Seek", false,
+				new String[] { "int recno", "Record Number", null }, new String[] { "long bytes", "Bytes", "DataAmount" },
+				new String[] { "long seekTime", "Seek Time", "Timespan" });
+		writeEvent(out, eventPrefix, dbfRecordSimpleClassName, "Write", "Write", false,
+				new String[] { "int recno", "Record Number", null }, new String[] { "long bytes", "Bytes", "DataAmount" });
+		writeEvent(out, eventPrefix, dbfRecordSimpleClassName, "ParseFailure", "Parse Failure", true,
+				new String[] { "java.lang.String field", "Field", null }, new String[] { "java.lang.String value", "Value", null });
+
+		out.println(" @Override");
+		out.println(" public void recordRead(int recno, int bytes, long nanos) {");
+		out.println("  SeekEvent event = new SeekEvent();");
+		out.println("  if (event.shouldCommit()) {");
+		out.println("   event.recno = recno;");
+		out.println("   event.bytes = bytes;");
+		out.println("   event.seekTime = nanos;");
+		out.println("   event.commit();");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+		out.println(" @Override");
+		out.println(" public void recordWritten(int recno, int bytes) {");
+		out.println("  WriteEvent event = new WriteEvent();");
+		out.println("  if (event.shouldCommit()) {");
+		out.println("   event.recno = recno;");
+		out.println("   event.bytes = bytes;");
+		out.println("   event.commit();");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+		out.println(" @Override");
+		out.println(" public void parseFailure(int field, java.lang.String value) {");
+		out.println("  ParseFailureEvent event = new ParseFailureEvent();");
+		out.println("  if (event.shouldCommit()) {");
+		out.println("   event.field = " + layout + ".name(field);");
+		out.println("   event.value = value;");
+		out.println("   event.commit();");
+		out.println("  }");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+
+	/** Fields are declaration, label and an optional content type annotation. */
+	private static void writeEvent(PrintWriter out, String eventPrefix, String dbfRecordSimpleClassName, String name,
+			String label, boolean stackTrace, String[]... fields) {
+		out.println(" @jdk.jfr.Name(\"" + eventPrefix + name + "\")");
+		out.println(" @jdk.jfr.Label(\"" + dbfRecordSimpleClassName + " " + label + "\")");
+		out.println(" @jdk.jfr.Category({ \"xBaseJ\", \"" + dbfRecordSimpleClassName + "\" })");
+		out.println(" @jdk.jfr.StackTrace(" + stackTrace + ")");
+		out.println(" static final class " + name + "Event extends jdk.jfr.Event {");
+		for (String[] field : fields) {
+			out.println("  @jdk.jfr.Label(\"" + field[1] + "\")");
+			if (field[2] != null) {
+				out.println("  @jdk.jfr." + field[2]);
+			}
+			out.println("  " + field[0] + ";");
+		}
+		out.println(" }");
+		out.println();
+	}
+
+	/** Static listener of the record class and the helpers reporting to it. */
+	static void writeRecordMembers(PrintWriter out, String dbfRecordSimpleClassName, Set<Feature> features) {
+		final String listenerClassName = dbfRecordSimpleClassName + "Listener";
+		out.println(" private static volatile " + listenerClassName + " _listener;");
+		out.println();
+		out.println(" /**");
+		List<String> examples = new ArrayList<>();
+		if (features.contains(Feature.METRICS)) {
+			examples.add("{@link " + dbfRecordSimpleClassName + "Metrics}");
+		}
+		if (features.contains(Feature.JFR)) {
+			examples.add("{@link " + dbfRecordSimpleClassName + "JfrListener}");
+		}
+		out.println("  * Instruments all " + dbfRecordSimpleClassName + " instances"
+				+ (examples.isEmpty() ? "." : ", for example with a " + String.join(" or a ", examples) + "."));
+		out.println("  * Null turns the instrumentation off.");
+		out.println("  */");
+		out.println(" public static void setListener(" + listenerClassName + " listener) {");
+		out.println("  _listener = listener;");
+		out.println(" }");
+		out.println();
+		out.println(" public static " + listenerClassName + " getListener() {");
+		out.println("  return _listener;");
+		out.println(" }");
+		out.println();
+		out.println(" private void recordWritten() {");
+		out.println("  " + listenerClassName + " listener = _listener;");
+		out.println("  if (listener != null) listener.recordWritten(_dbf.getCurrentRecordNumber(), _recordLength);");
+		out.println(" }");
+		out.println();
+		out.println(" private static void parseFailure(int field, org.xBaseJ.fields.Field value) {");
+		out.println("  " + listenerClassName + " listener = _listener;");
+		out.println("  if (listener != null) listener.parseFailure(field, value.get());");
+		out.println(" }");
+		out.println();
+	}
+
+	/** The seek of the record class, timed only while a listener is set. */
+	static void writeSeek(PrintWriter out, String dbfRecordSimpleClassName) {
+		out.println(" public void seek(int recno) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  " + dbfRecordSimpleClassName + "Listener listener = _listener;");
+		out.println("  if (listener == null) {");
+		out.println("   _dbf.gotoRecord(recno);");
+		out.println("  } else {");
+		out.println("   long start = java.lang.System.nanoTime();");
+		out.println("   _dbf.gotoRecord(recno);");
+		out.println("   listener.recordRead(recno, _recordLength, java.lang.System.nanoTime() - start);");
+		out.println("  }");
+		out.println("  clearDirty();");
+		out.println("  clearDecoded();");
+		out.println(" }");
+	}
+
+	/**
+	 * Whether the value just decoded into the slot of a record class field is
+	 * blank, for {@link #writeValueDecoded}.
+	 */
+	static String blankCondition(String codec, Element element) {
+		String fieldName = element.getSimpleName().toString();
+		String field = "this." + fieldName;
+		String slot = "_" + fieldName + "_value";
+		switch (FieldKind.of(element)) {
+		case INT:
+		case LONG:
+		case BIG_INTEGER:
+			return field + "==null || " + codec + ".isBlank(" + field + ".getBytes(), 0, " + field + ".getLength())";
+		case LOGICAL:
+		case FLOAT:
+		case CURRENCY:
+		case DATE:
+			return slot + " == null";
+		default:
+			return slot + ".isEmpty()";
+		}
+	}
+
+	static void writeValueDecoded(PrintWriter out, String dbfRecordSimpleClassName, Element element, int index) {
+		String codec = DBFFieldProcessor.CODEC;
+		out.println("   " + dbfRecordSimpleClassName + "Listener listener = _listener;");
+		out.println("   if (listener != null) listener.valueDecoded(" + index + ", " + blankCondition(codec, element) + ");");
+	}
+}
@@ -0,0 +1,56 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Writes the per field {@code _<field>_offset} and {@code _<field>_length}
+ * members of the raw byte based classes and the code binding them to a parsed
+ * DBF header. Missing fields get offset -1, like a null xBaseJ field.
+ */
+final class LayoutBinding {
+
+	private LayoutBinding() {
+	}
+
+	static void writeFields(PrintWriter out, Collection<Element> elements) {
+		writeFields(out, elements, true);
+	}
+
+	/** Offsets that are not final can be set to -1 later, hiding the field. */
+	static void writeFields(PrintWriter out, Collection<Element> elements, boolean finalOffsets) {
+		for (Element element : elements) {
+			String fieldName = element.getSimpleName().toString();
+			out.println(" private " + (finalOffsets ? "final " : "") + "int _" + fieldName + "_offset;");
+			out.println(" private final int _" + fieldName + "_length;");
+		}
+	}
+
+	/**
+	 * Expects a local {@code header} variable of the codec header type. Fields of
+	 * an unexpected type fail with an IllegalStateException listing all
+	 * differences to the compile time layout.
+	 */
+	static void writeBind(PrintWriter out, String dbfRecordSimpleClassName, Collection<Element> elements,
+			String indent) {
+		final String layout = dbfRecordSimpleClassName + "Layout";
+		out.println(indent + "java.lang.StringBuilder mismatches = new java.lang.StringBuilder();");
+		out.println(indent + "int[] columns = " + layout
+				+ ".bind(header.names, header.types, header.lengths, header.decimals, mismatches);");
+		out.println(indent + "for (int column : columns) {");
+		out.println(indent + " if (column == " + layout + ".TYPE_MISMATCH) {");
+		out.println(indent + "  throw new java.lang.IllegalStateException(\"DBF header does not match "
+				+ dbfRecordSimpleClassName + ":\" + mismatches);");
+		out.println(indent + " }");
+		out.println(indent + "}");
+		int index = 0;
+		for (Element element : elements) {
+			String fieldName = element.getSimpleName().toString();
+			String column = "columns[" + index++ + "]";
+			out.println(indent + "_" + fieldName + "_offset = " + column + " < 0 ? -1 : header.offsets[" + column + "];");
+			out.println(indent + "_" + fieldName + "_length = " + column + " < 0 ? 0 : header.lengths[" + column + "];");
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes {@code <Record>Layout}, the compile time description of the annotated
+ * DBF fields in the order {@code addFieldsTo} creates them, and the one pass
+ * check of a DBF header against it.
+ */
+final class LayoutGenerator {
+
+	private LayoutGenerator() {
+	}
+
+	/** The size xBaseJ gives a new field, -1 where it is not known at compile time. */
+	static int size(Element element) {
+		DBFField a = element.getAnnotation(DBFField.class);
+		switch (FieldKind.of(element)) {
+		case CHAR:
+		case INT:
+		case LONG:
+		case BIG_INTEGER:
+		case DECIMAL:
+		case FLOAT:
+			return a.size();
+		case DATE:
+		case CURRENCY:
+			return 8;
+		case LOGICAL:
+			return 1;
+		case MEMO:
+		case PICTURE:
+			return 10;
+		default:
+			return -1;
+		}
+	}
+
+	/** The decimal count xBaseJ gives a new field, -1 where it is not known at compile time. */
+	static int decimals(Element element) {
+		DBFField a = element.getAnnotation(DBFField.class);
+		switch (FieldKind.of(element)) {
+		case INT:
+		case LONG:
+		case BIG_INTEGER:
+		case DECIMAL:
+		case FLOAT:
+			return a.dec();
+		case CHAR:
+		case DATE:
+		case LOGICAL:
+		case MEMO:
+		case PICTURE:
+			return 0;
+		default:
+			return -1;
+		}
+	}
+
+	static void write(PrintWriter out, String packageName, String dbfRecordSimpleClassName,
+			Collection<Element> elements) {
+		final String layoutClassName = dbfRecordSimpleClassName + "Layout";
+
+		if (packageName != null) {
+			out.print("package ");
+			out.print(packageName);
+			out.println(";");
+			out.println();
+		}
+
+		StringBuilder names = new StringBuilder();
+		StringBuilder types = new StringBuilder();
+		StringBuilder sizes = new StringBuilder();
+		StringBuilder decimals = new StringBuilder();
+		for (Element element : elements) {
+			String separator = names.length() == 0 ? "" : ", ";
+			names.append(separator).append('"').append(element.getAnnotation(DBFField.class).name().toUpperCase())
+					.append('"');
+			types.append(separator).append('\'').append(FieldKind.of(element).type).append('\'');
+			sizes.append(separator).append(size(element));
+			decimals.append(separator).append(decimals(element));
+		}
+
+		out.println("/**");
+		out.println(" * Compile time layout of the {@link " + dbfRecordSimpleClassName
+				+ "} DBF fields, in the order addFieldsTo creates them.");
+		out.println(" * Sizes and decimals of -1 are not checked.");
+		out.println(" */");
+		out.println("public final class " + layoutClassName);
+		out.println(" {");
+		out.println();
+		out.println(" public static final int FIELD_COUNT = " + elements.size() + ";");
+		out.println();
+		out.println(" private static final java.lang.String[] NAMES = { " + names + " };");
+		out.println(" private static final char[] TYPES = { " + types + " };");
+		out.println(" private static final int[] SIZES = { " + sizes + " };");
+		out.println(" private static final int[] DECIMALS = { " + decimals + " };");
+		out.println();
+		out.println(" /** Column index of a field with an unexpected type in the result of {@link #bind}. */");
+		out.println(" static final int TYPE_MISMATCH = -2;");
+		out.println();
+		out.println(" private " + layoutClassName + "() {");
+		out.println(" }");
+		out.println();
+		out.println(" public static java.lang.String name(int index) {");
+		out.println("  return NAMES[index];");
+		out.println(" }");
+		out.println();
+		out.println(" public static char type(int index) {");
+		out.println("  return TYPES[index];");
+		out.println(" }");
+		out.println();
+		out.println(" public static int size(int index) {");
+		out.println("  return SIZES[index];");
+		out.println(" }");
+		out.println();
+		out.println(" public static int decimals(int index) {");
+		out.println("  return DECIMALS[index];");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Layout index of a DBF field name, -1 for fields not in the struct. */");
+		out.println(" public static int indexOf(java.lang.String name) {");
+		out.println("  switch (name.trim().toUpperCase(java.util.Locale.ROOT)) {");
+		int index = 0;
+		for (Element element : elements) {
+			out.println("  case \"" + element.getAnnotation(DBFField.class).name().toUpperCase() + "\":");
+			out.println("   return " + index++ + ";");
+		}
+		out.println("  default:");
+		out.println("   return -1;");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" /**");
+		out.println("  * Matches the DBF columns against the layout in one pass. Returns the column of");
+		out.println("  * every layout field, -1 if it is missing or {@link #TYPE_MISMATCH}. Every");
+		out.println("  * difference, including sizes and decimals, is appended to mismatches.");
+		out.println("  */");
+		out.println(" static int[] bind(java.lang.String[] names, char[] types, int[] sizes, int[] decimals,");
+		out.println("   java.lang.StringBuilder mismatches) {");
+		out.println("  int[] columns = new int[FIELD_COUNT];");
+		out.println("  java.util.Arrays.fill(columns, -1);");
+		out.println("  for (int column = 0; column < names.length; column++) {");
+		out.println("   int index = indexOf(names[column]);");
+		out.println("   if (index < 0) {");
+		out.println("    continue;");
+		out.println("   }");
+		out.println("   if (types[column] != TYPES[index]) {");
+		out.println("    mismatches.append(' ').append(NAMES[index]).append(\": type \").append(types[column])");
+		out.println("      .append(\" != \").append(TYPES[index]).append(';');");
+		out.println("    columns[index] = TYPE_MISMATCH;");
+		out.println("    continue;");
+		out.println("   }");
+		out.println("   if (SIZES[index] >= 0 && sizes[column] != SIZES[index]) {");
+		out.println("    mismatches.append(' ').append(NAMES[index]).append(\": size \").append(sizes[column])");
+		out.println("      .append(\" != \").append(SIZES[index]).append(';');");
+		out.println("   }");
+		out.println("   if (DECIMALS[index] >= 0 && decimals[column] != DECIMALS[index]) {");
+		out.println("    mismatches.append(' ').append(NAMES[index]).append(\": decimals \").append(decimals[column])");
+		out.println("      .append(\" != \").append(DECIMALS[index]).append(';');");
+		out.println("   }");
+		out.println("   columns[index] = column;");
+		out.println("  }");
+		out.println("  for (int index = 0; index < FIELD_COUNT; index++) {");
+		out.println("   if (columns[index] == -1) {");
+		out.println("    mismatches.append(' ').append(NAMES[index]).append(\": missing;\");");
+		out.println("   }");
+		out.println("  }");
+		out.println("  return columns;");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+}
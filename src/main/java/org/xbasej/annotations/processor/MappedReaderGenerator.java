@@ -0,0 +1,311 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes {@code <Record>MappedReader}, a read-only cursor that maps the DBF file
+ * and decodes the annotated fields straight from the record bytes. Getter names
+ * and return types match the ones of the generated record class.
+ */
+final class MappedReaderGenerator {
+
+	private MappedReaderGenerator() {
+	}
+
+	static void write(PrintWriter out, String packageName, String dbfRecordSimpleClassName,
+			Collection<Element> elements, Map<Element, Boolean> indexes, Set<Feature> features) {
+		final String readerClassName = dbfRecordSimpleClassName + "MappedReader";
+		final String codec = DBFFieldProcessor.CODEC;
+		final boolean memo = MemoStreamGenerator.hasMemo(elements);
+
+		if (packageName != null) {
+			out.print("package ");
+			out.print(packageName);
+			out.println(";");
+			out.println();
+		}
+
+		out.println("/**");
+		out.println(" * Read-only memory mapped cursor over {@link " + dbfRecordSimpleClassName + "} records.");
+		out.println(" * The DBF header is checked once when opening, field values are decoded from the");
+		out.println(" * mapped record bytes. Memo and picture values are read from the memo file only");
+		out.println(" * when their getter or stream is called.");
+		out.println(" */");
+		out.println("public class " + readerClassName);
+		out.println(" implements java.lang.Iterable<" + readerClassName + ">, java.io.Closeable");
+		out.println(" {");
+		out.println();
+		out.println(" /** Largest mapped region, a region always holds whole records. */");
+		out.println(" private static final long SEGMENT_SIZE = java.lang.Integer.MAX_VALUE;");
+		out.println();
+		out.println(" private final java.nio.channels.FileChannel _channel;");
+		out.println(" private final java.nio.MappedByteBuffer[] _segments;");
+		out.println(" private final java.nio.charset.Charset _charset;");
+		out.println(" private final int _recordsPerSegment;");
+		out.println(" private final int _recordCount;");
+		out.println(" private final int _recordLength;");
+		out.println(" private final byte[] _record;");
+		out.println(" private int _recno;");
+		if (memo) {
+			out.println(" private final java.nio.file.Path _file;");
+			out.println(" private final int _version;");
+		}
+		LayoutBinding.writeFields(out, elements, false);
+		out.println(" private final int[] _boundOffsets;");
+		out.println(" private int _copyFrom;");
+		out.println(" private int _copyLength;");
+		FieldCacheGenerator.writeMembers(out, elements, false);
+
+		out.println(" public " + readerClassName + "(java.nio.file.Path file) throws java.io.IOException {");
+		out.println("  this(file, java.nio.charset.StandardCharsets.ISO_8859_1);");
+		out.println(" }");
+		out.println();
+
+		out.println(" public " + readerClassName
+				+ "(java.nio.file.Path file, java.nio.charset.Charset charset) throws java.io.IOException {");
+		out.println("  _charset = charset;");
+		out.println("  _channel = java.nio.channels.FileChannel.open(file, java.nio.file.StandardOpenOption.READ);");
+		out.println("  try {");
+		out.println("   " + codec + ".Header header = " + codec + ".readHeader(_channel);");
+		LayoutBinding.writeBind(out, dbfRecordSimpleClassName, elements, "   ");
+		if (memo) {
+			out.println("   _file = file;");
+			out.println("   _version = header.raw[0] & 0xff;");
+		}
+		out.println("   _recordLength = header.recordLength;");
+		out.println("   _record = new byte[_recordLength];");
+		out.print("   _boundOffsets = new int[] {");
+		String separator = " ";
+		for (Element element : elements) {
+			out.print(separator + "_" + element.getSimpleName() + "_offset");
+			separator = ", ";
+		}
+		out.println(" };");
+		out.println("   _copyLength = _recordLength;");
+		out.println("   long available = (_channel.size() - header.headerLength) / _recordLength;");
+		out.println("   _recordCount = (int) java.lang.Math.max(0, java.lang.Math.min(header.recordCount, available));");
+		out.println("   _recordsPerSegment = (int) (SEGMENT_SIZE / _recordLength);");
+		out.println("   _segments = new java.nio.MappedByteBuffer[(_recordCount + _recordsPerSegment - 1) / _recordsPerSegment];");
+		out.println("   for (int i = 0; i < _segments.length; i++) {");
+		out.println("    long first = (long) i * _recordsPerSegment;");
+		out.println("    long records = java.lang.Math.min(_recordsPerSegment, _recordCount - first);");
+		out.println("    _segments[i] = _channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY,");
+		out.println("      header.headerLength + first * _recordLength, records * _recordLength);");
+		out.println("   }");
+		out.println("  } catch (java.io.IOException | java.lang.RuntimeException e) {");
+		out.println("   _channel.close();");
+		out.println("   throw e;");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+
+		out.println(" public int getRecordCount() {");
+		out.println("  return _recordCount;");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** The current record number, starting at 1, or 0 before the first seek. */");
+		out.println(" public int getRecordNumber() {");
+		out.println("  return _recno;");
+		out.println(" }");
+		out.println();
+
+		out.println(" public void seek(int recno) {");
+		out.println("  if (recno < 1 || recno > _recordCount) {");
+		out.println("   throw new java.lang.IndexOutOfBoundsException(\"Invalid Record Number \" + recno);");
+		out.println("  }");
+		out.println("  int index = recno - 1;");
+		out.println("  java.nio.MappedByteBuffer segment = _segments[index / _recordsPerSegment];");
+		out.println("  int position = (index % _recordsPerSegment) * _recordLength;");
+		out.println("  _record[0] = segment.get(position);");
+		out.println("  segment.position(position + _copyFrom);");
+		out.println("  segment.get(_record, _copyFrom, _copyLength);");
+		out.println("  _recno = recno;");
+		out.println("  clearDecoded();");
+		out.println(" }");
+		out.println();
+
+		writeProject(out, dbfRecordSimpleClassName, elements);
+
+		out.println(" public boolean deleted() {");
+		out.println("  return _record[0] == " + codec + ".DELETED;");
+		out.println(" }");
+		out.println();
+
+		int index = 0;
+		for (Element element : elements) {
+			DBFField a = element.getAnnotation(DBFField.class);
+			FieldKind kind = FieldKind.of(element);
+			String fieldName = element.getSimpleName().toString();
+			String fieldType = element.asType().toString();
+			String getter = "get" + methodSubname(fieldName);
+			String offset = "_" + fieldName + "_offset";
+			String length = "_" + fieldName + "_length";
+			String bytes = "_record, " + offset + ", " + length;
+			boolean cached = FieldCacheGenerator.cached(element);
+			String declare = cached ? " private " : " public ";
+			String method = cached ? "decode" + methodSubname(fieldName) : getter;
+			out.println(" /** " + fieldType + " */");
+			if (cached) {
+				FieldCacheGenerator.writeCachingGetter(out, element, index, null);
+			}
+			index++;
+			switch (kind) {
+			case PICTURE:
+			case MEMO:
+				MemoStreamGenerator.writeReaderGetter(out, element, declare, method);
+				break;
+			case LOGICAL:
+				out.println(declare + "java.lang.Boolean " + method + "() {");
+				out.println("  if (" + offset + " < 0) return null;");
+				out.println("  int value = " + codec + ".parseLogical(" + bytes + ");");
+				out.println("  if (value == " + codec + ".LOGICAL_BLANK) return null;");
+				out.println("  return value == 1;");
+				break;
+			case FLOAT:
+				out.println(declare + "java.lang.Double " + method + "() {");
+				out.println("  if (" + offset + " < 0 || " + codec + ".isBlank(" + bytes + ")) return null;");
+				out.println("  return " + codec + ".parseDouble(" + bytes + ", java.lang.Double.NaN);");
+				break;
+			case CURRENCY:
+				out.println(declare + "java.math.BigDecimal " + method + "() {");
+				out.println("  if (" + offset + " < 0) return null;");
+				out.println("  return java.math.BigDecimal.valueOf(" + codec + ".readLongLE(_record, " + offset
+						+ "), 4);");
+				break;
+			case DATE:
+				out.println(declare + "java.time.LocalDate " + method + "() {");
+				out.println("  if (" + offset + " < 0) return null;");
+				out.println("  int epochDay = " + codec + ".parseEpochDay(" + bytes + ");");
+				out.println("  if (epochDay == " + codec + ".NO_DATE) return null;");
+				out.println("  return java.time.LocalDate.ofEpochDay(epochDay);");
+				break;
+			case INT:
+				out.println(declare + "int " + method + "() {");
+				out.println("  if (" + offset + " < 0) return 0;");
+				out.println("  return " + codec + ".parseInt(" + bytes + ", 0);");
+				break;
+			case LONG:
+				out.println(declare + "long " + method + "() {");
+				out.println("  if (" + offset + " < 0) return 0;");
+				out.println("  return " + codec + ".parseLong(" + bytes + ", 0);");
+				break;
+			case BIG_INTEGER:
+				out.println(declare + "java.math.BigInteger " + method + "() {");
+				out.println("  if (" + offset + " < 0) return java.math.BigInteger.ZERO;");
+				out.println("  return " + codec + ".parseBigInteger(" + bytes + ");");
+				break;
+			case CHAR:
+				out.println(declare + "String " + method + "() {");
+				out.println("  if (" + offset + " < 0) return \"\";");
+				out.println("  return " + codec + ".decodeString(" + bytes + ", " + a.ltrim() + ", " + a.rtrim()
+						+ ", _charset);");
+				break;
+			default:
+				out.println(declare + "String " + method + "() {");
+				out.println("  if (" + offset + " < 0) return \"\";");
+				out.println("  return new String(" + bytes + ", _charset);");
+				break;
+			}
+			out.println(" }");
+			out.println();
+			PrimitiveAccessors.write(out, codec, element, offset + " < 0", bytes);
+		}
+
+		if (memo) {
+			MemoStreamGenerator.writeReaderMembers(out, codec, elements);
+		}
+		if (features.contains(Feature.ROWS)) {
+			RowGenerator.writeReadRows(out, dbfRecordSimpleClassName, elements, "");
+		}
+		if (features.contains(Feature.COLUMNS)) {
+			ColumnBatchGenerator.writeReadColumns(out, dbfRecordSimpleClassName, elements);
+		}
+		ExportGenerator.write(out, dbfRecordSimpleClassName, elements);
+		ScanGenerator.write(out, codec, readerClassName, elements);
+		IndexGenerator.writeBuilders(out, codec, indexes);
+
+		out.println(" @Override");
+		out.println(" public void close() throws java.io.IOException {");
+		if (memo) {
+			out.println("  try {");
+			out.println("   if (_memoFile != null) _memoFile.close();");
+			out.println("  } finally {");
+			out.println("   _channel.close();");
+			out.println("  }");
+		} else {
+			out.println("  _channel.close();");
+		}
+		out.println(" }");
+		out.println();
+
+		out.println(" @Override");
+		out.println(" public java.util.Iterator<" + readerClassName + "> iterator() {");
+		out.println("  final int length = _recordCount;");
+		out.println("  return new java.util.Iterator<>() {");
+		out.println("   private int recno = 0;");
+		out.println();
+		out.println("   @Override");
+		out.println("   public boolean hasNext() {");
+		out.println("    return length > recno;");
+		out.println("   }");
+		out.println();
+		out.println("   @Override");
+		out.println("   public " + readerClassName + " next() {");
+		out.println("    if (!hasNext()) throw new java.util.NoSuchElementException();");
+		out.println("    seek(++recno);");
+		out.println("    return " + readerClassName + ".this;");
+		out.println("   }");
+		out.println("  };");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+
+	private static void writeProject(PrintWriter out, String dbfRecordSimpleClassName, Collection<Element> elements) {
+		final String layout = dbfRecordSimpleClassName + "Layout";
+		out.println(" /**");
+		out.println("  * Restricts the reader to the named DBF fields, all of them if none are given.");
+		out.println("  * Seeks copy only the bytes spanning these fields, the other fields read as if");
+		out.println("  * they were missing from the file: blank, null or 0.");
+		out.println("  */");
+		out.println(" public void project(java.lang.String... names) {");
+		out.println("  long[] projected = new long[" + ((elements.size() + 63) >>> 6) + "];");
+		out.println("  for (java.lang.String name : names) {");
+		out.println("   int index = " + layout + ".indexOf(name);");
+		out.println("   if (index < 0) {");
+		out.println("    throw new java.lang.IllegalArgumentException(name + \" is not a field of " + dbfRecordSimpleClassName
+				+ "\");");
+		out.println("   }");
+		out.println("   projected[index >>> 6] |= 1L << index;");
+		out.println("  }");
+		out.println("  boolean all = names.length == 0;");
+		out.println("  int from = _recordLength;");
+		out.println("  int to = 1;");
+		int index = 0;
+		for (Element element : elements) {
+			String offset = "_" + element.getSimpleName() + "_offset";
+			out.println("  " + offset + " = all || (projected[" + (index >>> 6) + "] & 1L << " + index
+					+ ") != 0 ? _boundOffsets[" + index + "] : -1;");
+			out.println("  if (" + offset + " >= 0) {");
+			out.println("   from = java.lang.Math.min(from, " + offset + ");");
+			out.println("   to = java.lang.Math.max(to, " + offset + " + _" + element.getSimpleName() + "_length);");
+			out.println("  }");
+			index++;
+		}
+		out.println("  _copyFrom = all ? 0 : java.lang.Math.min(from, to);");
+		out.println("  _copyLength = all ? _recordLength : to - _copyFrom;");
+		out.println("  if (_recno > 0) seek(_recno);");
+		out.println(" }");
+		out.println();
+	}
+}
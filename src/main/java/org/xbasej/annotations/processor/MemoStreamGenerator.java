@@ -0,0 +1,222 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes the streaming accessors of memo and picture fields. Values are read
+ * from and appended to the memo file next to the DBF file in chunks, using the
+ * block number held by the field, so the content is never loaded as a whole.
+ */
+final class MemoStreamGenerator {
+
+	private MemoStreamGenerator() {
+	}
+
+	static boolean hasMemo(Collection<Element> elements) {
+		for (Element element : elements) {
+			if (FieldKind.of(element).isMemo()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Members of {@code <Record>MappedReader}, expecting its {@code _file} and
+	 * {@code _version} fields. The memo file is opened on first access.
+	 */
+	static void writeReaderMembers(PrintWriter out, String codec, Collection<Element> elements) {
+		out.println(" private " + codec + ".MemoFile _memoFile;");
+		out.println();
+		out.println(" private " + codec + ".MemoFile memoFile() throws java.io.IOException {");
+		out.println("  if (_memoFile == null) _memoFile = " + codec + ".MemoFile.open(_file, _version, false);");
+		out.println("  return _memoFile;");
+		out.println(" }");
+		out.println();
+		out.println(" private byte[] readMemo(int offset, int length) {");
+		out.println("  try {");
+		out.println("   return memoFile().read(" + codec + ".MemoFile.block(_record, offset, length));");
+		out.println("  } catch (java.io.IOException e) {");
+		out.println("   throw new java.io.UncheckedIOException(e);");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+		for (Element element : elements) {
+			if (!FieldKind.of(element).isMemo()) {
+				continue;
+			}
+			String fieldName = element.getSimpleName().toString();
+			String dbfName = element.getAnnotation(DBFField.class).name().toUpperCase();
+			String subname = methodSubname(fieldName);
+			String offset = "_" + fieldName + "_offset";
+			String block = codec + ".MemoFile.block(_record, " + offset + ", _" + fieldName + "_length)";
+			out.println(" /** Length in bytes of the " + dbfName + " value of the current record, without reading it. */");
+			out.println(" public long get" + subname + "Length() throws java.io.IOException {");
+			out.println("  if (" + offset + " < 0) return 0;");
+			out.println("  return memoFile().length(" + block + ");");
+			out.println(" }");
+			out.println();
+			out.println(" /**");
+			out.println("  * Streams the " + dbfName + " value of the current record, empty if it has none.");
+			out.println("  * The stream stays valid after a seek but not after {@link #close()}.");
+			out.println("  */");
+			out.println(" public java.io.InputStream open" + subname + "Stream() throws java.io.IOException {");
+			out.println("  if (" + offset + " < 0) return java.io.InputStream.nullInputStream();");
+			out.println("  return memoFile().open(" + block + ");");
+			out.println(" }");
+			out.println();
+		}
+	}
+
+	/** The memo field getters of {@code <Record>MappedReader}. */
+	static void writeReaderGetter(PrintWriter out, Element element, String declare, String method) {
+		String fieldName = element.getSimpleName().toString();
+		String offset = "_" + fieldName + "_offset";
+		String read = "readMemo(" + offset + ", _" + fieldName + "_length)";
+		if (FieldKind.of(element) == FieldKind.PICTURE) {
+			out.println(declare + "byte[] " + method + "() {");
+			out.println("  if (" + offset + " < 0) return null;");
+			out.println("  return " + read + ";");
+		} else {
+			out.println(declare + "String " + method + "() {");
+			out.println("  if (" + offset + " < 0) return \"\";");
+			out.println("  return new String(" + read + ", _charset);");
+		}
+	}
+
+	/**
+	 * Members of the record class. The block number is read from the current
+	 * record in the DBF file. To write a value the xBaseJ handle is closed, as it
+	 * caches the next free block of the memo file, the value is appended to the
+	 * memo file and the record is attached to a new handle, like after
+	 * {@code rewriteTo} of {@link MigrationGenerator}.
+	 */
+	static void writeRecordMembers(PrintWriter out, String dbfRecordSimpleClassName, Collection<Element> elements) {
+		final String codec = DBFFieldProcessor.CODEC;
+
+		out.println(" private " + codec + ".MemoFile openMemoFile(java.nio.file.Path file, boolean write)");
+		out.println("   throws java.io.IOException {");
+		out.println("  int version;");
+		out.println("  try (java.io.InputStream in = java.nio.file.Files.newInputStream(file)) {");
+		out.println("   version = in.read();");
+		out.println("  }");
+		out.println("  return " + codec + ".MemoFile.open(file, version, write);");
+		out.println(" }");
+		out.println();
+		out.println(" /** File position of the named field in record recno. */");
+		out.println(" private static long memoPosition(" + codec + ".Header header, int recno, java.lang.String name) {");
+		out.println("  if (recno < 1) throw new java.lang.IllegalStateException(\"No current record\");");
+		out.println("  for (int i = 0; i < header.names.length; i++) {");
+		out.println("   if (header.names[i].equalsIgnoreCase(name)) {");
+		out.println("    return header.headerLength + (long) (recno - 1) * header.recordLength + header.offsets[i];");
+		out.println("   }");
+		out.println("  }");
+		out.println("  throw new java.lang.IllegalStateException(name + \" not found in the DBF header\");");
+		out.println(" }");
+		out.println();
+		out.println(" private int readMemoBlock(java.lang.String name) throws java.io.IOException {");
+		out.println("  try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(");
+		out.println("    java.nio.file.Paths.get(_dbf.getName()), java.nio.file.StandardOpenOption.READ)) {");
+		out.println("   " + codec + ".Header header = " + codec + ".readHeader(channel);");
+		out.println("   long position = memoPosition(header, _dbf.getCurrentRecordNumber(), name);");
+		out.println("   java.nio.ByteBuffer field = java.nio.ByteBuffer.allocate(10);");
+		out.println("   " + codec + ".readFully(channel, field, position);");
+		out.println("   return " + codec + ".MemoFile.block(field.array(), 0, field.capacity());");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+		out.println(" private long memoLength(java.lang.String name) throws java.io.IOException {");
+		out.println("  int block = readMemoBlock(name);");
+		out.println("  try (" + codec + ".MemoFile memo = openMemoFile(java.nio.file.Paths.get(_dbf.getName()), false)) {");
+		out.println("   return memo.length(block);");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+		out.println(" private java.io.InputStream openMemoStream(java.lang.String name) throws java.io.IOException {");
+		out.println("  int block = readMemoBlock(name);");
+		out.println("  " + codec + ".MemoFile memo = openMemoFile(java.nio.file.Paths.get(_dbf.getName()), false);");
+		out.println("  try {");
+		out.println("   return new java.io.FilterInputStream(memo.open(block)) {");
+		out.println("    @Override");
+		out.println("    public void close() throws java.io.IOException {");
+		out.println("     try {");
+		out.println("      super.close();");
+		out.println("     } finally {");
+		out.println("      memo.close();");
+		out.println("     }");
+		out.println("    }");
+		out.println("   };");
+		out.println("  } catch (java.io.IOException | java.lang.RuntimeException e) {");
+		out.println("   memo.close();");
+		out.println("   throw e;");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+		out.println(" private void writeMemo(java.lang.String name, java.io.InputStream in, boolean picture)");
+		out.println("   throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  if (isDirty()) throw new java.lang.IllegalStateException(\"Update the record before writing \" + name);");
+		out.println("  final int recno = _dbf.getCurrentRecordNumber();");
+		out.println("  if (recno < 1) throw new java.lang.IllegalStateException(\"No current record\");");
+		out.println("  final java.lang.String file = _dbf.getName();");
+		out.println("  final java.lang.String encoding = _dbf.getEncodingType();");
+		out.println("  _dbf.close();");
+		out.println("  try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(");
+		out.println("    java.nio.file.Paths.get(file), java.nio.file.StandardOpenOption.READ,");
+		out.println("    java.nio.file.StandardOpenOption.WRITE);");
+		out.println("    " + codec + ".MemoFile memo = openMemoFile(java.nio.file.Paths.get(file), true)) {");
+		out.println("   " + codec + ".Header header = " + codec + ".readHeader(channel);");
+		out.println("   long position = memoPosition(header, recno, name);");
+		out.println("   byte[] pointer = new byte[10];");
+		out.println("   " + codec + ".encodeLong(memo.append(in, picture), pointer, 0, pointer.length);");
+		out.println("   " + codec + ".writeFully(channel, java.nio.ByteBuffer.wrap(pointer), position);");
+		out.println("  } finally {");
+		out.println("   attach(new org.xBaseJ.DBF(file, encoding));");
+		out.println("   if (_charsetMapper != null) setCharsetMapper(_charsetMapper);");
+		out.println("  }");
+		out.println("  seek(recno);");
+		out.println(" }");
+		out.println();
+
+		for (Element element : elements) {
+			FieldKind kind = FieldKind.of(element);
+			if (!kind.isMemo()) {
+				continue;
+			}
+			String fieldName = element.getSimpleName().toString();
+			String dbfName = element.getAnnotation(DBFField.class).name().toUpperCase();
+			String subname = methodSubname(fieldName);
+			String name = "\"" + dbfName + "\"";
+			out.println(" /** Length in bytes of the " + dbfName + " value in the file, without reading it. */");
+			out.println(" public long get" + subname + "Length() throws java.io.IOException {");
+			out.println("  if (this." + fieldName + "==null) return 0;");
+			out.println("  return memoLength(" + name + ");");
+			out.println(" }");
+			out.println();
+			out.println(" /** Streams the " + dbfName + " value of the current record from the file, close it after use. */");
+			out.println(" public java.io.InputStream open" + subname + "Stream() throws java.io.IOException {");
+			out.println("  if (this." + fieldName + "==null) return java.io.InputStream.nullInputStream();");
+			out.println("  return openMemoStream(" + name + ");");
+			out.println(" }");
+			out.println();
+			out.println(" /**");
+			out.println("  * Appends the content of in to the memo file in chunks, points the " + dbfName);
+			out.println("  * field of the current record at it and reloads the record. The DBF handle is");
+			out.println("  * closed during the append and this record is attached to a new one, so xBaseJ");
+			out.println("  * sees the new end of the memo file. Fails with an IllegalStateException while");
+			out.println("  * the record has changes not yet updated.");
+			out.println("  */");
+			out.println(" public void write" + subname + "(java.io.InputStream in) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+			out.println("  if (this." + fieldName + "==null) return;");
+			out.println("  writeMemo(" + name + ", in, " + (kind == FieldKind.PICTURE) + ");");
+			out.println(" }");
+			out.println();
+		}
+	}
+}
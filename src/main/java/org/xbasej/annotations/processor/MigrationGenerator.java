@@ -0,0 +1,101 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+
+/**
+ * Writes {@code compactTo} and {@code migrateTo} into the generated record
+ * class. Both stream the records that are not deleted through
+ * {@link org.xbasej.annotations.runtime.RecordCodec.Rewrite} into a new file
+ * that replaces the target once complete, the alternative to {@code pack()}
+ * and to adding fields through xBaseJ on large tables.
+ */
+final class MigrationGenerator {
+
+	static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	private MigrationGenerator() {
+	}
+
+	static void writeRecordMembers(PrintWriter out, String dbfRecordSimpleClassName, String afterChange) {
+		final String codec = DBFFieldProcessor.CODEC;
+		final String layout = dbfRecordSimpleClassName + "Layout";
+
+		out.println(" /**");
+		out.println("  * Writes the records of source that are not deleted to target with the same fields,");
+		out.println("  * in chunks of " + (DEFAULT_BUFFER_SIZE >> 20) + " MiB. The new file is written next to target and moved");
+		out.println("  * over it once complete, a memo file is copied along. Returns the number of records.");
+		out.println("  */");
+		out.println(" public static int compact(java.nio.file.Path source, java.nio.file.Path target) throws java.io.IOException {");
+		out.println("  return " + codec + ".Rewrite.compact(source).writeTo(target, " + DEFAULT_BUFFER_SIZE + ", null);");
+		out.println(" }");
+		out.println();
+		out.println(" /**");
+		out.println("  * Like {@link #compact}, but the new file has the fields of {@link " + layout + "} in");
+		out.println("  * layout order, followed by the fields of source the struct does not declare. Fields");
+		out.println("  * missing in source are left blank. Character and numeric fields whose size changed");
+		out.println("  * are realigned, the migration fails with an IOException on a value that does not fit");
+		out.println("  * or a field whose type changed.");
+		out.println("  */");
+		out.println(" public static int migrate(java.nio.file.Path source, java.nio.file.Path target) throws java.io.IOException {");
+		out.println("  return migration(source).writeTo(target, " + DEFAULT_BUFFER_SIZE + ", null);");
+		out.println(" }");
+		out.println();
+		out.println(" private static " + codec + ".Rewrite migration(java.nio.file.Path source) throws java.io.IOException {");
+		out.println("  java.lang.String[] names = new java.lang.String[" + layout + ".FIELD_COUNT];");
+		out.println("  char[] types = new char[names.length];");
+		out.println("  int[] sizes = new int[names.length];");
+		out.println("  int[] decimals = new int[names.length];");
+		out.println("  for (int i = 0; i < names.length; i++) {");
+		out.println("   names[i] = " + layout + ".name(i);");
+		out.println("   types[i] = " + layout + ".type(i);");
+		out.println("   sizes[i] = " + layout + ".size(i);");
+		out.println("   decimals[i] = " + layout + ".decimals(i);");
+		out.println("  }");
+		out.println("  return " + codec + ".Rewrite.migrate(source, names, types, sizes, decimals);");
+		out.println(" }");
+		out.println();
+		out.println(" /**");
+		out.println("  * {@link #compact} of the attached DBF file. Target may be the attached file itself,");
+		out.println("  * its DBF handle is then closed before the move and this record is attached to a new");
+		out.println("  * handle on the result, with the same encoding and charset mapper. Fails with an");
+		out.println("  * IllegalStateException while the record has changes not yet updated.");
+		out.println("  */");
+		out.println(" public int compactTo(java.nio.file.Path target) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  return rewriteTo(" + codec + ".Rewrite.compact(java.nio.file.Paths.get(_dbf.getName())), target);");
+		out.println(" }");
+		out.println();
+		out.println(" /** {@link #migrate} of the attached DBF file, see {@link #compactTo}. */");
+		out.println(" public int migrateTo(java.nio.file.Path target) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  return rewriteTo(migration(java.nio.file.Paths.get(_dbf.getName())), target);");
+		out.println(" }");
+		out.println();
+		out.println(" private static boolean isSameFile(java.nio.file.Path source, java.nio.file.Path target) throws java.io.IOException {");
+		out.println("  return java.nio.file.Files.exists(target) && java.nio.file.Files.isSameFile(source, target);");
+		out.println(" }");
+		out.println();
+		out.println(" private int rewriteTo(" + codec + ".Rewrite rewrite, java.nio.file.Path target)");
+		out.println("   throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  if (isDirty()) throw new java.lang.IllegalStateException(\"Update the record before rewriting the file\");");
+		out.println("  final java.lang.String name = _dbf.getName();");
+		out.println("  final java.lang.String encoding = _dbf.getEncodingType();");
+		out.println("  if (!isSameFile(java.nio.file.Paths.get(name), target)) {");
+		out.println("   return rewrite.writeTo(target, " + DEFAULT_BUFFER_SIZE + ", null);");
+		out.println("  }");
+		out.println("  final org.xBaseJ.DBF dbf = _dbf;");
+		out.println("  final boolean[] closed = { false };");
+		out.println("  try {");
+		out.println("   return rewrite.writeTo(target, " + DEFAULT_BUFFER_SIZE + ", () -> {");
+		out.println("    closed[0] = true;");
+		out.println("    dbf.close();");
+		out.println("   });");
+		out.println("  } finally {");
+		out.println("   if (closed[0]) {");
+		out.println("    attach(new org.xBaseJ.DBF(name, encoding));");
+		out.println("    if (_charsetMapper != null) setCharsetMapper(_charsetMapper);");
+		out.println("    clearDirty();" + afterChange);
+		out.println("   }");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+	}
+}
@@ -0,0 +1,79 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Writes the allocation free accessors for numeric, date and logical fields.
+ * They parse the ASCII field bytes through the generated codec and signal blank
+ * or invalid values with a default instead of an exception.
+ */
+final class PrimitiveAccessors {
+
+	private PrimitiveAccessors() {
+	}
+
+	/**
+	 * @param missing expression that is true when the field is not present
+	 * @param bytes   the {@code byte[], offset, length} arguments of the field value
+	 */
+	static void write(PrintWriter out, String codec, Element element, String missing, String bytes) {
+		FieldKind kind = FieldKind.of(element);
+		String fieldType = element.asType().toString();
+		String subname = methodSubname(element.getSimpleName().toString());
+		switch (kind) {
+		case INT:
+		case LONG:
+		case DATE:
+		case LOGICAL:
+			break;
+		default:
+			return;
+		}
+
+		out.println(" /** " + fieldType + ", false if the field is missing or blank */");
+		out.println(" public boolean has" + subname + "() {");
+		out.println("  if (" + missing + ") return false;");
+		out.println("  return !" + codec + ".isBlank(" + bytes + ");");
+		out.println(" }");
+		out.println();
+
+		switch (kind) {
+		case INT:
+			out.println(" /** " + fieldType + ", dflt if the field is missing, blank or not a number */");
+			out.println(" public int get" + subname + "OrDefault(int dflt) {");
+			out.println("  if (" + missing + ") return dflt;");
+			out.println("  return " + codec + ".parseInt(" + bytes + ", dflt);");
+			out.println(" }");
+			break;
+		case LONG:
+			out.println(" /** " + fieldType + ", dflt if the field is missing, blank or not a number */");
+			out.println(" public long get" + subname + "OrDefault(long dflt) {");
+			out.println("  if (" + missing + ") return dflt;");
+			out.println("  return " + codec + ".parseLong(" + bytes + ", dflt);");
+			out.println(" }");
+			break;
+		case DATE:
+			out.println(" /** " + fieldType + ", java.lang.Integer.MIN_VALUE if the field is missing, blank or invalid */");
+			out.println(" public int get" + subname + "EpochDay() {");
+			out.println("  if (" + missing + ") return " + codec + ".NO_DATE;");
+			out.println("  return " + codec + ".parseEpochDay(" + bytes + ");");
+			out.println(" }");
+			break;
+		case LOGICAL:
+			out.println(" /** " + fieldType + ", dflt if the field is missing or blank */");
+			out.println(" public boolean get" + subname + "OrDefault(boolean dflt) {");
+			out.println("  if (" + missing + ") return dflt;");
+			out.println("  int value = " + codec + ".parseLogical(" + bytes + ");");
+			out.println("  return value == " + codec + ".LOGICAL_BLANK ? dflt : value == 1;");
+			out.println(" }");
+			break;
+		default:
+			break;
+		}
+		out.println();
+	}
+}
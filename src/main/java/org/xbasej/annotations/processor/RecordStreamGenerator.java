@@ -0,0 +1,127 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+
+/**
+ * Writes {@code stream(boolean parallel)} into the generated record class. The
+ * spliterator splits the record number range, every split opens its own DBF
+ * handle and record instance the first time it is traversed, with the encoding
+ * of the attached DBF and the charset mapper of the record.
+ */
+final class RecordStreamGenerator {
+
+	/** Splits smaller than this are not split any further. */
+	static final int MIN_SPLIT = 1024;
+
+	private RecordStreamGenerator() {
+	}
+
+	static void write(PrintWriter out, String dbfRecordSimpleClassName) {
+		final String spliterator = "_" + dbfRecordSimpleClassName + "Spliterator";
+
+		out.println(" /**");
+		out.println("  * Streams all records of the attached DBF. Every split of the stream reads through");
+		out.println("  * its own DBF handle and " + dbfRecordSimpleClassName + " instance, which is handed to the pipeline");
+		out.println("  * once per record: map records to values before collecting them. The stream is");
+		out.println("  * ordered, use forEachOrdered to keep the record order or unordered() to drop it.");
+		out.println("  * Handles are closed when a split is exhausted and when the stream is closed. They");
+		out.println("  * use the encoding of the attached DBF, records the charset mapper of this record.");
+		out.println("  */");
+		out.println(" public java.util.stream.Stream<" + dbfRecordSimpleClassName + "> stream(boolean parallel) {");
+		out.println("  final java.util.Queue<org.xBaseJ.DBF> opened = new java.util.concurrent.ConcurrentLinkedQueue<>();");
+		out.println("  " + spliterator + " all = new " + spliterator
+				+ "(_dbf.getName(), _dbf.getEncodingType(), _charsetMapper, 1, _dbf.getRecordCount() + 1, opened);");
+		out.println("  return java.util.stream.StreamSupport.stream(all, parallel).onClose(() -> {");
+		out.println("   for (org.xBaseJ.DBF dbf = opened.poll(); dbf != null; dbf = opened.poll()) {");
+		out.println("    try {");
+		out.println("     dbf.close();");
+		out.println("    } catch (java.io.IOException e) {");
+		out.println("     throw new java.io.UncheckedIOException(e);");
+		out.println("    }");
+		out.println("   }");
+		out.println("  });");
+		out.println(" }");
+		out.println();
+
+		out.println(" private static final class " + spliterator + " implements java.util.Spliterator<"
+				+ dbfRecordSimpleClassName + "> {");
+		out.println("  private final java.lang.String name;");
+		out.println("  private final java.lang.String encoding;");
+		out.println("  private final org.xBaseJ.cp.CharsetMapper mapper;");
+		out.println("  private final java.util.Queue<org.xBaseJ.DBF> opened;");
+		out.println("  private final int end;");
+		out.println("  private int recno;");
+		out.println("  private org.xBaseJ.DBF dbf;");
+		out.println("  private " + dbfRecordSimpleClassName + " record;");
+		out.println();
+		out.println("  " + spliterator + "(java.lang.String name, java.lang.String encoding, org.xBaseJ.cp.CharsetMapper mapper,");
+		out.println("    int recno, int end, java.util.Queue<org.xBaseJ.DBF> opened) {");
+		out.println("   this.name = name;");
+		out.println("   this.encoding = encoding;");
+		out.println("   this.mapper = mapper;");
+		out.println("   this.recno = recno;");
+		out.println("   this.end = end;");
+		out.println("   this.opened = opened;");
+		out.println("  }");
+		out.println();
+		out.println("  @Override");
+		out.println("  public boolean tryAdvance(java.util.function.Consumer<? super " + dbfRecordSimpleClassName
+				+ "> action) {");
+		out.println("   if (recno >= end) {");
+		out.println("    release();");
+		out.println("    return false;");
+		out.println("   }");
+		out.println("   try {");
+		out.println("    if (record == null) {");
+		out.println("     dbf = new org.xBaseJ.DBF(name, encoding);");
+		out.println("     opened.add(dbf);");
+		out.println("     record = new " + dbfRecordSimpleClassName + "();");
+		out.println("     record.attach(dbf);");
+		out.println("     if (mapper != null) record.setCharsetMapper(mapper);");
+		out.println("    }");
+		out.println("    record.seek(recno++);");
+		out.println("   } catch (org.xBaseJ.xBaseJException | java.io.IOException e) {");
+		out.println("    throw new java.lang.RuntimeException(e);");
+		out.println("   }");
+		out.println("   action.accept(record);");
+		out.println("   if (recno >= end) {");
+		out.println("    release();");
+		out.println("   }");
+		out.println("   return true;");
+		out.println("  }");
+		out.println();
+		out.println("  private void release() {");
+		out.println("   if (dbf == null || !opened.remove(dbf)) {");
+		out.println("    return;");
+		out.println("   }");
+		out.println("   try {");
+		out.println("    dbf.close();");
+		out.println("   } catch (java.io.IOException e) {");
+		out.println("    throw new java.io.UncheckedIOException(e);");
+		out.println("   }");
+		out.println("  }");
+		out.println();
+		out.println("  @Override");
+		out.println("  public java.util.Spliterator<" + dbfRecordSimpleClassName + "> trySplit() {");
+		out.println("   int mid = (recno + end) >>> 1;");
+		out.println("   if (record != null || mid - recno < " + MIN_SPLIT + ") {");
+		out.println("    return null;");
+		out.println("   }");
+		out.println("   " + spliterator + " prefix = new " + spliterator + "(name, encoding, mapper, recno, mid, opened);");
+		out.println("   recno = mid;");
+		out.println("   return prefix;");
+		out.println("  }");
+		out.println();
+		out.println("  @Override");
+		out.println("  public long estimateSize() {");
+		out.println("   return end - recno;");
+		out.println("  }");
+		out.println();
+		out.println("  @Override");
+		out.println("  public int characteristics() {");
+		out.println("   return ORDERED | SIZED | SUBSIZED | NONNULL;");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+	}
+}
@@ -0,0 +1,228 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Writes {@code <Record>Row}, an immutable detached copy of one record. Small
+ * numbers are kept as int or long and dates as epoch day, getters have the names
+ * and types of the record class getters.
+ */
+final class RowGenerator {
+
+	private RowGenerator() {
+	}
+
+	/** The type a component is stored as. */
+	static String componentType(Element element) {
+		switch (FieldKind.of(element)) {
+		case INT:
+		case DATE:
+			return "int";
+		case LONG:
+			return "long";
+		case BIG_INTEGER:
+			return "java.math.BigInteger";
+		case LOGICAL:
+			return "java.lang.Boolean";
+		case FLOAT:
+			return "java.lang.Double";
+		case CURRENCY:
+			return "java.math.BigDecimal";
+		case PICTURE:
+			return "byte[]";
+		default:
+			return "String";
+		}
+	}
+
+	/**
+	 * A {@code new <Record>Row(...)} expression reading the current record through
+	 * the getters of the record class or mapped reader, memo and picture values
+	 * included.
+	 */
+	static String newRow(String dbfRecordSimpleClassName, Collection<Element> elements) {
+		StringBuilder expression = new StringBuilder("new " + dbfRecordSimpleClassName + "Row(");
+		String separator = "";
+		for (Element element : elements) {
+			FieldKind kind = FieldKind.of(element);
+			String subname = methodSubname(element.getSimpleName().toString());
+			expression.append(separator);
+			if (kind == FieldKind.DATE) {
+				expression.append("get").append(subname).append("EpochDay()");
+			} else {
+				expression.append("get").append(subname).append("()");
+			}
+			separator = ", ";
+		}
+		return expression.append(")").toString();
+	}
+
+	/**
+	 * {@code readRows(from, to)}, detaching the records from record number from,
+	 * inclusive, to to, exclusive.
+	 */
+	static void writeReadRows(PrintWriter out, String dbfRecordSimpleClassName, Collection<Element> elements,
+			String throwsClause) {
+		final String rowClassName = dbfRecordSimpleClassName + "Row";
+		out.println(" /**");
+		out.println("  * Detached copies of the records from, inclusive, to to, exclusive, deleted ones");
+		out.println("  * included. Memo and picture values are read from the memo file into the rows.");
+		out.println("  */");
+		out.println(" public " + rowClassName + "[] readRows(int from, int to)" + throwsClause + " {");
+		out.println("  " + rowClassName + "[] rows = new " + rowClassName + "[to - from];");
+		out.println("  for (int recno = from; recno < to; recno++) {");
+		out.println("   seek(recno);");
+		out.println("   rows[recno - from] = toRow();");
+		out.println("  }");
+		out.println("  return rows;");
+		out.println(" }");
+		out.println();
+		out.println(" public " + rowClassName + " toRow() {");
+		out.println("  return " + newRow(dbfRecordSimpleClassName, elements) + ";");
+		out.println(" }");
+		out.println();
+	}
+
+	static void write(PrintWriter out, String packageName, String dbfRecordSimpleClassName,
+			Collection<Element> elements) {
+		final String rowClassName = dbfRecordSimpleClassName + "Row";
+		final String codec = DBFFieldProcessor.CODEC;
+
+		if (packageName != null) {
+			out.print("package ");
+			out.print(packageName);
+			out.println(";");
+			out.println();
+		}
+
+		out.println("/**");
+		out.println(" * Immutable, detached copy of a {@link " + dbfRecordSimpleClassName + "} record, safe to keep");
+		out.println(" * and to share between threads.");
+		out.println(" */");
+		out.println("public final class " + rowClassName);
+		out.println(" {");
+		out.println();
+		for (Element element : elements) {
+			out.println(" private final " + componentType(element) + " " + element.getSimpleName() + ";");
+		}
+		out.println();
+
+		StringBuilder parameters = new StringBuilder();
+		for (Element element : elements) {
+			if (parameters.length() > 0) {
+				parameters.append(", ");
+			}
+			parameters.append(componentType(element)).append(' ').append(element.getSimpleName());
+		}
+		out.println(" /** Dates are epoch days, java.lang.Integer.MIN_VALUE for blank. */");
+		out.println(" public " + rowClassName + "(" + parameters + ") {");
+		for (Element element : elements) {
+			String fieldName = element.getSimpleName().toString();
+			if (FieldKind.of(element) == FieldKind.PICTURE) {
+				out.println("  this." + fieldName + " = " + fieldName + " == null ? null : " + fieldName + ".clone();");
+			} else {
+				out.println("  this." + fieldName + " = " + fieldName + ";");
+			}
+		}
+		out.println(" }");
+		out.println();
+
+		for (Element element : elements) {
+			FieldKind kind = FieldKind.of(element);
+			String fieldName = element.getSimpleName().toString();
+			String fieldType = element.asType().toString();
+			String subname = methodSubname(fieldName);
+			out.println(" /** " + fieldType + " */");
+			switch (kind) {
+			case DATE:
+				out.println(" public java.time.LocalDate get" + subname + "() {");
+				out.println("  if (" + fieldName + " == " + codec + ".NO_DATE) return null;");
+				out.println("  return java.time.LocalDate.ofEpochDay(" + fieldName + ");");
+				out.println(" }");
+				out.println();
+				out.println(" /** " + fieldType + ", java.lang.Integer.MIN_VALUE for blank */");
+				out.println(" public int get" + subname + "EpochDay() {");
+				out.println("  return " + fieldName + ";");
+				break;
+			case PICTURE:
+				out.println(" public byte[] get" + subname + "() {");
+				out.println("  return " + fieldName + " == null ? null : " + fieldName + ".clone();");
+				break;
+			default:
+				out.println(" public " + componentType(element) + " get" + subname + "() {");
+				out.println("  return " + fieldName + ";");
+				break;
+			}
+			out.println(" }");
+			out.println();
+		}
+
+		out.println(" @Override");
+		out.println(" public boolean equals(java.lang.Object obj) {");
+		out.println("  if (this == obj) return true;");
+		out.println("  if (!(obj instanceof " + rowClassName + ")) return false;");
+		out.println("  " + rowClassName + " other = (" + rowClassName + ") obj;");
+		StringBuilder equals = new StringBuilder();
+		for (Element element : elements) {
+			String fieldName = element.getSimpleName().toString();
+			String type = componentType(element);
+			equals.append(equals.length() == 0 ? "  return " : "\n    && ");
+			if (type.equals("int") || type.equals("long")) {
+				equals.append(fieldName).append(" == other.").append(fieldName);
+			} else if (type.equals("byte[]")) {
+				equals.append("java.util.Arrays.equals(").append(fieldName).append(", other.").append(fieldName)
+						.append(")");
+			} else {
+				equals.append("java.util.Objects.equals(").append(fieldName).append(", other.").append(fieldName)
+						.append(")");
+			}
+		}
+		out.println(equals.length() == 0 ? "  return true;" : equals + ";");
+		out.println(" }");
+		out.println();
+
+		out.println(" @Override");
+		out.println(" public int hashCode() {");
+		out.println("  int result = 1;");
+		for (Element element : elements) {
+			String fieldName = element.getSimpleName().toString();
+			String type = componentType(element);
+			if (type.equals("int")) {
+				out.println("  result = 31 * result + " + fieldName + ";");
+			} else if (type.equals("long")) {
+				out.println("  result = 31 * result + java.lang.Long.hashCode(" + fieldName + ");");
+			} else if (type.equals("byte[]")) {
+				out.println("  result = 31 * result + java.util.Arrays.hashCode(" + fieldName + ");");
+			} else {
+				out.println("  result = 31 * result + java.util.Objects.hashCode(" + fieldName + ");");
+			}
+		}
+		out.println("  return result;");
+		out.println(" }");
+		out.println();
+
+		out.println(" @Override");
+		out.println(" public java.lang.String toString() {");
+		StringBuilder toString = new StringBuilder("\"" + rowClassName + "[");
+		String separator = "";
+		for (Element element : elements) {
+			String fieldName = element.getSimpleName().toString();
+			String subname = methodSubname(fieldName);
+			String value = FieldKind.of(element) == FieldKind.DATE ? "get" + subname + "()"
+					: FieldKind.of(element) == FieldKind.PICTURE
+							? "(" + fieldName + " == null ? null : " + fieldName + ".length + \" bytes\")"
+							: fieldName;
+			toString.append(separator).append(fieldName).append("=\" + ").append(value).append(" + \"");
+			separator = ", ";
+		}
+		out.println("  return " + toString + "]\";");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+}
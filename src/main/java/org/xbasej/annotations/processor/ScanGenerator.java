@@ -0,0 +1,209 @@
+package org.xbasej.annotations.processor;
+
+import static org.xbasej.annotations.processor.DBFFieldProcessor.methodSubname;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes the {@code Scan} inner class of {@code <Record>MappedReader}. Typed
+ * {@code where<Field>...} filters test the raw record bytes and only records
+ * passing all of them are exposed. Filters follow the getter semantics, a
+ * missing or blank number compares as 0, a blank date or logical never matches.
+ */
+final class ScanGenerator {
+
+	private ScanGenerator() {
+	}
+
+	static void write(PrintWriter out, String codec, String readerClassName, Collection<Element> elements) {
+		out.println(" private interface Filter {");
+		out.println("  boolean test(byte[] raw);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** Starts a scan over the records that are not deleted. */");
+		out.println(" public Scan scan() {");
+		out.println("  return new Scan(false);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /** A scan that closes this reader when it is closed. */");
+		out.println(" Scan scan(boolean owner) {");
+		out.println("  return new Scan(owner);");
+		out.println(" }");
+		out.println();
+
+		out.println(" /**");
+		out.println("  * Filtered pass over the records, skipping deleted ones. Filters are tested on");
+		out.println("  * the raw record bytes, records passing all of them are exposed through the");
+		out.println("  * reader, positioned on the match. Predicates given to {@link #where} are tested");
+		out.println("  * on the positioned reader after all field filters passed, in the order given.");
+		out.println("  */");
+		out.println(" public final class Scan implements java.lang.Iterable<" + readerClassName + ">, java.io.Closeable {");
+		out.println("  private final boolean owner;");
+		out.println("  private Filter[] filters = new Filter[0];");
+		out.println("  private final java.util.List<java.util.function.Predicate<? super " + readerClassName
+				+ ">> predicates = new java.util.ArrayList<>();");
+		out.println();
+		out.println("  private Scan(boolean owner) {");
+		out.println("   this.owner = owner;");
+		out.println("  }");
+		out.println();
+		out.println("  private Scan add(Filter filter) {");
+		out.println("   filters = java.util.Arrays.copyOf(filters, filters.length + 1);");
+		out.println("   filters[filters.length - 1] = filter;");
+		out.println("   return this;");
+		out.println("  }");
+		out.println();
+		out.println("  /** Tested after all field filters, whatever the call order, on the positioned reader. */");
+		out.println("  public Scan where(java.util.function.Predicate<? super " + readerClassName + "> test) {");
+		out.println("   predicates.add(java.util.Objects.requireNonNull(test));");
+		out.println("   return this;");
+		out.println("  }");
+		out.println();
+
+		for (Element element : elements) {
+			writeFilters(out, codec, element);
+		}
+
+		out.println("  private boolean matches(Filter[] tests, java.util.List<java.util.function.Predicate<? super "
+				+ readerClassName + ">> checks) {");
+		out.println("   if (_record[0] == " + codec + ".DELETED) return false;");
+		out.println("   for (Filter test : tests) {");
+		out.println("    if (!test.test(_record)) return false;");
+		out.println("   }");
+		out.println("   for (java.util.function.Predicate<? super " + readerClassName + "> check : checks) {");
+		out.println("    if (!check.test(" + readerClassName + ".this)) return false;");
+		out.println("   }");
+		out.println("   return true;");
+		out.println("  }");
+		out.println();
+		out.println("  @Override");
+		out.println("  public java.util.Iterator<" + readerClassName + "> iterator() {");
+		out.println("   final Filter[] tests = filters;");
+		out.println("   final java.util.List<java.util.function.Predicate<? super " + readerClassName
+				+ ">> checks = java.util.List.copyOf(predicates);");
+		out.println("   return new java.util.Iterator<>() {");
+		out.println("    private int recno = 0;");
+		out.println("    private boolean ready;");
+		out.println();
+		out.println("    @Override");
+		out.println("    public boolean hasNext() {");
+		out.println("     if (ready) return true;");
+		out.println("     while (recno < _recordCount) {");
+		out.println("      seek(++recno);");
+		out.println("      if (matches(tests, checks)) {");
+		out.println("       ready = true;");
+		out.println("       return true;");
+		out.println("      }");
+		out.println("     }");
+		out.println("     return false;");
+		out.println("    }");
+		out.println();
+		out.println("    @Override");
+		out.println("    public " + readerClassName + " next() {");
+		out.println("     if (!hasNext()) throw new java.util.NoSuchElementException();");
+		out.println("     ready = false;");
+		out.println("     return " + readerClassName + ".this;");
+		out.println("    }");
+		out.println("   };");
+		out.println("  }");
+		out.println();
+		out.println("  public int count() {");
+		out.println("   int count = 0;");
+		out.println("   for (java.util.Iterator<" + readerClassName + "> it = iterator(); it.hasNext(); it.next()) {");
+		out.println("    count++;");
+		out.println("   }");
+		out.println("   return count;");
+		out.println("  }");
+		out.println();
+		out.println("  @Override");
+		out.println("  public void close() throws java.io.IOException {");
+		out.println("   if (owner) " + readerClassName + ".this.close();");
+		out.println("  }");
+		out.println(" }");
+		out.println();
+	}
+
+	private static void writeFilters(PrintWriter out, String codec, Element element) {
+		DBFField a = element.getAnnotation(DBFField.class);
+		FieldKind kind = FieldKind.of(element);
+		String fieldName = element.getSimpleName().toString();
+		String where = "  public Scan where" + methodSubname(fieldName);
+		String offset = "_" + fieldName + "_offset";
+		String bytes = "raw, " + offset + ", _" + fieldName + "_length";
+		switch (kind) {
+		case CHAR:
+			for (boolean prefix : new boolean[] { false, true }) {
+				out.println(where + (prefix ? "StartsWith" : "Equals") + "(String value) {");
+				out.println("   if (" + offset + " < 0) return add(raw -> value.isEmpty());");
+				out.println("   final byte[] expected = value.getBytes(_charset);");
+				out.println("   return add(raw -> " + codec + ".equalsString(" + bytes + ", " + a.ltrim() + ", "
+						+ a.rtrim() + ", expected, " + prefix + "));");
+				out.println("  }");
+				out.println();
+			}
+			break;
+		case INT:
+		case LONG:
+			String number = "(" + offset + " < 0 ? 0 : " + codec + "." + (kind == FieldKind.INT ? "parseInt" : "parseLong")
+					+ "(" + bytes + ", 0))";
+			writeComparisons(out, where, "long", number);
+			out.println(where + "Between(long min, long max) {");
+			out.println("   return add(raw -> { long value = " + number + "; return value >= min && value <= max; });");
+			out.println("  }");
+			out.println();
+			break;
+		case FLOAT:
+		case DECIMAL:
+			String decimal = "(" + offset + " < 0 ? java.lang.Double.NaN : " + codec + ".parseDouble(" + bytes
+					+ ", java.lang.Double.NaN))";
+			writeComparisons(out, where, "double", decimal);
+			break;
+		case DATE:
+			String day = "(" + offset + " < 0 ? " + codec + ".NO_DATE : " + codec + ".parseEpochDay(" + bytes + "))";
+			String[][] dateComparisons = { { "Equals", "==" }, { "Before", "<" }, { "After", ">" } };
+			for (String[] comparison : dateComparisons) {
+				out.println(where + comparison[0] + "(java.time.LocalDate value) {");
+				out.println("   final int epochDay = (int) value.toEpochDay();");
+				out.println("   return add(raw -> { int day = " + day + "; return day != " + codec
+						+ ".NO_DATE && day " + comparison[1] + " epochDay; });");
+				out.println("  }");
+				out.println();
+			}
+			out.println(where + "Between(java.time.LocalDate min, java.time.LocalDate max) {");
+			out.println("   final int first = (int) min.toEpochDay();");
+			out.println("   final int last = (int) max.toEpochDay();");
+			out.println("   return add(raw -> { int day = " + day + "; return day != " + codec
+					+ ".NO_DATE && day >= first && day <= last; });");
+			out.println("  }");
+			out.println();
+			break;
+		case LOGICAL:
+			out.println(where + "Is(boolean value) {");
+			out.println("   final int expected = value ? 1 : 0;");
+			out.println("   return add(raw -> " + offset + " >= 0 && " + codec + ".parseLogical(" + bytes
+					+ ") == expected);");
+			out.println("  }");
+			out.println();
+			break;
+		default:
+			break;
+		}
+	}
+
+	private static void writeComparisons(PrintWriter out, String where, String type, String value) {
+		String[][] comparisons = { { "Equals", "==" }, { "GreaterThan", ">" }, { "LessThan", "<" } };
+		for (String[] comparison : comparisons) {
+			out.println(where + comparison[0] + "(" + type + " value) {");
+			out.println("   return add(raw -> " + value + " " + comparison[1] + " value);");
+			out.println("  }");
+			out.println();
+		}
+	}
+}
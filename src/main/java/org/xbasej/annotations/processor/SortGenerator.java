@@ -0,0 +1,194 @@
+package org.xbasej.annotations.processor;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import javax.lang.model.element.Element;
+
+import org.xBaseJ.annotations.DBFField;
+
+/**
+ * Writes {@code <Record>SortKey} and the {@code sort} methods of the record
+ * class. Every key compares the raw field bytes with a comparator chosen at
+ * compile time from the field kind, the records are ordered by the external
+ * merge sort of {@link org.xbasej.annotations.runtime.RecordCodec.Rewrite}.
+ */
+final class SortGenerator {
+
+	static final long DEFAULT_SORT_MEMORY = 64L << 20;
+
+	private SortGenerator() {
+	}
+
+	static boolean sortable(Element element) {
+		FieldKind kind = FieldKind.of(element);
+		return !kind.isMemo() && kind != FieldKind.UNKNOWN;
+	}
+
+	/** The comparison of the field at aOff and bOff, the two records and len in scope. */
+	private static String comparison(String codec, FieldKind kind) {
+		switch (kind) {
+		case INT:
+		case LONG:
+		case BIG_INTEGER:
+		case DECIMAL:
+		case FLOAT:
+			return codec + ".compareNumber(a, aOff, len, b, bOff, len)";
+		case CURRENCY:
+			return "java.lang.Long.compare(" + codec + ".readLongLE(a, aOff), " + codec + ".readLongLE(b, bOff))";
+		case LOGICAL:
+			return codec + ".compareLogical(a, aOff, b, bOff, len)";
+		default:
+			return codec + ".compareBytes(a, aOff, b, bOff, len)";
+		}
+	}
+
+	static void write(PrintWriter out, String packageName, String dbfRecordSimpleClassName,
+			Collection<Element> elements) {
+		final String keyClassName = dbfRecordSimpleClassName + "SortKey";
+		final String codec = DBFFieldProcessor.CODEC;
+		final String layout = dbfRecordSimpleClassName + "Layout";
+
+		if (packageName != null) {
+			out.print("package ");
+			out.print(packageName);
+			out.println(";");
+			out.println();
+		}
+
+		out.println("/**");
+		out.println(" * Sort keys over the {@link " + dbfRecordSimpleClassName + "} fields for {@link " + dbfRecordSimpleClassName
+				+ "#sortTo}. Numbers are");
+		out.println(" * compared by value with blanks as 0, character and date fields in byte order with");
+		out.println(" * blanks first, logical fields blank, false, true. Memo and picture fields have no key.");
+		out.println(" */");
+		out.println("public final class " + keyClassName);
+		out.println(" {");
+		out.println();
+		int index = 0;
+		for (Element element : elements) {
+			if (sortable(element)) {
+				out.println(" public static final " + keyClassName + " " + element.getSimpleName().toString().toUpperCase()
+						+ " = new " + keyClassName + "(" + index + ", false);");
+			}
+			index++;
+		}
+		out.println();
+		out.println(" private final int _field;");
+		out.println(" private final boolean _descending;");
+		out.println();
+		out.println(" private " + keyClassName + "(int field, boolean descending) {");
+		out.println("  _field = field;");
+		out.println("  _descending = descending;");
+		out.println(" }");
+		out.println();
+		out.println(" /** The same field in descending order. */");
+		out.println(" public " + keyClassName + " descending() {");
+		out.println("  return new " + keyClassName + "(_field, true);");
+		out.println(" }");
+		out.println();
+		out.println(" /** The DBF field name. */");
+		out.println(" public java.lang.String getName() {");
+		out.println("  return " + layout + ".name(_field);");
+		out.println(" }");
+		out.println();
+		out.println(" public boolean isDescending() {");
+		out.println("  return _descending;");
+		out.println(" }");
+		out.println();
+		out.println(" @Override");
+		out.println(" public java.lang.String toString() {");
+		out.println("  return getName() + (_descending ? \" DESC\" : \"\");");
+		out.println(" }");
+		out.println();
+
+		out.println(" /**");
+		out.println("  * Orders the records of the rewritten file by keys, in turn. A key of a field the");
+		out.println("  * file does not have is an IOException, before anything is read or written.");
+		out.println("  */");
+		out.println(" static " + codec + ".RecordComparator comparator(" + codec + ".Rewrite rewrite, " + keyClassName
+				+ "... keys) throws java.io.IOException {");
+		out.println("  int n = 0;");
+		out.println("  final int[] fields = new int[keys.length];");
+		out.println("  final int[] offsets = new int[keys.length];");
+		out.println("  final int[] lengths = new int[keys.length];");
+		out.println("  final boolean[] descending = new boolean[keys.length];");
+		out.println("  for (" + keyClassName + " key : keys) {");
+		out.println("   int column = rewrite.column(key.getName());");
+		out.println("   if (column < 0) {");
+		out.println("    throw new java.io.IOException(key.getName() + \": no such field in the file\");");
+		out.println("   }");
+		out.println("   char type = rewrite.type(column);");
+		out.println("   char expected = " + layout + ".type(key._field);");
+		out.println("   if (type != expected && !(\"NF\".indexOf(type) >= 0 && \"NF\".indexOf(expected) >= 0)) {");
+		out.println("    throw new java.io.IOException(key.getName() + \": type \" + type + \", \" + expected + \" expected\");");
+		out.println("   }");
+		out.println("   fields[n] = key._field;");
+		out.println("   offsets[n] = rewrite.offset(column);");
+		out.println("   lengths[n] = rewrite.length(column);");
+		out.println("   descending[n++] = key._descending;");
+		out.println("  }");
+		out.println("  final int count = n;");
+		out.println("  return (a, aOff, b, bOff) -> {");
+		out.println("   for (int i = 0; i < count; i++) {");
+		out.println("    int c = compare(fields[i], a, aOff + offsets[i], b, bOff + offsets[i], lengths[i]);");
+		out.println("    if (c != 0) return descending[i] ? -c : c;");
+		out.println("   }");
+		out.println("   return 0;");
+		out.println("  };");
+		out.println(" }");
+		out.println();
+		out.println(" private static int compare(int field, byte[] a, int aOff, byte[] b, int bOff, int len) {");
+		out.println("  switch (field) {");
+		index = 0;
+		for (Element element : elements) {
+			if (sortable(element)) {
+				out.println("  case " + index + ": // " + element.getAnnotation(DBFField.class).name().toUpperCase());
+				out.println("   return " + comparison(codec, FieldKind.of(element)) + ";");
+			}
+			index++;
+		}
+		out.println("  default:");
+		out.println("   return 0;");
+		out.println("  }");
+		out.println(" }");
+		out.println("}");
+		out.println();
+	}
+
+	/** Members of the record class, expecting the {@code rewriteTo} of {@link MigrationGenerator}. */
+	static void writeRecordMembers(PrintWriter out, String dbfRecordSimpleClassName) {
+		final String keyClassName = dbfRecordSimpleClassName + "SortKey";
+		final String codec = DBFFieldProcessor.CODEC;
+
+		out.println(" /**");
+		out.println("  * Writes the records of source that are not deleted to target ordered by keys, ties");
+		out.println("  * in record order. Runs of about memory bytes are sorted and spilled to temp files");
+		out.println("  * next to target, then merged. Target is replaced like by {@link #compact}. Fails");
+		out.println("  * with an IOException if source lacks the field of a key.");
+		out.println("  */");
+		out.println(" public static int sort(java.nio.file.Path source, java.nio.file.Path target, long memory,");
+		out.println("   " + keyClassName + "... keys) throws java.io.IOException {");
+		out.println("  " + codec + ".Rewrite rewrite = " + codec + ".Rewrite.compact(source);");
+		out.println("  return rewrite.sorted(" + keyClassName + ".comparator(rewrite, keys), memory).writeTo(target, "
+				+ MigrationGenerator.DEFAULT_BUFFER_SIZE + ", null);");
+		out.println(" }");
+		out.println();
+		out.println(" /**");
+		out.println("  * {@link #sort} of the attached DBF file using " + (DEFAULT_SORT_MEMORY >> 20)
+				+ " MiB, target may be the attached file, see");
+		out.println("  * {@link #compactTo}.");
+		out.println("  */");
+		out.println(" public int sortTo(java.nio.file.Path target, " + keyClassName
+				+ "... keys) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  return sortTo(target, " + DEFAULT_SORT_MEMORY + "L, keys);");
+		out.println(" }");
+		out.println();
+		out.println(" public int sortTo(java.nio.file.Path target, long memory, " + keyClassName
+				+ "... keys) throws org.xBaseJ.xBaseJException, java.io.IOException {");
+		out.println("  " + codec + ".Rewrite rewrite = " + codec + ".Rewrite.compact(java.nio.file.Paths.get(_dbf.getName()));");
+		out.println("  return rewriteTo(rewrite.sorted(" + keyClassName + ".comparator(rewrite, keys), memory), target);");
+		out.println(" }");
+		out.println();
+	}
+}
@@ -0,0 +1,2188 @@
+package org.xbasej.annotations.runtime;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.xBaseJ.cp.CharsetMapper;
+
+/**
+ * Raw DBF header and field codecs shared by the classes generated for DBF
+ * structs, which keep only the field layout of their struct.
+ * <p>
+ * Decoders work on the fixed width field bytes of a record and follow the
+ * parsing rules of the xBaseJ based getters, without creating intermediate
+ * Strings or relying on exceptions.
+ */
+public final class RecordCodec {
+
+	/** Returned by {@link #parseEpochDay} for blank or invalid dates. */
+	public static final int NO_DATE = Integer.MIN_VALUE;
+
+	/** Returned by {@link #parseLogical} for blank values. */
+	public static final int LOGICAL_BLANK = -1;
+
+	public static final byte DELETED = '*';
+
+	public static final byte NOT_DELETED = ' ';
+
+	static final byte HEADER_END = 0x0d;
+
+	public static final byte FILE_END = 0x1a;
+
+	private static final int DAYS_0000_TO_1970 = 719528;
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private RecordCodec() {
+	}
+
+	/** Whitespace as removed by {@link String#trim()}. */
+	public static int trimStart(byte[] b, int from, int to) {
+		while (from < to && (b[from] & 0xff) <= ' ') {
+			from++;
+		}
+		return from;
+	}
+
+	/** Whitespace as removed by {@link String#trim()}. */
+	public static int trimEnd(byte[] b, int from, int to) {
+		while (to > from && (b[to - 1] & 0xff) <= ' ') {
+			to--;
+		}
+		return to;
+	}
+
+	/** Whitespace as removed by {@link String#strip()} for single byte charsets. */
+	static boolean isWhitespace(byte b) {
+		int c = b & 0xff;
+		return c == ' ' || (c >= 0x09 && c <= 0x0d) || (c >= 0x1c && c <= 0x1f);
+	}
+
+	public static boolean isBlank(byte[] b, int off, int len) {
+		return trimStart(b, off, off + len) == off + len;
+	}
+
+	/** Same result as {@code Long.parseLong(value.trim())}, or {@code dflt} where that would throw. */
+	public static long parseLong(byte[] b, int off, int len, long dflt) {
+		int i = trimStart(b, off, off + len);
+		int end = trimEnd(b, i, off + len);
+		if (i == end) {
+			return dflt;
+		}
+		boolean negative = false;
+		byte first = b[i];
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++i == end) {
+				return dflt;
+			}
+		}
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multmin = limit / 10;
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = b[i] - '0';
+			if (digit < 0 || digit > 9 || result < multmin) {
+				return dflt;
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return dflt;
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/** Same result as {@code Integer.parseInt(value.trim())}, or {@code dflt} where that would throw. */
+	public static int parseInt(byte[] b, int off, int len, int dflt) {
+		long value = parseLong(b, off, len, Long.MIN_VALUE);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			return dflt;
+		}
+		return (int) value;
+	}
+
+	/** Same result as {@code new BigInteger(value.trim())}, or zero where that would throw. */
+	public static BigInteger parseBigInteger(byte[] b, int off, int len) {
+		return parseBigInteger(b, off, len, BigInteger.ZERO);
+	}
+
+	/** Same result as {@code new BigInteger(value.trim())}, or {@code dflt} where that would throw. */
+	public static BigInteger parseBigInteger(byte[] b, int off, int len, BigInteger dflt) {
+		int from = trimStart(b, off, off + len);
+		int to = trimEnd(b, from, off + len);
+		if (to - from <= 18) {
+			long value = parseLong(b, from, to - from, Long.MIN_VALUE);
+			return value == Long.MIN_VALUE ? dflt : BigInteger.valueOf(value);
+		}
+		try {
+			return new BigInteger(new String(b, from, to - from, StandardCharsets.ISO_8859_1));
+		} catch (NumberFormatException e) {
+			return dflt;
+		}
+	}
+
+	/**
+	 * Plain decimals with up to 15 significant digits are converted exactly with a
+	 * single division, everything else goes through {@link Double#parseDouble}.
+	 */
+	public static double parseDouble(byte[] b, int off, int len, double dflt) {
+		int from = trimStart(b, off, off + len);
+		int to = trimEnd(b, from, off + len);
+		if (from == to) {
+			return dflt;
+		}
+		int i = from;
+		boolean negative = false;
+		if (b[i] == '-' || b[i] == '+') {
+			negative = b[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int significant = 0;
+		int scale = -1;
+		boolean digits = false;
+		for (; i < to; i++) {
+			byte c = b[i];
+			if (c == '.' && scale < 0) {
+				scale = 0;
+				continue;
+			}
+			int digit = c - '0';
+			if (digit < 0 || digit > 9) {
+				return slowParseDouble(b, from, to, dflt);
+			}
+			digits = true;
+			if (mantissa != 0 || digit != 0) {
+				significant++;
+			}
+			if (significant > 15) {
+				return slowParseDouble(b, from, to, dflt);
+			}
+			mantissa = mantissa * 10 + digit;
+			if (scale >= 0) {
+				scale++;
+			}
+		}
+		if (!digits) {
+			return dflt;
+		}
+		if (scale > 22) {
+			return slowParseDouble(b, from, to, dflt);
+		}
+		double value = scale <= 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	private static double slowParseDouble(byte[] b, int from, int to, double dflt) {
+		try {
+			return Double.parseDouble(new String(b, from, to - from, StandardCharsets.ISO_8859_1));
+		} catch (NumberFormatException e) {
+			return dflt;
+		}
+	}
+
+	/** Strict {@code yyyyMMdd} as accepted by {@code BASIC_ISO_DATE}, or {@link #NO_DATE}. */
+	public static int parseEpochDay(byte[] b, int off, int len) {
+		if (len != 8) {
+			return NO_DATE;
+		}
+		int value = 0;
+		for (int i = off; i < off + 8; i++) {
+			int digit = b[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return NO_DATE;
+			}
+			value = value * 10 + digit;
+		}
+		int year = value / 10000;
+		int month = value / 100 % 100;
+		int day = value % 100;
+		if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+			return NO_DATE;
+		}
+		return epochDay(year, month, day);
+	}
+
+	/** {@code yyyyMMdd} or {@code yyyy-MM-dd}, or {@link #NO_DATE}. */
+	public static int parseDate(byte[] b, int from, int to) {
+		if (to - from == 8) {
+			return parseEpochDay(b, from, 8);
+		}
+		if (to - from != 10 || b[from + 4] != '-' || b[from + 7] != '-') {
+			return NO_DATE;
+		}
+		int year = parseDigits(b, from, 4);
+		int month = parseDigits(b, from + 5, 2);
+		int day = parseDigits(b, from + 8, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+			return NO_DATE;
+		}
+		return epochDay(year, month, day);
+	}
+
+	private static int parseDigits(byte[] b, int off, int len) {
+		int value = 0;
+		for (int i = off; i < off + len; i++) {
+			int digit = b[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	static int lengthOfMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return isLeapYear(year) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/** Same algorithm as {@link LocalDate#toEpochDay()} for years 0 to 9999. */
+	static int epochDay(int year, int month, int day) {
+		int total = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+		total += (367 * month - 362) / 12;
+		total += day - 1;
+		if (month > 2) {
+			total--;
+			if (!isLeapYear(year)) {
+				total--;
+			}
+		}
+		return total - DAYS_0000_TO_1970;
+	}
+
+	/** One of {@link #LOGICAL_BLANK}, 0 for false or 1 for true. */
+	public static int parseLogical(byte[] b, int off, int len) {
+		int i = trimStart(b, off, off + len);
+		if (i == off + len) {
+			return LOGICAL_BLANK;
+		}
+		byte c = b[i];
+		return c == 'T' || c == 't' || c == 'Y' || c == 'y' ? 1 : 0;
+	}
+
+	/** Binary currency value, a little endian long scaled by 10<sup>4</sup>. */
+	public static long readLongLE(byte[] b, int off) {
+		long value = 0;
+		for (int i = 7; i >= 0; i--) {
+			value = (value << 8) | (b[off + i] & 0xff);
+		}
+		return value;
+	}
+
+	public static String decodeString(byte[] b, int off, int len, boolean ltrim, boolean rtrim,
+			Charset charset) {
+		int from = off;
+		int to = off + len;
+		if (ltrim) {
+			while (from < to && isWhitespace(b[from])) {
+				from++;
+			}
+		}
+		if (rtrim) {
+			while (to > from && isWhitespace(b[to - 1])) {
+				to--;
+			}
+		}
+		return from == to ? "" : new String(b, from, to - from, charset);
+	}
+
+	public static void fill(byte[] b, int off, int len) {
+		Arrays.fill(b, off, off + len, (byte) ' ');
+	}
+
+	/** Right aligned decimal digits, false if the value does not fit. */
+	public static boolean encodeLong(long value, byte[] b, int off, int len) {
+		boolean negative = value < 0;
+		long rest = negative ? value : -value;
+		int i = off + len;
+		do {
+			if (i == off) {
+				return false;
+			}
+			b[--i] = (byte) ('0' - rest % 10);
+			rest /= 10;
+		} while (rest != 0);
+		if (negative) {
+			if (i == off) {
+				return false;
+			}
+			b[--i] = '-';
+		}
+		fill(b, off, i - off);
+		return true;
+	}
+
+	/** Right aligned ASCII text such as a formatted number, false if it does not fit. */
+	static boolean encodeRight(String value, byte[] b, int off, int len) {
+		int n = value.length();
+		if (n > len) {
+			return false;
+		}
+		int start = off + len - n;
+		fill(b, off, len - n);
+		for (int i = 0; i < n; i++) {
+			b[start + i] = (byte) value.charAt(i);
+		}
+		return true;
+	}
+
+	/** Returned by {@link #encodePlainDecimal} for text that needs rounding or is not a plain decimal. */
+	public static final int NOT_PLAIN = -1;
+
+	/**
+	 * Right aligns plain decimal text with exactly {@code dec} decimals without
+	 * creating a BigDecimal. Returns 1 if written, 0 if it does not fit, or
+	 * {@link #NOT_PLAIN} if it has more than {@code dec} decimals or is no plain decimal.
+	 */
+	public static int encodePlainDecimal(byte[] src, int from, int to, int dec, byte[] b, int off, int len) {
+		int i = from;
+		boolean negative = i < to && src[i] == '-';
+		if (negative || (i < to && src[i] == '+')) {
+			i++;
+		}
+		while (i < to - 1 && src[i] == '0' && src[i + 1] >= '0' && src[i + 1] <= '9') {
+			i++;
+		}
+		int integer = i;
+		boolean zero = true;
+		while (i < to && src[i] >= '0' && src[i] <= '9') {
+			zero &= src[i++] == '0';
+		}
+		int integerEnd = i;
+		int fraction = i;
+		if (i < to && src[i] == '.') {
+			fraction = ++i;
+			while (i < to && src[i] >= '0' && src[i] <= '9') {
+				zero &= src[i++] == '0';
+			}
+		}
+		int fractionEnd = i;
+		if (i != to || (integerEnd == integer && fractionEnd == fraction) || fractionEnd - fraction > dec) {
+			return NOT_PLAIN;
+		}
+		negative &= !zero;
+		int integerDigits = Math.max(1, integerEnd - integer);
+		int n = (negative ? 1 : 0) + integerDigits + (dec > 0 ? 1 + dec : 0);
+		if (n > len) {
+			return 0;
+		}
+		fill(b, off, len - n);
+		int p = off + len - n;
+		if (negative) {
+			b[p++] = '-';
+		}
+		if (integerEnd == integer) {
+			b[p++] = '0';
+		} else {
+			System.arraycopy(src, integer, b, p, integerEnd - integer);
+			p += integerEnd - integer;
+		}
+		if (dec > 0) {
+			b[p++] = '.';
+			System.arraycopy(src, fraction, b, p, fractionEnd - fraction);
+			p += fractionEnd - fraction;
+			Arrays.fill(b, p, off + len, (byte) '0');
+		}
+		return 1;
+	}
+
+	/** Right aligned with exactly {@code dec} decimals, false if it does not fit. */
+	public static boolean encodeDecimal(BigDecimal value, int dec, byte[] b, int off, int len) {
+		return encodeRight(value.setScale(dec, RoundingMode.HALF_UP).toPlainString(), b, off, len);
+	}
+
+	/**
+	 * Left aligned text padded with blanks. Longer values are cut to the field
+	 * length when {@code truncate} is set, otherwise false is returned.
+	 */
+	public static boolean encodeString(String value, byte[] b, int off, int len, boolean truncate,
+			Charset charset) {
+		if (value == null) {
+			fill(b, off, len);
+			return true;
+		}
+		int n;
+		if (charset == StandardCharsets.ISO_8859_1) {
+			n = value.length();
+			if (n > len && !truncate) {
+				return false;
+			}
+			n = Math.min(n, len);
+			for (int i = 0; i < n; i++) {
+				char c = value.charAt(i);
+				b[off + i] = c < 256 ? (byte) c : (byte) '?';
+			}
+		} else {
+			byte[] bytes = value.getBytes(charset);
+			if (bytes.length > len && !truncate) {
+				return false;
+			}
+			n = Math.min(bytes.length, len);
+			System.arraycopy(bytes, 0, b, off, n);
+		}
+		fill(b, off + n, len - n);
+		return true;
+	}
+
+	/** {@code yyyyMMdd}, false for dates outside of the years 0 to 9999. */
+	public static boolean encodeEpochDay(int epochDay, byte[] b, int off) {
+		long z = epochDay + 719468L;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+		if (year < 0 || year > 9999) {
+			return false;
+		}
+		int value = (int) year * 10000 + month * 100 + day;
+		for (int i = off + 7; i >= off; i--) {
+			b[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return true;
+	}
+
+	static void writeLongLE(long value, byte[] b, int off) {
+		for (int i = 0; i < 8; i++) {
+			b[off + i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+
+	/** Record count and last update date of the header, the commit point of appends. */
+	public static void writeRecordCount(FileChannel channel, int recordCount) throws IOException {
+		LocalDate today = LocalDate.now();
+		ByteBuffer buffer = ByteBuffer.allocate(7).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put((byte) (today.getYear() - 1900)).put((byte) today.getMonthValue()).put((byte) today.getDayOfMonth());
+		buffer.putInt(recordCount).flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, 1 + buffer.position());
+		}
+	}
+
+	public static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+			throws IOException {
+		long start = position - buffer.position();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, start + buffer.position());
+		}
+	}
+
+	/** Compares the field, trimmed like {@link #decodeString}, with already encoded bytes. */
+	public static boolean equalsString(byte[] b, int off, int len, boolean ltrim, boolean rtrim, byte[] expected,
+			boolean prefix) {
+		int from = off;
+		int to = off + len;
+		if (ltrim) {
+			while (from < to && isWhitespace(b[from])) {
+				from++;
+			}
+		}
+		if (rtrim) {
+			while (to > from && isWhitespace(b[to - 1])) {
+				to--;
+			}
+		}
+		if (prefix ? to - from < expected.length : to - from != expected.length) {
+			return false;
+		}
+		for (int i = 0; i < expected.length; i++) {
+			if (b[from + i] != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * True if the field holds the ASCII value left aligned and padded with blanks,
+	 * as a CharField stores it. Values with other characters never match.
+	 */
+	public static boolean equalsPadded(byte[] b, int off, int len, String value) {
+		int n = value.length();
+		if (n > len) {
+			return false;
+		}
+		for (int i = 0; i < n; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80 || b[off + i] != c) {
+				return false;
+			}
+		}
+		for (int i = off + n; i < off + len; i++) {
+			if (b[i] != ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** True if the trimmed field equals the trimmed ASCII value. */
+	public static boolean equalsTrimmed(byte[] b, int off, int len, String value) {
+		int from = trimStart(b, off, off + len);
+		int to = trimEnd(b, from, off + len);
+		int start = 0;
+		int end = value.length();
+		while (start < end && value.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && value.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (end - start != to - from) {
+			return false;
+		}
+		for (int i = 0; i < end - start; i++) {
+			char c = value.charAt(start + i);
+			if (c >= 0x80 || b[from + i] != c) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of DBF file");
+			}
+		}
+	}
+
+	/** Orders raw records, given as an array and the offset of their delete flag. */
+	public interface RecordComparator {
+		int compare(byte[] a, int aOff, byte[] b, int bOff);
+	}
+
+	/** Unsigned byte order, right for left aligned text and {@code yyyyMMdd} dates. */
+	public static int compareBytes(byte[] a, int aOff, byte[] b, int bOff, int len) {
+		return Arrays.compareUnsigned(a, aOff, aOff + len, b, bOff, bOff + len);
+	}
+
+	/** Blank before false before true. */
+	public static int compareLogical(byte[] a, int aOff, byte[] b, int bOff, int len) {
+		return Integer.compare(parseLogical(a, aOff, len), parseLogical(b, bOff, len));
+	}
+
+	/**
+	 * Numeric order of decimal text of any length, without parsing it into a
+	 * number. Blank text and text that is no plain decimal compare as 0.
+	 */
+	public static int compareNumber(byte[] a, int aOff, int aLen, byte[] b, int bOff, int bLen) {
+		int aFrom = trimStart(a, aOff, aOff + aLen);
+		int aTo = trimEnd(a, aFrom, aOff + aLen);
+		int bFrom = trimStart(b, bOff, bOff + bLen);
+		int bTo = trimEnd(b, bFrom, bOff + bLen);
+		int aSign = numberSign(a, aFrom, aTo);
+		int bSign = numberSign(b, bFrom, bTo);
+		if (aSign != bSign || aSign == 0) {
+			return Integer.compare(aSign, bSign);
+		}
+		int c = compareMagnitude(a, aFrom, aTo, b, bFrom, bTo);
+		return aSign < 0 ? -c : c;
+	}
+
+	/** -1, 0 or 1, 0 also for text that is no plain decimal. */
+	private static int numberSign(byte[] b, int from, int to) {
+		int i = from;
+		int sign = 1;
+		if (i < to && (b[i] == '-' || b[i] == '+')) {
+			sign = b[i++] == '-' ? -1 : 1;
+		}
+		boolean point = false;
+		boolean nonZero = false;
+		for (; i < to; i++) {
+			byte c = b[i];
+			if (c >= '0' && c <= '9') {
+				nonZero |= c != '0';
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				return 0;
+			}
+		}
+		return nonZero ? sign : 0;
+	}
+
+	private static int compareMagnitude(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+		aFrom = skipSignAndZeros(a, aFrom, aTo);
+		bFrom = skipSignAndZeros(b, bFrom, bTo);
+		int aPoint = aFrom;
+		while (aPoint < aTo && a[aPoint] != '.') {
+			aPoint++;
+		}
+		int bPoint = bFrom;
+		while (bPoint < bTo && b[bPoint] != '.') {
+			bPoint++;
+		}
+		int c = Integer.compare(aPoint - aFrom, bPoint - bFrom);
+		if (c != 0) {
+			return c;
+		}
+		c = Arrays.compare(a, aFrom, aPoint, b, bFrom, bPoint);
+		if (c != 0) {
+			return c;
+		}
+		for (int i = aPoint + 1, j = bPoint + 1; i < aTo || j < bTo;) {
+			byte x = i < aTo ? a[i++] : (byte) '0';
+			byte y = j < bTo ? b[j++] : (byte) '0';
+			if (x != y) {
+				return x < y ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	private static int skipSignAndZeros(byte[] b, int from, int to) {
+		if (from < to && (b[from] == '-' || b[from] == '+')) {
+			from++;
+		}
+		while (from < to && b[from] == '0') {
+			from++;
+		}
+		return from;
+	}
+
+	/** Spreads the bits of a key over the low bits used to pick a slot. */
+	static int mix(long key) {
+		key *= 0x9e3779b97f4a7c15L;
+		return (int) (key ^ (key >>> 32));
+	}
+
+	/**
+	 * Record numbers of an index chained per key in the order added. The arrays grow
+	 * with the number of entries, not the record numbers. Heads and tails of the keys
+	 * are entry numbers starting at 1, 0 ends a chain.
+	 */
+	static final class Chains {
+		private int[] recnos = new int[16];
+		private int[] links = new int[16];
+		private int size;
+
+		/** Adds recno after the tail entry of its key, 0 for a new key, and returns its entry. */
+		int append(int tail, int recno) {
+			if (++size == recnos.length) {
+				recnos = Arrays.copyOf(recnos, size * 2);
+				links = Arrays.copyOf(links, size * 2);
+			}
+			recnos[size] = recno;
+			if (tail != 0) {
+				links[tail] = size;
+			}
+			return size;
+		}
+
+		/** The record number of an entry, 0 for no entry. */
+		int recno(int entry) {
+			return entry == 0 ? 0 : recnos[entry];
+		}
+
+		int[] all(int head) {
+			int count = 0;
+			for (int entry = head; entry != 0; entry = links[entry]) {
+				count++;
+			}
+			int[] result = new int[count];
+			int i = 0;
+			for (int entry = head; entry != 0; entry = links[entry]) {
+				result[i++] = recnos[entry];
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Open addressing map from long keys to the record numbers holding them. Record
+	 * numbers of one key are chained in ascending order, 0 marks an empty slot.
+	 */
+	public static final class LongIndex {
+		private final boolean unique;
+		private final Chains chains = new Chains();
+		private long[] keys = new long[16];
+		private int[] heads = new int[16];
+		private int[] tails = new int[16];
+		private int size;
+
+		public LongIndex(boolean unique) {
+			this.unique = unique;
+		}
+
+		private int slot(long key) {
+			int mask = keys.length - 1;
+			int slot = mix(key) & mask;
+			while (heads[slot] != 0 && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		public void add(long key, int recno) {
+			int slot = slot(key);
+			if (heads[slot] != 0) {
+				if (unique) {
+					throw new IllegalStateException("Duplicate unique key " + key + " in records "
+							+ chains.recno(heads[slot]) + " and " + recno);
+				}
+				tails[slot] = chains.append(tails[slot], recno);
+				return;
+			}
+			keys[slot] = key;
+			heads[slot] = chains.append(0, recno);
+			tails[slot] = heads[slot];
+			if (++size * 2 > keys.length) {
+				rehash();
+			}
+		}
+
+		private void rehash() {
+			long[] oldKeys = keys;
+			int[] oldHeads = heads;
+			int[] oldTails = tails;
+			keys = new long[oldKeys.length * 2];
+			heads = new int[oldKeys.length * 2];
+			tails = new int[oldKeys.length * 2];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldHeads[i] != 0) {
+					int slot = slot(oldKeys[i]);
+					keys[slot] = oldKeys[i];
+					heads[slot] = oldHeads[i];
+					tails[slot] = oldTails[i];
+				}
+			}
+		}
+
+		/** The first record number holding the key, or 0. */
+		public int first(long key) {
+			return chains.recno(heads[slot(key)]);
+		}
+
+		public int[] all(long key) {
+			return chains.all(heads[slot(key)]);
+		}
+	}
+
+	/**
+	 * Open addressing map from byte string keys, hashed from the raw field bytes, to
+	 * the record numbers holding them. Distinct keys are copied into one byte pool.
+	 */
+	public static final class BytesIndex {
+		private final boolean unique;
+		private final Chains chains = new Chains();
+		private byte[] pool = new byte[256];
+		private int poolSize;
+		private int[] hashes = new int[16];
+		private int[] keyOffsets = new int[16];
+		private int[] keyLengths = new int[16];
+		private int[] heads = new int[16];
+		private int[] tails = new int[16];
+		private int size;
+
+		public BytesIndex(boolean unique) {
+			this.unique = unique;
+		}
+
+		static int hash(byte[] b, int from, int to) {
+			int hash = 0x811c9dc5;
+			for (int i = from; i < to; i++) {
+				hash = (hash ^ (b[i] & 0xff)) * 0x01000193;
+			}
+			return hash;
+		}
+
+		private int slot(int hash, byte[] b, int from, int to) {
+			int mask = heads.length - 1;
+			int slot = mix(hash) & mask;
+			while (heads[slot] != 0 && !(hashes[slot] == hash && Arrays.equals(pool, keyOffsets[slot],
+					keyOffsets[slot] + keyLengths[slot], b, from, to))) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		public void add(byte[] b, int from, int to, int recno) {
+			int hash = hash(b, from, to);
+			int slot = slot(hash, b, from, to);
+			if (heads[slot] != 0) {
+				if (unique) {
+					throw new IllegalStateException("Duplicate unique key '"
+							+ new String(b, from, to - from, StandardCharsets.ISO_8859_1) + "' in records "
+							+ chains.recno(heads[slot]) + " and " + recno);
+				}
+				tails[slot] = chains.append(tails[slot], recno);
+				return;
+			}
+			if (poolSize + to - from > pool.length) {
+				pool = Arrays.copyOf(pool, Math.max(poolSize + to - from, pool.length * 2));
+			}
+			System.arraycopy(b, from, pool, poolSize, to - from);
+			hashes[slot] = hash;
+			keyOffsets[slot] = poolSize;
+			keyLengths[slot] = to - from;
+			heads[slot] = chains.append(0, recno);
+			tails[slot] = heads[slot];
+			poolSize += to - from;
+			if (++size * 2 > heads.length) {
+				rehash();
+			}
+		}
+
+		private void rehash() {
+			int[] oldHashes = hashes;
+			int[] oldOffsets = keyOffsets;
+			int[] oldLengths = keyLengths;
+			int[] oldHeads = heads;
+			int[] oldTails = tails;
+			int capacity = oldHeads.length * 2;
+			hashes = new int[capacity];
+			keyOffsets = new int[capacity];
+			keyLengths = new int[capacity];
+			heads = new int[capacity];
+			tails = new int[capacity];
+			int mask = capacity - 1;
+			for (int i = 0; i < oldHeads.length; i++) {
+				if (oldHeads[i] != 0) {
+					int slot = mix(oldHashes[i]) & mask;
+					while (heads[slot] != 0) {
+						slot = (slot + 1) & mask;
+					}
+					hashes[slot] = oldHashes[i];
+					keyOffsets[slot] = oldOffsets[i];
+					keyLengths[slot] = oldLengths[i];
+					heads[slot] = oldHeads[i];
+					tails[slot] = oldTails[i];
+				}
+			}
+		}
+
+		/** The first record number holding the key, or 0. */
+		public int first(byte[] key) {
+			return first(key, 0, key.length);
+		}
+
+		public int first(byte[] b, int from, int to) {
+			return chains.recno(heads[slot(hash(b, from, to), b, from, to)]);
+		}
+
+		public int[] all(byte[] key) {
+			return chains.all(heads[slot(hash(key, 0, key.length), key, 0, key.length)]);
+		}
+	}
+
+	/** The field range left after trimming like {@link #decodeString}, packed as from &lt;&lt; 32 | to. */
+	public static long trimmedRange(byte[] b, int off, int len, boolean ltrim, boolean rtrim) {
+		int from = off;
+		int to = off + len;
+		if (ltrim) {
+			while (from < to && isWhitespace(b[from])) {
+				from++;
+			}
+		}
+		if (rtrim) {
+			while (to > from && isWhitespace(b[to - 1])) {
+				to--;
+			}
+		}
+		return (long) from << 32 | to;
+	}
+
+	public static boolean isAscii(byte[] b, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (b[i] < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a CSV cell, quoted if it holds the delimiter, the quote or a line break.
+	 * ASCII cells are copied as they are, others are decoded, passed through the
+	 * mapper if there is one and encoded to the target charset.
+	 */
+	public static void writeCsv(Output out, byte[] b, int from, int to, byte delimiter, byte quote,
+			Charset source, Charset target, CharsetMapper mapper)
+			throws IOException {
+		if (!isAscii(b, from, to)) {
+			String value = new String(b, from, to - from, source);
+			b = (mapper == null ? value : mapper.map(value)).getBytes(target);
+			from = 0;
+			to = b.length;
+		}
+		boolean quoted = false;
+		for (int i = from; i < to && !quoted; i++) {
+			quoted = b[i] == delimiter || b[i] == quote || b[i] == '\r' || b[i] == '\n';
+		}
+		if (!quoted) {
+			out.write(b, from, to);
+			return;
+		}
+		out.write(quote);
+		int start = from;
+		for (int i = from; i < to; i++) {
+			if (b[i] == quote) {
+				out.write(b, start, i + 1);
+				start = i;
+			}
+		}
+		out.write(b, start, to);
+		out.write(quote);
+	}
+
+	/** Writes a quoted, escaped JSON string, non ASCII cells are mapped and encoded as UTF-8. */
+	public static void writeJsonString(Output out, byte[] b, int from, int to, Charset source,
+			CharsetMapper mapper) throws IOException {
+		if (!isAscii(b, from, to)) {
+			String value = new String(b, from, to - from, source);
+			b = (mapper == null ? value : mapper.map(value)).getBytes(StandardCharsets.UTF_8);
+			from = 0;
+			to = b.length;
+		}
+		out.write('"');
+		int start = from;
+		for (int i = from; i < to; i++) {
+			int c = b[i] & 0xff;
+			if (c != '"' && c != '\\' && c >= 0x20) {
+				continue;
+			}
+			out.write(b, start, i);
+			start = i + 1;
+			out.write('\\');
+			switch (c) {
+			case '"':
+			case '\\':
+				out.write(c);
+				break;
+			case '\n':
+				out.write('n');
+				break;
+			case '\r':
+				out.write('r');
+				break;
+			case '\t':
+				out.write('t');
+				break;
+			default:
+				out.writeAscii(c < 0x10 ? "u000" : "u00");
+				out.writeAscii(Integer.toHexString(c));
+				break;
+			}
+		}
+		out.write(b, start, to);
+		out.write('"');
+	}
+
+	/**
+	 * Writes a numeric field as a JSON number, copying the digits when they already
+	 * form one, null if the field is blank or not a number.
+	 */
+	public static void writeJsonNumber(Output out, byte[] b, int off, int len) throws IOException {
+		int from = trimStart(b, off, off + len);
+		int to = trimEnd(b, from, off + len);
+		int i = from;
+		boolean negative = i < to && b[i] == '-';
+		if (negative) {
+			i++;
+		}
+		while (i < to - 1 && b[i] == '0' && b[i + 1] >= '0' && b[i + 1] <= '9') {
+			i++;
+		}
+		int integer = i;
+		while (i < to && b[i] >= '0' && b[i] <= '9') {
+			i++;
+		}
+		int integerEnd = i;
+		int fraction = i < to && b[i] == '.' ? ++i : -1;
+		while (i < to && b[i] >= '0' && b[i] <= '9') {
+			i++;
+		}
+		boolean digits = integerEnd > integer || (fraction >= 0 && i > fraction);
+		if (i != to || !digits) {
+			double value = parseDouble(b, off, len, Double.NaN);
+			out.writeAscii(Double.isNaN(value) || Double.isInfinite(value) ? "null"
+					: Double.toString(value));
+			return;
+		}
+		if (negative) {
+			out.write('-');
+		}
+		if (integerEnd == integer) {
+			out.write('0');
+		} else {
+			out.write(b, integer, integerEnd);
+		}
+		if (fraction >= 0 && to > fraction) {
+			out.write(b, fraction - 1, to);
+		}
+	}
+
+	/** Writes a valid yyyyMMdd date field as yyyy-MM-dd. */
+	public static void writeIsoDate(Output out, byte[] b, int off) throws IOException {
+		out.write(b, off, off + 4);
+		out.write('-');
+		out.write(b, off + 4, off + 6);
+		out.write('-');
+		out.write(b, off + 6, off + 8);
+	}
+
+	/**
+	 * Splits CSV input into cells, unquoting them into one reusable buffer. Lines end
+	 * with LF, CRLF or CR, quoted cells may span lines.
+	 */
+	public static final class CsvInput {
+		private final InputStream stream;
+		private final byte delimiter;
+		private final byte quote;
+		private final byte[] buffer = new byte[1 << 16];
+		private int position;
+		private int limit;
+		public byte[] cell = new byte[64];
+		public int length;
+		public boolean quoted;
+
+		public CsvInput(InputStream stream, byte delimiter, byte quote) {
+			this.stream = stream;
+			this.delimiter = delimiter;
+			this.quote = quote;
+		}
+
+		private int read() throws IOException {
+			if (position == limit) {
+				int n = stream.read(buffer);
+				if (n <= 0) {
+					return -1;
+				}
+				position = 0;
+				limit = n;
+			}
+			return buffer[position++] & 0xff;
+		}
+
+		private void add(int c) {
+			if (length == cell.length) {
+				cell = Arrays.copyOf(cell, length * 2);
+			}
+			cell[length++] = (byte) c;
+		}
+
+		/** Reads the next cell, returns -1 at the end of the input, 1 if the cell ends its line, else 0. */
+		public int next() throws IOException {
+			length = 0;
+			quoted = false;
+			int c = read();
+			if (c == -1) {
+				return -1;
+			}
+			if (c == (quote & 0xff)) {
+				quoted = true;
+				while (true) {
+					c = read();
+					if (c == -1) {
+						throw new EOFException("Unterminated quoted CSV cell");
+					}
+					if (c == (quote & 0xff)) {
+						c = read();
+						if (c != (quote & 0xff)) {
+							break;
+						}
+					}
+					add(c);
+				}
+			}
+			while (true) {
+				if (c == -1 || c == '\n') {
+					return 1;
+				}
+				if (c == (delimiter & 0xff)) {
+					return 0;
+				}
+				if (c == '\r') {
+					int d = read();
+					if (d != '\n' && d != -1) {
+						position--;
+					}
+					return 1;
+				}
+				add(c);
+				c = read();
+			}
+		}
+	}
+
+	/**
+	 * Memo file of a DBF file: a dBase III or IV {@code .dbt} or a FoxPro
+	 * {@code .fpt} file next to it. Memo and picture fields hold the number of the
+	 * first block of their value, blank or 0 for none.
+	 */
+	public static final class MemoFile implements Closeable {
+		private static final int DBASE_III = 3;
+		private static final int DBASE_IV = 4;
+		private static final int FOXPRO = 5;
+		private static final int DBASE_III_WITH_MEMO = 0x83;
+		private static final byte MEMO_END = 0x1a;
+
+		private final FileChannel channel;
+		private final int format;
+		private final int blockSize;
+		private final ByteBuffer blockHeader = ByteBuffer.allocate(8);
+
+		private MemoFile(FileChannel channel, int format) throws IOException {
+			this.channel = channel;
+			this.format = format;
+			ByteBuffer header = ByteBuffer.allocate(22);
+			readFully(channel, header, 0);
+			int size;
+			if (format == FOXPRO) {
+				size = header.order(ByteOrder.BIG_ENDIAN).getShort(6) & 0xffff;
+			} else if (format == DBASE_IV) {
+				size = header.order(ByteOrder.LITTLE_ENDIAN).getShort(20) & 0xffff;
+			} else {
+				size = 512;
+			}
+			blockSize = size == 0 ? 512 : size;
+		}
+
+		/** The memo file of dbf with the given extension, replacing the one of the DBF file. */
+		static Path sibling(Path dbf, String extension) {
+			String name = dbf.getFileName().toString();
+			int dot = name.lastIndexOf('.');
+			return dbf.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + extension);
+		}
+
+		/** The existing memo file of dbf, or null. */
+		static Path find(Path dbf) {
+			for (String extension : new String[] { ".dbt", ".DBT", ".fpt", ".FPT" }) {
+				Path file = sibling(dbf, extension);
+				if (Files.exists(file)) {
+					return file;
+				}
+			}
+			return null;
+		}
+
+		/** Opens the memo file of dbf, version is the first byte of the DBF header. */
+		public static MemoFile open(Path dbf, int version, boolean write) throws IOException {
+			Path file = find(dbf);
+			if (file == null) {
+				throw new NoSuchFileException(sibling(dbf, ".dbt").toString());
+			}
+			FileChannel channel = write
+					? FileChannel.open(file, StandardOpenOption.READ,
+							StandardOpenOption.WRITE)
+					: FileChannel.open(file, StandardOpenOption.READ);
+			try {
+				int format = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".fpt") ? FOXPRO
+						: (version & 0xff) == DBASE_III_WITH_MEMO ? DBASE_III : DBASE_IV;
+				return new MemoFile(channel, format);
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Writes an empty memo file for a DBF file of the given version: a FoxPro
+		 * {@code .fpt} with 64 byte blocks for FoxPro versions, else a dBase III
+		 * {@code .dbt}. Returns the file.
+		 */
+		static Path create(Path dbf, int version) throws IOException {
+			boolean foxpro = isFoxPro(version);
+			ByteBuffer header = ByteBuffer.allocate(512);
+			if (foxpro) {
+				header.order(ByteOrder.BIG_ENDIAN).putInt(0, 512 / 64).putShort(6, (short) 64);
+			} else {
+				header.order(ByteOrder.LITTLE_ENDIAN).putInt(0, 1);
+			}
+			Path file = sibling(dbf, foxpro ? ".fpt" : ".dbt");
+			Files.write(file, header.array());
+			return file;
+		}
+
+		static boolean isFoxPro(int version) {
+			version &= 0xff;
+			return version == 0xf5 || version == 0xfb || (version >= 0x30 && version <= 0x32);
+		}
+
+		/** The block number held by a memo field, 0 for none. */
+		public static int block(byte[] b, int off, int len) {
+			return Math.max(0, parseInt(b, off, len, 0));
+		}
+
+		private int readBlockHeader(int block) throws IOException {
+			blockHeader.clear();
+			readFully(channel, blockHeader, (long) block * blockSize);
+			if (format == FOXPRO) {
+				return blockHeader.order(ByteOrder.BIG_ENDIAN).getInt(4);
+			}
+			if (blockHeader.get(0) == (byte) 0xff && blockHeader.get(1) == (byte) 0xff) {
+				return blockHeader.order(ByteOrder.LITTLE_ENDIAN).getInt(4) - 8;
+			}
+			return -1;
+		}
+
+		/** Offset of the value from the start of its first block. */
+		private int dataOffset(int block) throws IOException {
+			return format == DBASE_III || readBlockHeader(block) < 0 ? 0 : 8;
+		}
+
+		/** Length of the value in bytes, read from the block header or by looking for its end. */
+		public long length(int block) throws IOException {
+			if (block <= 0) {
+				return 0;
+			}
+			if (format != DBASE_III) {
+				int length = readBlockHeader(block);
+				if (length >= 0) {
+					return length;
+				}
+			}
+			long start = (long) block * blockSize;
+			long size = channel.size();
+			ByteBuffer chunk = ByteBuffer.allocate(blockSize);
+			for (long position = start; position < size; position += blockSize) {
+				chunk.clear();
+				int n = channel.read(chunk, position);
+				for (int i = 0; i < n; i++) {
+					if (chunk.get(i) == MEMO_END) {
+						return position + i - start;
+					}
+				}
+			}
+			return size - start;
+		}
+
+		/** Streams the value without loading it as a whole, empty for block 0. */
+		public InputStream open(int block) throws IOException {
+			long length = length(block);
+			long start = (long) block * blockSize + (block <= 0 ? 0 : dataOffset(block));
+			return new InputStream() {
+				private long position = start;
+				private final long end = start + length;
+
+				@Override
+				public int read() throws IOException {
+					byte[] one = new byte[1];
+					return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					if (position >= end) {
+						return -1;
+					}
+					int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+					if (n < 0) {
+						return -1;
+					}
+					position += n;
+					return n;
+				}
+
+				@Override
+				public long skip(long n) {
+					long skipped = Math.max(0, Math.min(n, end - position));
+					position += skipped;
+					return skipped;
+				}
+
+				@Override
+				public int available() {
+					return (int) Math.min(Integer.MAX_VALUE, end - position);
+				}
+			};
+		}
+
+		public byte[] read(int block) throws IOException {
+			long length = length(block);
+			if (length > Integer.MAX_VALUE - 8) {
+				throw new IOException("Memo of " + length + " bytes does not fit an array");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) length);
+			if (length > 0) {
+				readFully(channel, buffer, (long) block * blockSize + dataOffset(block));
+			}
+			return buffer.array();
+		}
+
+		/**
+		 * Appends a value read from in to the end of the file in chunks and returns
+		 * its first block. Picture only matters for FoxPro files. No xBaseJ handle may
+		 * have the file open, it would keep using its own next free block.
+		 */
+		public int append(InputStream in, boolean picture) throws IOException {
+			ByteBuffer next = ByteBuffer.allocate(4)
+					.order(format == FOXPRO ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, next, 0);
+			int block = Math.max(1, next.getInt(0));
+			long start = (long) block * blockSize;
+			int headerLength = format == DBASE_III ? 0 : 8;
+			long position = start + headerLength;
+			byte[] chunk = new byte[Math.max(blockSize, 8192)];
+			long length = 0;
+			int n;
+			while ((n = in.read(chunk)) >= 0) {
+				writeFully(channel, ByteBuffer.wrap(chunk, 0, n), position);
+				position += n;
+				length += n;
+			}
+			ByteBuffer header = ByteBuffer.allocate(8);
+			if (format == FOXPRO) {
+				header.order(ByteOrder.BIG_ENDIAN).putInt(0, picture ? 0 : 1).putInt(4, (int) length);
+				writeFully(channel, header, start);
+			} else if (format == DBASE_IV) {
+				header.order(ByteOrder.LITTLE_ENDIAN).put(0, (byte) 0xff).put(1, (byte) 0xff).put(2, (byte) 8)
+						.putInt(4, (int) (length + 8));
+				writeFully(channel, header, start);
+			} else {
+				writeFully(channel, ByteBuffer.wrap(new byte[] { MEMO_END, MEMO_END }), position);
+				position += 2;
+			}
+			int blocks = (int) ((position - start + blockSize - 1) / blockSize);
+			long end = start + (long) blocks * blockSize;
+			if (channel.size() < end) {
+				writeFully(channel, ByteBuffer.allocate((int) (end - position)), position);
+			}
+			next.clear();
+			next.putInt(0, block + blocks);
+			writeFully(channel, next, 0);
+			return block;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Copies the records of a DBF file that are not deleted to a new file, reading
+	 * and writing in large sequential chunks. Every column of the new file is filled
+	 * from the source column of the same name, realigned if its length or decimals
+	 * differ, or left blank if the source has none. The new file is written next to
+	 * the target and moved over it once complete, a memo file is copied along as is.
+	 */
+	public static final class Rewrite {
+		private final Path source;
+		private final Header header;
+		private final String[] names;
+		private final char[] types;
+		private final int[] lengths;
+		private final int[] decimals;
+		/** The source column of every column, -1 for a new one. */
+		private final int[] columns;
+		private final int[] offsets;
+		private final int recordLength;
+		private final boolean identity;
+		private RecordComparator order;
+		private long memory;
+
+		private Rewrite(Path source, Header header, String[] names, char[] types, int[] lengths,
+				int[] decimals) throws IOException {
+			this.source = source;
+			this.header = header;
+			this.names = names;
+			this.types = types;
+			this.lengths = lengths;
+			this.decimals = decimals;
+			columns = new int[names.length];
+			offsets = new int[names.length];
+			boolean identity = names.length == header.names.length;
+			int offset = 1;
+			for (int i = 0; i < names.length; i++) {
+				int column = -1;
+				for (int c = 0; c < header.names.length && column < 0; c++) {
+					if (header.names[c].equalsIgnoreCase(names[i])) {
+						column = c;
+					}
+				}
+				columns[i] = column;
+				if (column >= 0) {
+					char type = header.types[column];
+					if (type != types[i] && !(isNumeric(type) && isNumeric(types[i]))) {
+						throw new IOException(names[i] + ": type " + type + " in " + source + ", " + types[i] + " expected");
+					}
+					if (lengths[i] < 0) {
+						lengths[i] = header.lengths[column];
+					}
+					if (decimals[i] < 0) {
+						decimals[i] = header.decimals[column];
+					}
+					if (lengths[i] != header.lengths[column] && types[i] != 'C' && !isNumeric(types[i])) {
+						throw new IOException(names[i] + ": length " + header.lengths[column] + " in " + source + ", "
+								+ lengths[i] + " expected");
+					}
+				} else if (lengths[i] < 0) {
+					throw new IOException(names[i] + ": missing in " + source + ", its length is not known");
+				} else if (decimals[i] < 0) {
+					decimals[i] = 0;
+				}
+				if (lengths[i] < 1 || lengths[i] > 255) {
+					throw new IOException(names[i] + ": invalid length " + lengths[i]);
+				}
+				offsets[i] = offset;
+				identity &= column == i && types[i] == header.types[column] && lengths[i] == header.lengths[column]
+						&& decimals[i] == header.decimals[column] && offset == header.offsets[column];
+				offset += lengths[i];
+			}
+			if (offset > 0xffff || 32 + 32 * names.length + 1 > 0xffff) {
+				throw new IOException("Record or header of " + names.length + " fields exceeds 65535 bytes");
+			}
+			recordLength = offset;
+			this.identity = identity && recordLength == header.recordLength;
+		}
+
+		/** Keeps the columns of source. */
+		public static Rewrite compact(Path source) throws IOException {
+			Header header = readHeader(source);
+			return new Rewrite(source, header, header.names.clone(), header.types.clone(), header.lengths.clone(),
+					header.decimals.clone());
+		}
+
+		/**
+		 * The given columns, followed by the source columns not among them. Lengths
+		 * and decimals of -1 are taken from the source column.
+		 */
+		public static Rewrite migrate(Path source, String[] names, char[] types, int[] lengths,
+				int[] decimals) throws IOException {
+			Header header = readHeader(source);
+			List<Integer> extra = new ArrayList<>();
+			for (int c = 0; c < header.names.length; c++) {
+				boolean known = false;
+				for (String name : names) {
+					known |= name.equalsIgnoreCase(header.names[c]);
+				}
+				if (!known) {
+					extra.add(c);
+				}
+			}
+			int n = names.length + extra.size();
+			String[] allNames = Arrays.copyOf(names, n);
+			char[] allTypes = Arrays.copyOf(types, n);
+			int[] allLengths = Arrays.copyOf(lengths, n);
+			int[] allDecimals = Arrays.copyOf(decimals, n);
+			for (int i = names.length; i < n; i++) {
+				int c = extra.get(i - names.length);
+				allNames[i] = header.names[c];
+				allTypes[i] = header.types[c];
+				allLengths[i] = header.lengths[c];
+				allDecimals[i] = header.decimals[c];
+			}
+			return new Rewrite(source, header, allNames, allTypes, allLengths, allDecimals);
+		}
+
+		/**
+		 * Writes the records ordered by order, stable, with an external merge sort
+		 * using about memory bytes: sorted runs are spilled to temp files next to the
+		 * target and merged {@value #MERGE_WIDTH} at a time.
+		 */
+		public Rewrite sorted(RecordComparator order, long memory) {
+			this.order = order;
+			this.memory = memory;
+			return this;
+		}
+
+		/** Index of the column of the new file with the given name, -1 if it has none. */
+		public int column(String name) {
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].equalsIgnoreCase(name)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public char type(int column) {
+			return types[column];
+		}
+
+		/** Offset of the column in a record of the new file. */
+		public int offset(int column) {
+			return offsets[column];
+		}
+
+		public int length(int column) {
+			return lengths[column];
+		}
+
+		private static Header readHeader(Path source) throws IOException {
+			try (FileChannel channel = FileChannel.open(source,
+					StandardOpenOption.READ)) {
+				return RecordCodec.readHeader(channel);
+			}
+		}
+
+		private static boolean isNumeric(char type) {
+			return type == 'N' || type == 'F';
+		}
+
+		private boolean hasMemo() {
+			for (char type : types) {
+				if (type == 'M' || type == 'P' || type == 'G') {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Writes the new file next to target and moves it over target, closing
+		 * beforeMove, if not null, right before. Returns the number of records written.
+		 */
+		public int writeTo(Path target, int bufferSize, Closeable beforeMove) throws IOException {
+			Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(),
+					target.getFileName().toString(), ".tmp");
+			Path memoTmp = null;
+			try {
+				boolean memo = hasMemo();
+				Path sourceMemo = memo ? MemoFile.find(source) : null;
+				int version = header.raw[0] & 0xff;
+				if (memo && sourceMemo == null && !MemoFile.isFoxPro(version)) {
+					version = 0x83;
+				} else if (!memo && (version == 0x83 || version == 0x8b || version == 0xf5 || version == 0xfb)) {
+					version = 0x03;
+				}
+				int count;
+				try (FileChannel in = FileChannel.open(source,
+						StandardOpenOption.READ);
+						FileChannel out = FileChannel.open(tmp,
+								StandardOpenOption.WRITE)) {
+					byte[] raw = header(version, memo);
+					count = order == null ? copyRecords(in, out, raw.length, bufferSize)
+							: sortRecords(in, out, raw.length, bufferSize, tmp.getParent());
+					ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN).putInt(4, count);
+					writeFully(out, ByteBuffer.wrap(raw), 0);
+					out.force(true);
+				}
+				if (memo) {
+					if (sourceMemo == null) {
+						memoTmp = MemoFile.create(tmp, version);
+					} else {
+						String name = sourceMemo.getFileName().toString();
+						memoTmp = MemoFile.sibling(tmp, name.substring(name.lastIndexOf('.')));
+						Files.copy(sourceMemo, memoTmp, StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+				if (beforeMove != null) {
+					beforeMove.close();
+				}
+				if (memoTmp != null) {
+					String name = memoTmp.getFileName().toString();
+					move(memoTmp, MemoFile.sibling(target, name.substring(name.lastIndexOf('.'))));
+				}
+				move(tmp, target);
+				return count;
+			} finally {
+				Files.deleteIfExists(tmp);
+				if (memoTmp != null) {
+					Files.deleteIfExists(memoTmp);
+				}
+			}
+		}
+
+		private static void move(Path from, Path to) throws IOException {
+			try {
+				Files.move(from, to, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+
+		/**
+		 * The new header with a record count of 0. The bytes after the field
+		 * descriptors, like the Visual FoxPro backlink, are kept.
+		 */
+		private byte[] header(int version, boolean memo) {
+			int tailFrom = 32 + 32 * header.names.length;
+			byte[] tail = tailFrom < header.headerLength
+					? Arrays.copyOfRange(header.raw, tailFrom, header.headerLength)
+					: new byte[] { HEADER_END };
+			byte[] b = new byte[32 + 32 * names.length + tail.length];
+			System.arraycopy(header.raw, 0, b, 0, 32);
+			System.arraycopy(tail, 0, b, b.length - tail.length, tail.length);
+			boolean displacements = false;
+			for (int c = 0; c < header.names.length; c++) {
+				displacements |= readInt(header.raw, 32 + 32 * c + 12) != 0;
+			}
+			LocalDate today = LocalDate.now();
+			ByteBuffer buffer = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.put(0, (byte) version).put(1, (byte) (today.getYear() - 1900)).put(2, (byte) today.getMonthValue())
+					.put(3, (byte) today.getDayOfMonth()).putInt(4, 0).putShort(8, (short) b.length)
+					.putShort(10, (short) recordLength);
+			if (version >= 0x30 && version <= 0x32) {
+				b[28] = (byte) (memo ? b[28] | 0x02 : b[28] & ~0x02);
+			}
+			for (int i = 0; i < names.length; i++) {
+				int p = 32 + 32 * i;
+				if (columns[i] >= 0) {
+					System.arraycopy(header.raw, 32 + 32 * columns[i], b, p, 32);
+				} else {
+					byte[] name = names[i].getBytes(StandardCharsets.ISO_8859_1);
+					System.arraycopy(name, 0, b, p, Math.min(name.length, 10));
+				}
+				b[p + 11] = (byte) types[i];
+				if (displacements || columns[i] < 0) {
+					buffer.putInt(p + 12, displacements ? offsets[i] : 0);
+				}
+				b[p + 16] = (byte) lengths[i];
+				b[p + 17] = (byte) decimals[i];
+			}
+			return b;
+		}
+
+		private static int readInt(byte[] b, int off) {
+			return ByteBuffer.wrap(b, off, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+		}
+
+		/** Copies the records in chunks of about bufferSize bytes, returns the number written. */
+		private int copyRecords(FileChannel in, FileChannel out, long position,
+				int bufferSize) throws IOException {
+			Reader reader = new Reader(in, bufferSize);
+			int perChunk = Math.max(1, bufferSize / recordLength);
+			byte[] records = new byte[perChunk * recordLength];
+			int count = 0;
+			while (reader.hasMore()) {
+				int n = reader.read(records, 0, perChunk);
+				writeFully(out, ByteBuffer.wrap(records, 0, n * recordLength), position);
+				position += (long) n * recordLength;
+				count += n;
+			}
+			writeFully(out, ByteBuffer.wrap(new byte[] { FILE_END }), position);
+			return count;
+		}
+
+		/** Reads the records that are not deleted in chunks, converted to the new layout. */
+		private final class Reader {
+			private final FileChannel channel;
+			private final ByteBuffer chunk;
+			private final int perChunk;
+			private long position = header.headerLength;
+			private int recno;
+
+			Reader(FileChannel channel, int bufferSize) {
+				this.channel = channel;
+				perChunk = Math.max(1, bufferSize / header.recordLength);
+				chunk = identity ? null : ByteBuffer.allocate(perChunk * header.recordLength);
+			}
+
+			boolean hasMore() {
+				return recno < header.recordCount;
+			}
+
+			/** Reads up to max records into records from index on, returns the number kept. */
+			int read(byte[] records, int index, int max) throws IOException {
+				int n = Math.min(max, header.recordCount - recno);
+				byte[] raw;
+				int rawOff;
+				if (identity) {
+					raw = records;
+					rawOff = index * recordLength;
+					readFully(channel, ByteBuffer.wrap(records, rawOff, n * recordLength).slice(), position);
+				} else {
+					n = Math.min(n, perChunk);
+					chunk.clear().limit(n * header.recordLength);
+					readFully(channel, chunk, position);
+					raw = chunk.array();
+					rawOff = 0;
+				}
+				int kept = 0;
+				for (int i = 0; i < n; i++) {
+					int from = rawOff + i * header.recordLength;
+					if (raw[from] == DELETED) {
+						continue;
+					}
+					int to = (index + kept) * recordLength;
+					if (!identity) {
+						convert(raw, from, records, to, recno + i + 1);
+					} else if (from != to) {
+						System.arraycopy(raw, from, records, to, recordLength);
+					}
+					kept++;
+				}
+				position += (long) n * header.recordLength;
+				recno += n;
+				return kept;
+			}
+		}
+
+		/** The largest number of runs merged at once. */
+		static final int MERGE_WIDTH = 64;
+
+		/**
+		 * Sorts the records into runs of about memory bytes, merges them and writes
+		 * the result, returns the number written. A table fitting into one run is not
+		 * spilled.
+		 */
+		private int sortRecords(FileChannel in, FileChannel out, long position,
+				int bufferSize, Path directory) throws IOException {
+			Reader reader = new Reader(in, bufferSize);
+			long perRun = Math.min(memory, Integer.MAX_VALUE - 8) / recordLength;
+			int runRecords = (int) Math.max(1, Math.min(perRun, header.recordCount));
+			byte[] run = new byte[runRecords * recordLength];
+			int[] index = new int[runRecords];
+			int[] scratch = new int[runRecords];
+			byte[] buffer = new byte[Math.max(1, bufferSize / recordLength) * recordLength];
+			List<Path> runs = new ArrayList<>();
+			List<Path> created = new ArrayList<>();
+			try {
+				int count = 0;
+				while (reader.hasMore()) {
+					int n = 0;
+					while (n < runRecords && reader.hasMore()) {
+						n += reader.read(run, n, runRecords - n);
+					}
+					sortRun(run, index, scratch, n);
+					count += n;
+					if (runs.isEmpty() && !reader.hasMore()) {
+						position = writeRun(run, index, n, buffer, out, position);
+						writeFully(out, ByteBuffer.wrap(new byte[] { FILE_END }), position);
+						return count;
+					}
+					Path file = Files.createTempFile(directory, "sort", ".run");
+					created.add(file);
+					runs.add(file);
+					try (FileChannel channel = FileChannel.open(file,
+							StandardOpenOption.WRITE)) {
+						writeRun(run, index, n, buffer, channel, 0);
+					}
+				}
+				run = null;
+				index = null;
+				scratch = null;
+				while (runs.size() > MERGE_WIDTH) {
+					List<Path> merged = new ArrayList<>();
+					for (int i = 0; i < runs.size(); i += MERGE_WIDTH) {
+						List<Path> group = runs.subList(i, Math.min(runs.size(), i + MERGE_WIDTH));
+						if (group.size() == 1) {
+							merged.add(group.get(0));
+							continue;
+						}
+						Path file = Files.createTempFile(directory, "sort", ".run");
+						created.add(file);
+						merged.add(file);
+						try (FileChannel channel = FileChannel.open(file,
+								StandardOpenOption.WRITE)) {
+							merge(group, channel, 0);
+						}
+						for (Path done : group) {
+							Files.delete(done);
+						}
+					}
+					runs = merged;
+				}
+				position = merge(runs, out, position);
+				writeFully(out, ByteBuffer.wrap(new byte[] { FILE_END }), position);
+				return count;
+			} finally {
+				for (Path file : created) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+
+		private int compareRecords(byte[] run, int x, int y) {
+			return order.compare(run, x * recordLength, run, y * recordLength);
+		}
+
+		/** Stable merge sort of the indexes of the first n records. */
+		private void sortRun(byte[] run, int[] index, int[] scratch, int n) {
+			for (int i = 0; i < n; i++) {
+				index[i] = i;
+			}
+			sortRun(run, index, scratch, 0, n);
+		}
+
+		private void sortRun(byte[] run, int[] index, int[] scratch, int from, int to) {
+			if (to - from < 16) {
+				for (int i = from + 1; i < to; i++) {
+					int value = index[i];
+					int j = i;
+					while (j > from && compareRecords(run, index[j - 1], value) > 0) {
+						index[j] = index[j - 1];
+						j--;
+					}
+					index[j] = value;
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			sortRun(run, index, scratch, from, mid);
+			sortRun(run, index, scratch, mid, to);
+			if (compareRecords(run, index[mid - 1], index[mid]) <= 0) {
+				return;
+			}
+			System.arraycopy(index, from, scratch, from, to - from);
+			int i = from;
+			int j = mid;
+			int k = from;
+			while (i < mid && j < to) {
+				index[k++] = compareRecords(run, scratch[j], scratch[i]) < 0 ? scratch[j++] : scratch[i++];
+			}
+			while (i < mid) {
+				index[k++] = scratch[i++];
+			}
+			while (j < to) {
+				index[k++] = scratch[j++];
+			}
+		}
+
+		/** Writes the records in index order through buffer, returns the position after them. */
+		private long writeRun(byte[] run, int[] index, int n, byte[] buffer, FileChannel channel,
+				long position) throws IOException {
+			int buffered = 0;
+			for (int i = 0; i < n; i++) {
+				System.arraycopy(run, index[i] * recordLength, buffer, buffered, recordLength);
+				buffered += recordLength;
+				if (buffered == buffer.length || i == n - 1) {
+					writeFully(channel, ByteBuffer.wrap(buffer, 0, buffered), position);
+					position += buffered;
+					buffered = 0;
+				}
+			}
+			return position;
+		}
+
+		/**
+		 * Merges sorted run files into channel from position on, with a buffer of
+		 * memory / (runs + 1) bytes per run and for the output. Returns the position
+		 * after the records. Equal records are taken from the earlier run first.
+		 */
+		private long merge(List<Path> files, FileChannel channel, long position)
+				throws IOException {
+			int k = files.size();
+			long slice = Math.min(memory / (k + 1), Integer.MAX_VALUE - 8) / recordLength;
+			int perBuffer = (int) Math.max(1, slice);
+			Run[] runs = new Run[k];
+			try {
+				int[] heap = new int[k];
+				int size = 0;
+				for (int r = 0; r < k; r++) {
+					runs[r] = new Run(files.get(r), perBuffer);
+					if (runs[r].advance()) {
+						heap[size] = r;
+						siftUp(runs, heap, size++);
+					}
+				}
+				byte[] buffer = new byte[perBuffer * recordLength];
+				int buffered = 0;
+				while (size > 0) {
+					Run run = runs[heap[0]];
+					System.arraycopy(run.buffer, run.offset, buffer, buffered, recordLength);
+					buffered += recordLength;
+					if (buffered == buffer.length) {
+						writeFully(channel, ByteBuffer.wrap(buffer), position);
+						position += buffered;
+						buffered = 0;
+					}
+					if (!run.advance()) {
+						heap[0] = heap[--size];
+					}
+					siftDown(runs, heap, size);
+				}
+				writeFully(channel, ByteBuffer.wrap(buffer, 0, buffered), position);
+				return position + buffered;
+			} finally {
+				for (Run run : runs) {
+					if (run != null) {
+						run.channel.close();
+					}
+				}
+			}
+		}
+
+		private boolean before(Run[] runs, int a, int b) {
+			int c = order.compare(runs[a].buffer, runs[a].offset, runs[b].buffer, runs[b].offset);
+			return c < 0 || (c == 0 && a < b);
+		}
+
+		private void siftUp(Run[] runs, int[] heap, int i) {
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!before(runs, heap[i], heap[parent])) {
+					return;
+				}
+				int t = heap[i];
+				heap[i] = heap[parent];
+				heap[parent] = t;
+				i = parent;
+			}
+		}
+
+		private void siftDown(Run[] runs, int[] heap, int size) {
+			int i = 0;
+			while (true) {
+				int least = i;
+				int left = 2 * i + 1;
+				if (left < size && before(runs, heap[left], heap[least])) {
+					least = left;
+				}
+				if (left + 1 < size && before(runs, heap[left + 1], heap[least])) {
+					least = left + 1;
+				}
+				if (least == i) {
+					return;
+				}
+				int t = heap[i];
+				heap[i] = heap[least];
+				heap[least] = t;
+				i = least;
+			}
+		}
+
+		/** A sorted run file read in chunks, positioned on one record. */
+		private final class Run {
+			final FileChannel channel;
+			final byte[] buffer;
+			private final long size;
+			private long position;
+			private int end;
+			int offset;
+
+			Run(Path file, int perBuffer) throws IOException {
+				channel = FileChannel.open(file, StandardOpenOption.READ);
+				buffer = new byte[perBuffer * recordLength];
+				size = channel.size();
+				offset = end = 0;
+			}
+
+			/** Moves to the next record, false at the end of the run. */
+			boolean advance() throws IOException {
+				offset += recordLength;
+				if (offset < end) {
+					return true;
+				}
+				if (position >= size) {
+					return false;
+				}
+				end = (int) Math.min(buffer.length, size - position);
+				readFully(channel, ByteBuffer.wrap(buffer, 0, end), position);
+				position += end;
+				offset = 0;
+				return true;
+			}
+		}
+
+		private void convert(byte[] raw, int from, byte[] b, int to, int recno) throws IOException {
+			b[to] = NOT_DELETED;
+			for (int i = 0; i < names.length; i++) {
+				int off = to + offsets[i];
+				int len = lengths[i];
+				int column = columns[i];
+				if (column < 0) {
+					if (types[i] == 'Y' || types[i] == 'I' || types[i] == 'T') {
+						Arrays.fill(b, off, off + len, (byte) 0);
+					} else {
+						fill(b, off, len);
+					}
+					continue;
+				}
+				int sourceOff = from + header.offsets[column];
+				int sourceLen = header.lengths[column];
+				if (sourceLen == len && (!isNumeric(types[i]) || header.decimals[column] == decimals[i])) {
+					System.arraycopy(raw, sourceOff, b, off, len);
+				} else if (types[i] == 'C') {
+					int n = Math.min(sourceLen, len);
+					if (!isBlank(raw, sourceOff + n, sourceLen - n)) {
+						throw new IOException(names[i] + ": value of record " + recno + " does not fit " + len + " bytes");
+					}
+					System.arraycopy(raw, sourceOff, b, off, n);
+					fill(b, off + n, len - n);
+				} else {
+					int start = trimStart(raw, sourceOff, sourceOff + sourceLen);
+					int end = trimEnd(raw, start, sourceOff + sourceLen);
+					int written = 1;
+					if (start == end) {
+						fill(b, off, len);
+					} else {
+						written = encodePlainDecimal(raw, start, end, decimals[i], b, off, len);
+					}
+					if (written == NOT_PLAIN) {
+						try {
+							written = encodeDecimal(new BigDecimal(new String(raw, start, end - start,
+									StandardCharsets.ISO_8859_1)), decimals[i], b, off, len) ? 1 : 0;
+						} catch (NumberFormatException e) {
+							throw new IOException(names[i] + ": invalid number in record " + recno, e);
+						}
+					}
+					if (written == 0) {
+						throw new IOException(names[i] + ": value of record " + recno + " does not fit " + len + " bytes");
+					}
+				}
+			}
+		}
+	}
+
+	/** Reusable byte buffer in front of an output stream. */
+	public static final class Output {
+		private final OutputStream stream;
+		private final byte[] buffer;
+		private final byte[] digits = new byte[20];
+		private int position;
+
+		public Output(OutputStream stream, int size) {
+			this.stream = stream;
+			this.buffer = new byte[size];
+		}
+
+		public void write(int b) throws IOException {
+			if (position == buffer.length) {
+				flushBuffer();
+			}
+			buffer[position++] = (byte) b;
+		}
+
+		public void write(byte[] b, int from, int to) throws IOException {
+			while (from < to) {
+				if (position == buffer.length) {
+					flushBuffer();
+				}
+				int n = Math.min(to - from, buffer.length - position);
+				System.arraycopy(b, from, buffer, position, n);
+				position += n;
+				from += n;
+			}
+		}
+
+		public void writeAscii(String value) throws IOException {
+			for (int i = 0; i < value.length(); i++) {
+				write(value.charAt(i));
+			}
+		}
+
+		/** Writes value / 10^scale with scale decimals, like {@link BigDecimal#toPlainString()}. */
+		public void writeScaled(long value, int scale) throws IOException {
+			if (value == Long.MIN_VALUE) {
+				writeAscii(BigDecimal.valueOf(value, scale).toPlainString());
+				return;
+			}
+			if (value < 0) {
+				write('-');
+				value = -value;
+			}
+			int n = 0;
+			do {
+				digits[n++] = (byte) ('0' + value % 10);
+				value /= 10;
+			} while (value != 0 || n <= scale);
+			while (n > 0) {
+				if (n == scale) {
+					write('.');
+				}
+				write(digits[--n]);
+			}
+		}
+
+		private void flushBuffer() throws IOException {
+			stream.write(buffer, 0, position);
+			position = 0;
+		}
+
+		public void flush() throws IOException {
+			flushBuffer();
+			stream.flush();
+		}
+	}
+
+	public static Header readHeader(FileChannel channel) throws IOException {
+		ByteBuffer prefix = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, prefix, 0);
+		int recordCount = prefix.getInt(4);
+		int headerLength = prefix.getShort(8) & 0xffff;
+		int recordLength = prefix.getShort(10) & 0xffff;
+		if (recordCount < 0 || headerLength < 33 || recordLength < 1) {
+			throw new IOException("Not a DBF file, invalid header");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(headerLength);
+		readFully(channel, buffer, 0);
+		return new Header(buffer.array(), recordCount, headerLength, recordLength);
+	}
+
+	/** The record layout as found in a DBF file header. */
+	public static final class Header {
+		public final byte[] raw;
+		public final int recordCount;
+		public final int headerLength;
+		public final int recordLength;
+		public final String[] names;
+		public final char[] types;
+		public final int[] lengths;
+		public final int[] decimals;
+		public final int[] offsets;
+
+		Header(byte[] raw, int recordCount, int headerLength, int recordLength) throws IOException {
+			this.raw = raw;
+			this.recordCount = recordCount;
+			this.headerLength = headerLength;
+			this.recordLength = recordLength;
+			int fieldCount = 0;
+			while (64 + fieldCount * 32 <= headerLength && raw[32 + fieldCount * 32] != HEADER_END) {
+				fieldCount++;
+			}
+			names = new String[fieldCount];
+			types = new char[fieldCount];
+			lengths = new int[fieldCount];
+			decimals = new int[fieldCount];
+			offsets = new int[fieldCount];
+			int offset = 1;
+			for (int i = 0; i < fieldCount; i++) {
+				int p = 32 + i * 32;
+				int nameLength = 0;
+				while (nameLength < 11 && raw[p + nameLength] != 0) {
+					nameLength++;
+				}
+				names[i] = new String(raw, p, nameLength, StandardCharsets.ISO_8859_1).trim();
+				types[i] = (char) (raw[p + 11] & 0xff);
+				lengths[i] = raw[p + 16] & 0xff;
+				decimals[i] = raw[p + 17] & 0xff;
+				offsets[i] = offset;
+				offset += lengths[i];
+			}
+			if (offset > recordLength) {
+				throw new IOException("Not a DBF file, fields exceed the record length");
+			}
+		}
+	}
+}
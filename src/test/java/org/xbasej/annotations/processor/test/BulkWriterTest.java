@@ -0,0 +1,66 @@
+package org.xbasej.annotations.processor.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xbasej.annotations.processor.test.XBaseJFiles.Snapshot;
+
+/** xBaseJ reads what the bulk writer appends. */
+class BulkWriterTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void appendedRecordsMatchXBaseJ() throws Exception {
+		List<Map<String, String>> expected = XBaseJFiles
+				.live(XBaseJFiles.read(XBaseJFiles.orders(dir.resolve("expected.dbf"), 500, 4)));
+		Path file = dir.resolve("written.dbf");
+		XBaseJFiles.create(file, XBaseJFiles.orderFields()).close();
+		try (OrderBulkWriter writer = new OrderBulkWriter(file, StandardCharsets.ISO_8859_1, 4096)) {
+			for (Map<String, String> values : expected) {
+				writer.setId(Integer.parseInt(values.get("ID")));
+				writer.setStatus(values.get("STATUS"));
+				writer.setName(values.get("NAME"));
+				writer.setAmount(Long.parseLong(values.get("AMOUNT")));
+				writer.setDay(LocalDate.parse(values.get("DAY"), DateTimeFormatter.BASIC_ISO_DATE));
+				writer.setOk(values.get("OK").equals("T"));
+				writer.setPrice(new BigDecimal(values.get("PRICE")));
+				writer.append();
+			}
+		}
+		List<Snapshot> written = XBaseJFiles.read(file);
+		for (Snapshot record : written) {
+			assertFalse(record.deleted);
+		}
+		assertEquals(expected, XBaseJFiles.live(written));
+	}
+
+	@Test
+	void abortKeepsPreviousRecords() throws Exception {
+		Path file = XBaseJFiles.orders(dir.resolve("orders.dbf"), 20, 5);
+		List<Snapshot> before = XBaseJFiles.read(file);
+		OrderBulkWriter writer = new OrderBulkWriter(file);
+		for (int i = 0; i < 5; i++) {
+			writer.setId(100 + i);
+			writer.append();
+		}
+		writer.abort();
+		List<Snapshot> after = XBaseJFiles.read(file);
+		assertEquals(before.size(), after.size());
+		for (int i = 0; i < before.size(); i++) {
+			assertEquals(before.get(i).deleted, after.get(i).deleted);
+			assertEquals(before.get(i).values, after.get(i).values);
+		}
+	}
+}
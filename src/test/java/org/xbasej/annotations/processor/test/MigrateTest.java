@@ -0,0 +1,97 @@
+package org.xbasej.annotations.processor.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xBaseJ.DBF;
+import org.xBaseJ.fields.CharField;
+import org.xBaseJ.fields.DateField;
+import org.xBaseJ.fields.NumField;
+
+/** Compact and migrate write the records xBaseJ reads from the source. */
+class MigrateTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void compactDropsDeletedRecords() throws Exception {
+		Path source = XBaseJFiles.orders(dir.resolve("source.dbf"), 100, 8);
+		List<Map<String, String>> expected = XBaseJFiles.live(XBaseJFiles.read(source));
+		Path target = dir.resolve("compact.dbf");
+		assertEquals(expected.size(), Order.compact(source, target));
+		assertEquals(XBaseJFiles.fields(source), XBaseJFiles.fields(target));
+		assertEquals(expected, XBaseJFiles.live(XBaseJFiles.read(target)));
+		assertEquals(expected.size(), XBaseJFiles.read(target).size());
+	}
+
+	@Test
+	void migrateUsesLayoutAndKeepsOtherFields() throws Exception {
+		Path source = dir.resolve("source.dbf");
+		DBF dbf = XBaseJFiles.create(source, new CharField("NAME", 10), new NumField("ID", 6, 0),
+				new CharField("EXTRA", 5), new CharField("STATUS", 1), new DateField("DAY"));
+		List<Map<String, String>> expected = new ArrayList<>();
+		try {
+			for (int i = 1; i <= 30; i++) {
+				dbf.getField("NAME").put("Name " + i);
+				dbf.getField("ID").put(Integer.toString(i));
+				dbf.getField("EXTRA").put("X" + i);
+				dbf.getField("STATUS").put(XBaseJFiles.STATUSES[i % 3]);
+				dbf.getField("DAY").put("202101" + (10 + i % 20));
+				dbf.write();
+				if (i % 4 == 0) {
+					dbf.delete();
+					continue;
+				}
+				Map<String, String> values = new LinkedHashMap<>();
+				values.put("AMOUNT", "");
+				values.put("DAY", "202101" + (10 + i % 20));
+				values.put("ID", Integer.toString(i));
+				values.put("NAME", "Name " + i);
+				values.put("OK", "");
+				values.put("PRICE", "");
+				values.put("STATUS", XBaseJFiles.STATUSES[i % 3]);
+				values.put("EXTRA", "X" + i);
+				expected.add(values);
+			}
+		} finally {
+			dbf.close();
+		}
+		Path target = dir.resolve("migrated.dbf");
+		assertEquals(expected.size(), Order.migrate(source, target));
+		assertEquals(Arrays.asList("AMOUNT N 12.0", "DAY D 8.0", "ID N 8.0", "NAME C 15.0", "OK L 1.0", "PRICE N 10.2",
+				"STATUS C 1.0", "EXTRA C 5.0"), XBaseJFiles.fields(target));
+		assertEquals(expected, XBaseJFiles.live(XBaseJFiles.read(target)));
+	}
+
+	@Test
+	void migrateFailsOnValueThatDoesNotFit() throws Exception {
+		Path source = dir.resolve("source.dbf");
+		DBF dbf = XBaseJFiles.create(source, new NumField("ID", 8, 0), new CharField("STATUS", 3));
+		try {
+			dbf.getField("ID").put("1");
+			dbf.getField("STATUS").put("ABC");
+			dbf.write();
+		} finally {
+			dbf.close();
+		}
+		assertThrows(IOException.class, () -> Order.migrate(source, dir.resolve("migrated.dbf")));
+	}
+
+	@Test
+	void migrateFailsOnChangedFieldType() throws Exception {
+		Path source = dir.resolve("source.dbf");
+		XBaseJFiles.create(source, new CharField("ID", 8)).close();
+		assertThrows(IOException.class, () -> Order.migrate(source, dir.resolve("migrated.dbf")));
+	}
+}
@@ -0,0 +1,35 @@
+package org.xbasej.annotations.processor.test;
+
+import org.xBaseJ.annotations.DBFField;
+import org.xBaseJ.fields.CharField;
+import org.xBaseJ.fields.DateField;
+import org.xBaseJ.fields.LogicalField;
+import org.xBaseJ.fields.NumField;
+
+/**
+ * Compiled to {@code Order} and its companion classes with every optional
+ * feature, ID and STATUS indexed.
+ */
+public class OrderDbfStruct {
+
+	@DBFField(name = "ID", size = 8)
+	protected NumField id;
+
+	@DBFField(name = "STATUS", size = 1)
+	protected CharField status;
+
+	@DBFField(name = "NAME", size = 15)
+	protected CharField name;
+
+	@DBFField(name = "AMOUNT", size = 12)
+	protected NumField amount;
+
+	@DBFField(name = "DAY", size = 8)
+	protected DateField day;
+
+	@DBFField(name = "OK", size = 1)
+	protected LogicalField ok;
+
+	@DBFField(name = "PRICE", size = 10, dec = 2)
+	protected NumField price;
+}
@@ -0,0 +1,80 @@
+package org.xbasej.annotations.processor.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xBaseJ.DBF;
+import org.xbasej.annotations.processor.test.XBaseJFiles.Snapshot;
+
+/** The record class and the mapped reader read what xBaseJ reads. */
+class ReaderTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void mappedReaderMatchesXBaseJ() throws Exception {
+		Path file = XBaseJFiles.orders(dir.resolve("orders.dbf"), 300, 1);
+		List<Snapshot> expected = XBaseJFiles.read(file);
+		try (OrderMappedReader reader = new OrderMappedReader(file)) {
+			assertEquals(expected.size(), reader.getRecordCount());
+			for (int recno = 1; recno <= expected.size(); recno++) {
+				reader.seek(recno);
+				Snapshot record = expected.get(recno - 1);
+				assertEquals(record.deleted, reader.deleted(), "deleted " + recno);
+				assertEquals(record.values, XBaseJFiles.orderValues(reader.getId(), reader.getStatus(), reader.getName(),
+						reader.getAmount(), reader.getDay(), reader.getOk(), reader.getPrice()), "record " + recno);
+			}
+		}
+	}
+
+	@Test
+	void recordClassMatchesXBaseJ() throws Exception {
+		Path file = XBaseJFiles.orders(dir.resolve("orders.dbf"), 300, 2);
+		List<Snapshot> expected = XBaseJFiles.read(file);
+		DBF dbf = new DBF(file.toString());
+		try {
+			Order record = new Order(dbf, true);
+			for (int recno = 1; recno <= expected.size(); recno++) {
+				record.seek(recno);
+				Snapshot snapshot = expected.get(recno - 1);
+				assertEquals(snapshot.deleted, record.deleted(), "deleted " + recno);
+				assertEquals(snapshot.values, XBaseJFiles.orderValues(record.getId(), record.getStatus(), record.getName(),
+						record.getAmount(), record.getDay(), record.getOk(), record.getPrice()), "record " + recno);
+			}
+		} finally {
+			dbf.close();
+		}
+	}
+
+	/** Deleted records are not indexed. */
+	@Test
+	void indexesMatchXBaseJ() throws Exception {
+		Path file = XBaseJFiles.orders(dir.resolve("orders.dbf"), 300, 3);
+		List<Snapshot> expected = XBaseJFiles.read(file);
+		DBF dbf = new DBF(file.toString());
+		try {
+			Order record = new Order(dbf, true);
+			for (String status : XBaseJFiles.STATUSES) {
+				int[] recnos = expected.stream().filter(r -> !r.deleted && r.get("STATUS").equals(status))
+						.mapToInt(r -> Integer.parseInt(r.get("ID"))).toArray();
+				assertArrayEquals(recnos, record.findAllByStatus(status), status);
+			}
+			assertTrue(record.findById(124));
+			assertEquals(124, dbf.getCurrentRecordNumber());
+			assertEquals(expected.get(123).get("NAME"), record.getName());
+			assertTrue(expected.get(122).deleted);
+			assertFalse(record.findById(123));
+			assertFalse(record.findById(expected.size() + 1));
+		} finally {
+			dbf.close();
+		}
+	}
+}
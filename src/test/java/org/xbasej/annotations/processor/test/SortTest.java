@@ -0,0 +1,69 @@
+package org.xbasej.annotations.processor.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.xBaseJ.DBF;
+import org.xBaseJ.fields.CharField;
+import org.xBaseJ.fields.NumField;
+
+/** The sort writes the records xBaseJ reads in the order of a stable sort. */
+class SortTest {
+
+	@TempDir
+	Path dir;
+
+	/** 1 KiB spills runs of a few records and merges them in several passes. */
+	@ParameterizedTest
+	@ValueSource(longs = { 1024, 64 << 20 })
+	void sortMatchesStableSortOfXBaseJRecords(long memory) throws Exception {
+		Path source = XBaseJFiles.orders(dir.resolve("source.dbf"), 500, 6);
+		List<Map<String, String>> expected = XBaseJFiles.live(XBaseJFiles.read(source));
+		expected.sort(Comparator.<Map<String, String>, String>comparing(values -> values.get("STATUS"))
+				.thenComparing(values -> Long.parseLong(values.get("AMOUNT")), Comparator.reverseOrder()));
+		Path target = dir.resolve("sorted.dbf");
+		assertEquals(expected.size(),
+				Order.sort(source, target, memory, OrderSortKey.STATUS, OrderSortKey.AMOUNT.descending()));
+		assertEquals(XBaseJFiles.fields(source), XBaseJFiles.fields(target));
+		assertEquals(expected, XBaseJFiles.live(XBaseJFiles.read(target)));
+	}
+
+	@Test
+	void tiesKeepRecordOrder() throws Exception {
+		Path source = XBaseJFiles.orders(dir.resolve("source.dbf"), 200, 7);
+		List<Map<String, String>> expected = XBaseJFiles.live(XBaseJFiles.read(source));
+		expected.sort(Comparator.comparing(values -> values.get("OK")));
+		Path target = dir.resolve("sorted.dbf");
+		Order.sort(source, target, 1024, OrderSortKey.OK);
+		assertEquals(expected, XBaseJFiles.live(XBaseJFiles.read(target)));
+	}
+
+	@Test
+	void missingKeyFieldFails() throws Exception {
+		Path source = dir.resolve("source.dbf");
+		DBF dbf = XBaseJFiles.create(source, new NumField("ID", 8, 0), new CharField("STATUS", 1));
+		try {
+			dbf.getField("ID").put("1");
+			dbf.getField("STATUS").put("A");
+			dbf.write();
+		} finally {
+			dbf.close();
+		}
+		Path target = dir.resolve("sorted.dbf");
+		IOException e = assertThrows(IOException.class, () -> Order.sort(source, target, 1 << 20, OrderSortKey.PRICE));
+		assertEquals("PRICE: no such field in the file", e.getMessage());
+		assertFalse(Files.exists(target));
+	}
+}
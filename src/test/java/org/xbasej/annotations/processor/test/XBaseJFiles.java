@@ -0,0 +1,152 @@
+package org.xbasej.annotations.processor.test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.xBaseJ.DBF;
+import org.xBaseJ.xBaseJException;
+import org.xBaseJ.fields.CharField;
+import org.xBaseJ.fields.DateField;
+import org.xBaseJ.fields.Field;
+import org.xBaseJ.fields.LogicalField;
+import org.xBaseJ.fields.NumField;
+
+/**
+ * Writes and reads the test files through xBaseJ alone, the reference the
+ * generated classes are compared with.
+ */
+final class XBaseJFiles {
+
+	static final String[] STATUSES = { "A", "B", "C" };
+
+	/** A record as xBaseJ reads it, the trimmed field values by field name in file order. */
+	static final class Snapshot {
+		final boolean deleted;
+		final Map<String, String> values;
+
+		Snapshot(boolean deleted, Map<String, String> values) {
+			this.deleted = deleted;
+			this.values = values;
+		}
+
+		String get(String name) {
+			return values.get(name);
+		}
+	}
+
+	private XBaseJFiles() {
+	}
+
+	/** The fields of {@link OrderDbfStruct} in declaration order, not the layout order. */
+	static Field[] orderFields() throws IOException, xBaseJException {
+		return new Field[] { new NumField("ID", 8, 0), new CharField("STATUS", 1), new CharField("NAME", 15),
+				new NumField("AMOUNT", 12, 0), new DateField("DAY"), new LogicalField("OK"),
+				new NumField("PRICE", 10, 2) };
+	}
+
+	/** Creates an empty DBF file with the fields, left open. */
+	static DBF create(Path file, Field... fields) throws IOException, xBaseJException {
+		Files.deleteIfExists(file);
+		DBF dbf = new DBF(file.toString(), DBF.DBASEIII, true);
+		dbf.addFields(Arrays.asList(fields));
+		return dbf;
+	}
+
+	/**
+	 * Writes random orders with the IDs 1 to records, every seventh one
+	 * deleted. The content only depends on the record count and the seed.
+	 */
+	static Path orders(Path file, int records, long seed) throws IOException, xBaseJException {
+		DBF dbf = create(file, orderFields());
+		try {
+			SplittableRandom random = new SplittableRandom(seed);
+			for (int i = 0; i < records; i++) {
+				dbf.getField("ID").put(Integer.toString(i + 1));
+				dbf.getField("STATUS").put(STATUSES[random.nextInt(STATUSES.length)]);
+				dbf.getField("NAME").put("Order " + random.nextInt(1000));
+				dbf.getField("AMOUNT").put(Long.toString(random.nextLong(-1_000_000_000L, 1_000_000_000L)));
+				dbf.getField("DAY").put(LocalDate.ofEpochDay(10_000 + random.nextInt(10_000))
+						.format(DateTimeFormatter.BASIC_ISO_DATE));
+				dbf.getField("OK").put(random.nextBoolean() ? "T" : "F");
+				dbf.getField("PRICE").put(BigDecimal.valueOf(random.nextInt(10_000_000), 2).toPlainString());
+				dbf.write();
+				if (i % 7 == 3) {
+					dbf.delete();
+				}
+			}
+		} finally {
+			dbf.close();
+		}
+		return file;
+	}
+
+	static List<Snapshot> read(Path file) throws IOException, xBaseJException {
+		DBF dbf = new DBF(file.toString());
+		try {
+			List<Snapshot> records = new ArrayList<>();
+			for (int recno = 1; recno <= dbf.getRecordCount(); recno++) {
+				dbf.gotoRecord(recno);
+				Map<String, String> values = new LinkedHashMap<>();
+				for (int i = 1; i <= dbf.getFieldCount(); i++) {
+					Field field = dbf.getField(i);
+					values.put(field.getName(), field.get().trim());
+				}
+				records.add(new Snapshot(dbf.deleted(), values));
+			}
+			return records;
+		} finally {
+			dbf.close();
+		}
+	}
+
+	/** The field values of the records that are not deleted. */
+	static List<Map<String, String>> live(List<Snapshot> records) {
+		List<Map<String, String>> values = new ArrayList<>();
+		for (Snapshot record : records) {
+			if (!record.deleted) {
+				values.add(record.values);
+			}
+		}
+		return values;
+	}
+
+	/** Name, type, length and decimals of every field, in file order. */
+	static List<String> fields(Path file) throws IOException, xBaseJException {
+		DBF dbf = new DBF(file.toString());
+		try {
+			List<String> fields = new ArrayList<>();
+			for (int i = 1; i <= dbf.getFieldCount(); i++) {
+				Field field = dbf.getField(i);
+				fields.add(field.getName() + " " + field.getType() + " " + field.getLength() + "."
+						+ field.getDecimalPositionCount());
+			}
+			return fields;
+		} finally {
+			dbf.close();
+		}
+	}
+
+	/** Order values formatted like the trimmed xBaseJ field values. */
+	static Map<String, String> orderValues(int id, String status, String name, long amount, LocalDate day,
+			Boolean ok, String price) {
+		Map<String, String> values = new LinkedHashMap<>();
+		values.put("ID", Integer.toString(id));
+		values.put("STATUS", status);
+		values.put("NAME", name);
+		values.put("AMOUNT", Long.toString(amount));
+		values.put("DAY", day == null ? "" : day.format(DateTimeFormatter.BASIC_ISO_DATE));
+		values.put("OK", ok == null ? "" : ok ? "T" : "F");
+		values.put("PRICE", price.trim());
+		return values;
+	}
+}